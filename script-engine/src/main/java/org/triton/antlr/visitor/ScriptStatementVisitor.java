@@ -5,13 +5,14 @@ import lombok.EqualsAndHashCode;
 import org.bw.tl.antlr.GrammarBaseVisitor;
 import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.ast.Node;
+import org.bw.tl.antlr.ast.SourceFile;
 import org.bw.tl.antlr.visitor.FieldVisitor;
 import org.bw.tl.antlr.visitor.StatementVisitor;
 
 @EqualsAndHashCode(callSuper = true)
 public @Data(staticConstructor = "of") class ScriptStatementVisitor extends GrammarBaseVisitor<Node> {
 
-    private final String sourceFile;
+    private final SourceFile sourceFile;
 
     @Override
     public Node visitScriptStatement(final GrammarParser.ScriptStatementContext ctx) {
@@ -6,6 +6,8 @@ import org.bw.tl.antlr.GrammarBaseVisitor;
 import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.ast.Node;
 import org.bw.tl.antlr.ast.QualifiedName;
+import org.bw.tl.antlr.ast.SourceFile;
+import org.bw.tl.compiler.resolve.ImportMap;
 import org.triton.antlr.ast.Script;
 
 import java.util.LinkedList;
@@ -19,14 +21,18 @@ public @Data(staticConstructor = "of") class ScriptVisitor extends GrammarBaseVi
     public Script visitScript(final GrammarParser.ScriptContext ctx) {
         final LinkedList<QualifiedName> imports = new LinkedList<>();
         final LinkedList<Node> statements = new LinkedList<>();
+        final SourceFile source = SourceFile.of(sourceFile, ctx.start.getInputStream());
 
         if (ctx.imp() != null) {
-            ctx.imp().forEach(i -> imports.add(QualifiedName.of(i.fqn().getText())));
+            ctx.imp().forEach(i -> {
+                final QualifiedName imp = QualifiedName.of(i.fqn().getText());
+                imports.add(i.wildcard != null ? imp.append(ImportMap.WILDCARD) : imp);
+            });
         }
 
         if (ctx.scriptStatement() != null) {
             for (final GrammarParser.ScriptStatementContext scriptStatementContext : ctx.scriptStatement()) {
-                statements.add(scriptStatementContext.accept(ScriptStatementVisitor.of(sourceFile)));
+                statements.add(scriptStatementContext.accept(ScriptStatementVisitor.of(source)));
             }
         }
 
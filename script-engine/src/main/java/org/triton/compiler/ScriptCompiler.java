@@ -4,11 +4,13 @@ import lombok.Data;
 import org.bw.tl.Error;
 import org.bw.tl.ErrorType;
 import org.bw.tl.antlr.ast.*;
+import org.bw.tl.compiler.IndexedClassWriter;
 import org.bw.tl.compiler.MethodCtx;
 import org.bw.tl.compiler.MethodImpl;
 import org.bw.tl.compiler.Scope;
 import org.bw.tl.compiler.resolve.ExpressionResolver;
 import org.bw.tl.compiler.resolve.ExpressionResolverImpl;
+import org.bw.tl.compiler.resolve.SymbolTable;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
@@ -25,7 +27,7 @@ public @Data class ScriptCompiler {
     private final Clazz script;
 
     public byte[] build(final String name, final Map<String, TypeName> fields) {
-        final ClassWriter cw = new ClassWriter(COMPUTE_FRAMES + COMPUTE_MAXS);
+        final ClassWriter cw = new IndexedClassWriter(COMPUTE_FRAMES + COMPUTE_MAXS);
 
         cw.visit(V1_8, ACC_PUBLIC + ACC_SUPER, name, null,
                 "javax/script/CompiledScript", null);
@@ -33,7 +35,9 @@ public @Data class ScriptCompiler {
         writeInitializer(cw);
         writeConstructor(cw);
 
-        final ExpressionResolver resolver = new ExpressionResolverImpl(script, Collections.singletonList(script), new Scope());
+        final List<Clazz> classpath = Collections.singletonList(script);
+        final SymbolTable symbolTable = new SymbolTable(classpath);
+        final ExpressionResolver resolver = new ExpressionResolverImpl(script, classpath, new Scope(), symbolTable);
 
         for (final Function function : script.getFunctions()) {
             final Type methodDescriptor = resolver.resolveFunctionCtx(script, function);
@@ -48,7 +52,7 @@ public @Data class ScriptCompiler {
 
             mv.visitCode();
 
-            final MethodCtx ctx = new MethodCtx(Collections.singletonList(script), function, script);
+            final MethodCtx ctx = new MethodCtx(classpath, function, script, symbolTable);
 
             if ("eval".equals(function.getName())) {
                 if (function.getBody() instanceof Block) {
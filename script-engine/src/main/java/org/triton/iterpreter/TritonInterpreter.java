@@ -132,7 +132,7 @@ public @Data class TritonInterpreter {
         final CommonTokenStream ts = new CommonTokenStream(lexer);
         final GrammarParser p = new GrammarParser(ts);
 
-        GrammarParser.ScriptContext scriptContext = p.script();
+        GrammarParser.ScriptContext scriptContext = CompileUtilities.parse(p, GrammarParser::script);
 
         if (p.getNumberOfSyntaxErrors() == 0) {
             return scriptContext.accept(ScriptVisitor.of(srcFile));
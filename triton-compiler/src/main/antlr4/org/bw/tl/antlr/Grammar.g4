@@ -1,11 +1,12 @@
 grammar Grammar;
 
+// package, import and top level statements end with a semi, which takes the newlines that follow them
 file
-    : NL* (packageDef NL*)? imp* NL* topLevelStatement* NL* EOF
+    : NL* packageDef? imp* topLevelStatement* EOF
     ;
 
 script
-    : NL* (packageDef NL*)? imp* NL* (scriptStatement semi)* (scriptStatement semi?)? NL* EOF
+    : NL* packageDef? imp* (scriptStatement (semi scriptStatement)* semi?)? EOF
     ;
 
 scriptStatement
@@ -21,6 +22,11 @@ topLevelStatement
     | varDef semi
     ;
 
+// the declarations of a file, the block bodies of functions are skipped and parsed when they are needed
+skeleton
+    : NL* packageDef? imp* (lazyFunctionDef semi? | varDef semi)* EOF
+    ;
+
 statement
     : block
     | whileStatement
@@ -33,7 +39,7 @@ statement
 expression
     : LPAREN NL* wrapped=expression NL* RPAREN
     | literal
-    | preceeding=expression NL* DOT NL* id=IDENTIFIER
+    | preceeding=expression NL* DOT NL* id=identifier
     | name=fqn
     | preceeding=expression NL* DOT NL* call=functionCall
     | call=functionCall
@@ -44,14 +50,16 @@ expression
     | preceeding=expression NL* DOT NL* assignment
     | assignment
     | typeCast
-    | expression indices (NL* ASSIGN NL* assign=expression)?
-    | lhs=expression NL* (RANGE) NL* rhs=expression
-    | (PLUS | MINUS | NOT) NL* unaryOperand=expression
-    | lhs=expression NL* (POW) NL* rhs=expression
-    | lhs=expression NL* (MULT | DIV | MOD) NL* rhs=expression
-    | lhs=expression NL* (PLUS | MINUS) NL* rhs=expression
-    | lhs=expression NL* (GT | LT | GTE | LTE | EQUALS | NOT_EQ) NL* rhs=expression
-    | lhs=expression NL* (AND | OR) NL* rhs=expression
+    | indexed=expression indices (NL* ASSIGN NL* assign=expression)?
+    | prefix=(PLUS | MINUS | NOT) NL* unaryOperand=expression
+    | lhs=expression NL* bop=POW NL* rhs=expression
+    | lhs=expression NL* bop=(MULT | DIV | MOD) NL* rhs=expression
+    | lhs=expression NL* bop=(PLUS | MINUS) NL* rhs=expression
+    | lhs=expression (NL* bop=RANGE | bop=DOWN_TO) NL* rhs=expression
+    | lhs=expression bop=STEP NL* rhs=expression
+    | lhs=expression bop=IN NL* rhs=expression
+    | lhs=expression NL* bop=(GT | LT | GTE | LTE | EQUALS | NOT_EQ) NL* rhs=expression
+    | lhs=expression NL* bop=(AND | OR) NL* rhs=expression
     ;
 
 indices
@@ -60,8 +68,8 @@ indices
 
 assignment
     :   <assoc=right>
-        IDENTIFIER NL*
-        (   ASSIGN
+        name=identifier NL*
+        op=(   ASSIGN
         |   PLUS_EQ
         |   MINUS_EQ
         |   MULT_EQ
@@ -90,24 +98,30 @@ typeCast
     ;
 
 varDef
-    : (modifierList NL*)? (type | VAR | VAL) NL* IDENTIFIER (NL* ASSIGN NL* expression)?
+    : (modifierList NL*)? (type | VAR | val=VAL) NL* name=identifier (NL* ASSIGN NL* expression)?
     ;
 
 functionCall
-    : IDENTIFIER NL* LPAREN (NL* expression (NL* COMMA NL* expression)*)? NL* RPAREN
+    : name=identifier NL* LPAREN (NL* expression (NL* COMMA NL* expression)*)? NL* RPAREN
     ;
 
 functionDef
-    : (modifierList NL*)? FUN NL* IDENTIFIER NL* LPAREN functionParamDefs? RPAREN NL* (':' NL* (VOID_T | type) NL*)?
+    : (modifierList NL*)? FUN NL* name=identifier NL* LPAREN functionParamDefs? RPAREN NL* (':' NL* (VOID_T | type) NL*)?
     (block? | ('=' NL* expression))
     ;
 
+// a functionDef with the tokens of its block body matched by braces only
+lazyFunctionDef
+    : (modifierList NL*)? FUN NL* name=identifier NL* LPAREN functionParamDefs? RPAREN NL* (':' NL* (VOID_T | type) NL*)?
+    (lazyBlock? | ('=' NL* expression))
+    ;
+
 functionParamDefs
     : functionParam (NL* COMMA NL* functionParam)*
     ;
 
 functionParam
-    : (modifierList NL*)? type NL* IDENTIFIER
+    : (modifierList NL*)? type NL* name=identifier
     ;
 
 type
@@ -134,11 +148,15 @@ packageDef
     ;
 
 imp
-    : IMP fqn semi
+    : IMP fqn (DOT wildcard=MULT)? semi
     ;
 
 block
-    : LBR NL* (statement semi)* (statement semi?)? NL* RBR
+    : LBR NL* (statement (semi statement)* semi?)? NL* RBR
+    ;
+
+lazyBlock
+    : LBR (~(LBR | RBR) | lazyBlock)* RBR
     ;
 
 ifStatement
@@ -173,17 +191,22 @@ returnStatement
     ;
 
 newStatement
-    : NEW NL* fqn NL* LPAREN (expression (NL* COMMA NL* expression)*)? NL* RPAREN
-    | array=NEW NL* (fqn | primitiveType) NL* ('[' NL* expression NL* ']')+
+    : NEW NL* className NL* LPAREN (expression (NL* COMMA NL* expression)*)? NL* RPAREN
+    | array=NEW NL* (className | primitiveType) NL* ('[' NL* expression NL* ']')+
+    ;
+
+// the same as fqn, a separate rule keeps '(' out of what can follow an fqn so a.b(c) is predicted as a call with SLL
+className
+    : identifier (DOT identifier)*
     ;
 
 forStatement
-    : FOR NL* LPAREN NL* forControl NL* RPAREN NL* ((statement semi?) | SEMICOLON)
+    : FOR NL* LPAREN NL* forControl NL* RPAREN NL* (statement | SEMICOLON)
     | FOR NL* statement
     ;
 
 forControl
-    : (modifierList NL*)? (type | VAR | VAL) NL* IDENTIFIER NL* COLON NL* expression
+    : (modifierList NL*)? (type | VAR | val=VAL) NL* name=identifier NL* COLON NL* expression
     | ((varDef | init=expression) NL*)? SEMICOLON NL* (condition=expression NL*)? SEMICOLON (NL* expressionList)?
     ;
 
@@ -196,7 +219,7 @@ localVarDefList
     ;
 
 localVarDef
-    : IDENTIFIER ASSIGN expression
+    : identifier ASSIGN expression
     ;
 
 expressionList
@@ -222,8 +245,21 @@ string
     : StringLiteral
     ;
 
+// the expression of a ${expression} substitution, parsed from the text of the string literal
+templateHole
+    : NL* expression NL* EOF
+    ;
+
 fqn
-    : IDENTIFIER (DOT IDENTIFIER)*
+    : identifier (DOT identifier)*
+    ;
+
+// in, step and downTo are keywords only where an operator is expected, System.in is a name
+identifier
+    : IDENTIFIER
+    | IN
+    | STEP
+    | DOWN_TO
     ;
 
 modifierList
@@ -256,6 +292,18 @@ fragment
 StringCharacter
     :   ~["\\]
     |   EscapeSequence
+    |   TemplateHole
+    ;
+// a ${expression} substitution, the expression may contain braces and string literals
+fragment
+TemplateHole
+    :   '${' TemplateCharacter* '}'
+    ;
+fragment
+TemplateCharacter
+    :   ~["{}]
+    |   StringLiteral
+    |   '{' TemplateCharacter* '}'
     ;
 // §3.10.6 Escape Sequences for Character and String Literals
 fragment
@@ -287,12 +335,14 @@ ZeroToThree
 
 IF      : 'if';
 IS      : 'is';
+IN      : 'in';
 DO      : 'do';
 NEW     : 'new';
 FUN     : 'fun';
 VAR     : 'var';
 VAL     : 'val';
 FOR     : 'for';
+STEP    : 'step';
 IMP     : 'import';
 INT_T   : 'int';
 LONG_T  : 'long';
@@ -303,6 +353,7 @@ ELSE    : 'else';
 WHEN    : 'when';
 FALSE   : 'false';
 WHILE   : 'while';
+DOWN_TO : 'downTo';
 FLOAT_T : 'float';
 DOUBLE_T: 'double';
 RETURN  : 'return';
@@ -374,8 +425,9 @@ HEX
     : '0' [xX] HexDigit+
     ;
 
+// a digit must follow the point, 0..10 is a range
 FLOAT
-    : Digit+ '.' Digit* ExponentPart? [fF]?
+    : Digit+ '.' Digit+ ExponentPart? [fF]?
     | '.' Digit+ ExponentPart? [fF]?
     | Digit+ ExponentPart [fF]?
     | Digit+ [fF]
@@ -1,10 +1,130 @@
 package org.bw.tl;
 
-import org.bw.tl.antlr.GrammarParser;
+import org.apache.commons.cli.*;
+import org.bw.tl.daemon.CompileRequest;
+import org.bw.tl.daemon.CompileResult;
+import org.bw.tl.daemon.DaemonClient;
+import org.bw.tl.util.CompileUtilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Application {
 
     public static void main(String[] args) {
-        GrammarParser g;
+        final Options options = new Options();
+
+        options.addOption("s", "source", true, "The source directory");
+        options.addOption("cp", "classpath", true, "The class path");
+        options.addOption("o", "output", true, "The output directory");
+        options.addOption(null, "state", true, "The state file of incremental builds");
+        options.addOption(null, "cache", true, "The directory of the AST cache");
+        options.addOption(null, "daemon", true, "Start, stop or print the status of the compile daemon");
+        options.addOption(null, "daemon-dir", true, "The directory of the compile daemon");
+        options.addOption(null, "target", true, "The Java release of the generated classes, 1.8 by default");
+        options.addOption(null, "profile", false, "Print the time of each compiler phase and the compiler counters");
+        options.addOption(null, "no-daemon", false, "Compile in this JVM even if a daemon is running");
+        options.addOption(null, "max-heap", true, "The maximum heap of a started daemon, 1g by default");
+        options.addOption(null, "idle", true, "The idle minutes after which a started daemon stops, 180 by default");
+
+        final CommandLine cmd;
+
+        try {
+            cmd = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("triton", options);
+            System.exit(2);
+            return;
+        }
+
+        final Path daemonDirectory = cmd.hasOption("daemon-dir") ? Paths.get(cmd.getOptionValue("daemon-dir")) :
+                DaemonClient.DEFAULT_DIRECTORY;
+
+        try {
+            if (cmd.hasOption("daemon")) {
+                System.exit(daemon(cmd, daemonDirectory) ? 0 : 1);
+            } else if (cmd.hasOption("s")) {
+                System.exit(compile(cmd, daemonDirectory) ? 0 : 1);
+            } else {
+                new HelpFormatter().printHelp("triton", options);
+                System.exit(2);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static boolean daemon(final CommandLine cmd, final Path directory) throws IOException {
+        final String command = cmd.getOptionValue("daemon");
+        final DaemonClient client = DaemonClient.find(directory);
+
+        switch (command) {
+            case "start":
+                final DaemonClient started = client != null ? client : DaemonClient.start(directory,
+                        cmd.getOptionValue("max-heap", "1g"), Long.parseLong(cmd.getOptionValue("idle", "180")));
+
+                System.out.println(started.status());
+                return true;
+            case "stop":
+                if (client != null)
+                    client.stop();
+
+                return true;
+            case "status":
+                System.out.println(client != null ? client.status() : "No daemon is running");
+                return client != null;
+            default:
+                System.err.println("Unknown daemon command: " + command);
+                return false;
+        }
+    }
+
+    private static boolean compile(final CommandLine cmd, final Path daemonDirectory) throws IOException {
+        final List<String> classpath = new ArrayList<>();
+
+        if (cmd.hasOption("cp")) {
+            for (final String path : cmd.getOptionValue("cp").split(File.pathSeparator)) {
+                if (!path.isEmpty())
+                    classpath.add(absolute(path));
+            }
+        }
+
+        final CompileRequest request = new CompileRequest(absolute(cmd.getOptionValue("s")), classpath,
+                absolute(cmd.getOptionValue("o", ".")),
+                cmd.hasOption("state") ? absolute(cmd.getOptionValue("state")) : null,
+                cmd.hasOption("cache") ? absolute(cmd.getOptionValue("cache")) : null,
+                CompileUtilities.classVersion(cmd.getOptionValue("target", "1.8")), cmd.hasOption("profile"));
+
+        final DaemonClient client = cmd.hasOption("no-daemon") ? null : DaemonClient.find(daemonDirectory);
+        CompileResult result = null;
+
+        if (client != null) {
+            try {
+                result = client.compile(request);
+                System.err.print(result.getOutput());
+            } catch (IOException e) {
+                System.err.println("The compile daemon is not available, compiling in this JVM");
+            }
+        }
+
+        if (result == null)
+            result = request.execute();
+
+        if (result.isSuccess())
+            System.out.println("Compiled " + result.getCompiled() + " of " + result.getModules() + " modules");
+
+        System.out.print(result.getProfile());
+
+        return result.isSuccess();
+    }
+
+    private static String absolute(final String path) {
+        return Paths.get(path).toAbsolutePath().toString();
     }
 }
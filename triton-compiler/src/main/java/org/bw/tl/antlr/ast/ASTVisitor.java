@@ -2,6 +2,14 @@ package org.bw.tl.antlr.ast;
 
 public interface ASTVisitor {
 
+    /**
+     * Called with every node before it is passed to its visit method
+     *
+     * @param node The node
+     */
+    default void enterNode(final Node node) {
+    }
+
     void visitName(final QualifiedName name);
 
     void visitExpressionFieldAccess(final ExpressionFieldAccess fa);
@@ -22,6 +30,8 @@ public interface ASTVisitor {
 
     void visitLiteral(final Literal literal);
 
+    void visitStringTemplate(final StringTemplate template);
+
     void visitCall(final Call call);
 
     void visitReturn(final Return returnStmt);
@@ -52,6 +52,11 @@ public class ASTVisitorBase implements ASTVisitor {
         throw new UnsupportedOperationException("Literal values not implemented");
     }
 
+    @Override
+    public void visitStringTemplate(final StringTemplate template) {
+        throw new UnsupportedOperationException("String templates not implemented");
+    }
+
     @Override
     public void visitCall(final Call call) {
         throw new UnsupportedOperationException("Function calls not implemented");
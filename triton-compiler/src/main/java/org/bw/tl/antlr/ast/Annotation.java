@@ -17,7 +17,7 @@ public @Data class Annotation extends Node {
     private final List<SimpleImmutableEntry<QualifiedName, Expression>> pairs;
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitAnnotation(this);
     }
 
@@ -11,12 +11,12 @@ public @Data class Assignment extends Expression {
     private final Expression value;
 
     @Override
-    public Type resolveType(final ExpressionResolver resolver) {
+    protected Type computeType(final ExpressionResolver resolver) {
         return value.resolveType(resolver);
     }
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitAssignment(this);
     }
 }
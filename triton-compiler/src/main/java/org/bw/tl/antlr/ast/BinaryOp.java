@@ -13,12 +13,12 @@ public @Data class BinaryOp extends Expression {
     private final Expression rightSide;
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitBinaryOp(this);
     }
 
     @Override
-    public Type resolveType(final ExpressionResolver resolver) {
+    protected Type computeType(final ExpressionResolver resolver) {
         return resolver.resolveBinaryOp(this);
     }
 }
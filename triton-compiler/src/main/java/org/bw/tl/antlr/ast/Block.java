@@ -19,7 +19,7 @@ public @Data class Block extends Node {
     }
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         statements.forEach(stmt -> stmt.accept(visitor));
     }
 }
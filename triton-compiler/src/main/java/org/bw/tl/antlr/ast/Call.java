@@ -22,12 +22,12 @@ public @Data class Call extends Expression {
     }
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitCall(this);
     }
 
     @Override
-    public Type resolveType(final ExpressionResolver resolver) {
+    protected Type computeType(final ExpressionResolver resolver) {
         return resolver.resolveCall(this);
     }
 }
@@ -0,0 +1,733 @@
+package org.bw.tl.antlr.ast;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.AbstractMap.SimpleImmutableEntry;
+
+/**
+ * A compact binary form of modules. Nodes are written in pre-order with a tag, their position and their
+ * children, strings are written once and referred to by index afterwards. Integers are variable length and
+ * positions are written relative to the previous node, which keeps most of them to a single byte. The parents
+ * of the nodes are written as a table after the module, so they are restored exactly as the parser set them
+ */
+public class ClazzSerializer {
+
+    /**
+     * Must be changed whenever the format or the node classes change
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    private static final int MAGIC = 0x544C4153;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_REF = 1;
+    private static final int TAG_NAME = 2;
+    private static final int TAG_TYPE_NAME = 3;
+    private static final int TAG_LITERAL = 4;
+    private static final int TAG_BINARY_OP = 5;
+    private static final int TAG_UNARY_OP = 6;
+    private static final int TAG_CALL = 7;
+    private static final int TAG_FIELD_ACCESS = 8;
+    private static final int TAG_INDEX = 9;
+    private static final int TAG_ASSIGNMENT = 10;
+    private static final int TAG_TYPE_CAST = 11;
+    private static final int TAG_NEW = 12;
+    private static final int TAG_WHEN = 13;
+    private static final int TAG_IF = 14;
+    private static final int TAG_BLOCK = 15;
+    private static final int TAG_RETURN = 16;
+    private static final int TAG_WHILE = 17;
+    private static final int TAG_FOR = 18;
+    private static final int TAG_FOR_EACH = 19;
+    private static final int TAG_FIELD = 20;
+    private static final int TAG_FUNCTION = 21;
+    private static final int TAG_ANNOTATION = 22;
+    private static final int TAG_STRING_TEMPLATE = 23;
+
+    private static final int LITERAL_NULL = 0;
+    private static final int LITERAL_BOOLEAN = 1;
+    private static final int LITERAL_STRING = 2;
+    private static final int LITERAL_LONG = 3;
+    private static final int LITERAL_FLOAT = 4;
+    private static final int LITERAL_DOUBLE = 5;
+    private static final int LITERAL_INTEGER = 6;
+    private static final int LITERAL_CHARACTER = 7;
+
+    private static final Modifier[] MODIFIERS = Modifier.values();
+
+    /**
+     * @param clazz The module to write
+     * @param out The stream to write to
+     * @throws IOException If the module contains a node that cannot be written or the stream fails
+     */
+    public static void write(@NotNull final Clazz clazz, @NotNull final DataOutputStream out) throws IOException {
+        new Writer(out).writeClazz(clazz);
+    }
+
+    /**
+     * @param in The stream to read from
+     * @param sourceFile The path of the source file of the module
+     * @param source The source file the nodes point into
+     * @return The module
+     * @throws IOException If the stream is not in this format or version or is truncated
+     */
+    @NotNull
+    public static Clazz read(@NotNull final DataInputStream in, @NotNull final String sourceFile,
+                             @NotNull final SourceFile source) throws IOException {
+        return new Reader(in, source).readClazz(sourceFile);
+    }
+
+    private static class Writer {
+
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<Node, Integer> ids = new IdentityHashMap<>();
+        private final List<Node> nodes = new ArrayList<>();
+        private int line;
+        private int start;
+
+        Writer(final DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeClazz(final Clazz clazz) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            writeNode(clazz.getPackageName());
+            writeNodes(clazz.getImports());
+            writeNodes(clazz.getStaticImports());
+            writeNodes(clazz.getFields());
+            writeNodes(clazz.getFunctions());
+
+            writeInt(nodes.size());
+
+            for (int i = 0; i < nodes.size(); i++) {
+                final Node parent = nodes.get(i).getParent();
+                final Integer id = parent != null ? ids.get(parent) : null;
+
+                // the distance back to the parent, which is never 0
+                writeSigned(id != null ? i - id : 0);
+            }
+        }
+
+        void writeNodes(final Collection<? extends Node> nodes) throws IOException {
+            writeInt(nodes.size());
+
+            for (final Node node : nodes) {
+                writeNode(node);
+            }
+        }
+
+        void writeNode(@Nullable final Node node) throws IOException {
+            if (node == null) {
+                writeInt(TAG_NULL << 1);
+                return;
+            }
+
+            final Integer id = ids.get(node);
+
+            if (id != null) {
+                writeInt(TAG_REF << 1);
+                writeInt(id);
+                return;
+            }
+
+            ids.put(node, nodes.size());
+            nodes.add(node);
+
+            if (node instanceof TypeName) {
+                final TypeName name = (TypeName) node;
+                writeHeader(TAG_TYPE_NAME, node);
+                writeStrings(name.getNames());
+                writeInt(name.getDim());
+                writeNodes(name.getTypeParameters());
+            } else if (node instanceof QualifiedName) {
+                writeHeader(TAG_NAME, node);
+                writeStrings(((QualifiedName) node).getNames());
+            } else if (node instanceof Literal) {
+                writeHeader(TAG_LITERAL, node);
+                writeLiteral(((Literal<?>) node).getValue());
+            } else if (node instanceof StringTemplate) {
+                writeHeader(TAG_STRING_TEMPLATE, node);
+                writeNodes(((StringTemplate) node).getParts());
+            } else if (node instanceof BinaryOp) {
+                final BinaryOp op = (BinaryOp) node;
+                writeHeader(TAG_BINARY_OP, node);
+                writeNode(op.getLeftSide());
+                writeString(op.getOperator());
+                writeNode(op.getRightSide());
+            } else if (node instanceof UnaryOp) {
+                final UnaryOp op = (UnaryOp) node;
+                writeHeader(TAG_UNARY_OP, node);
+                writeNode(op.getExpression());
+                writeString(op.getOperator());
+            } else if (node instanceof Call) {
+                final Call call = (Call) node;
+                writeHeader(TAG_CALL, node);
+                writeNode(call.getPrecedingExpr());
+                writeString(call.getName());
+                writeNodes(call.getParameters());
+            } else if (node instanceof ExpressionFieldAccess) {
+                final ExpressionFieldAccess fa = (ExpressionFieldAccess) node;
+                writeHeader(TAG_FIELD_ACCESS, node);
+                writeNode(fa.getPrecedingExpr());
+                writeString(fa.getFieldName());
+            } else if (node instanceof ExpressionIndex) {
+                final ExpressionIndex index = (ExpressionIndex) node;
+                writeHeader(TAG_INDEX, node);
+                writeNode(index.getExpression());
+                writeNodes(index.getIndices());
+                writeNode(index.getValue());
+            } else if (node instanceof Assignment) {
+                final Assignment assignment = (Assignment) node;
+                writeHeader(TAG_ASSIGNMENT, node);
+                writeNode(assignment.getPrecedingExpr());
+                writeString(assignment.getName());
+                writeNode(assignment.getValue());
+            } else if (node instanceof TypeCast) {
+                final TypeCast cast = (TypeCast) node;
+                writeHeader(TAG_TYPE_CAST, node);
+                writeNode(cast.getType());
+                writeNode(cast.getExpression());
+            } else if (node instanceof New) {
+                final New newExpr = (New) node;
+                writeHeader(TAG_NEW, node);
+                writeNode(newExpr.getType());
+                writeNodes(newExpr.getParameters());
+                out.writeBoolean(newExpr.isArray());
+            } else if (node instanceof When) {
+                final When when = (When) node;
+                writeHeader(TAG_WHEN, node);
+                writeNode(when.getData());
+                writeInt(when.getCases().size());
+
+                for (final WhenCase whenCase : when.getCases()) {
+                    writeNode(whenCase.getCondition());
+                    writeNode(whenCase.getBranch());
+                }
+
+                writeNode(when.getElseBranch());
+            } else if (node instanceof IfStatement) {
+                final IfStatement stmt = (IfStatement) node;
+                writeHeader(TAG_IF, node);
+                writeNode(stmt.getCondition());
+                writeNode(stmt.getBody());
+                writeNode(stmt.getElseBody());
+            } else if (node instanceof Block) {
+                writeHeader(TAG_BLOCK, node);
+                writeNodes(((Block) node).getStatements());
+            } else if (node instanceof Return) {
+                writeHeader(TAG_RETURN, node);
+                writeNode(((Return) node).getExpression());
+            } else if (node instanceof WhileLoop) {
+                final WhileLoop loop = (WhileLoop) node;
+                writeHeader(TAG_WHILE, node);
+                writeNode(loop.getCondition());
+                writeNode(loop.getBody());
+                out.writeBoolean(loop.isDoFirst());
+            } else if (node instanceof ForLoop) {
+                final ForLoop loop = (ForLoop) node;
+                writeHeader(TAG_FOR, node);
+                writeNode(loop.getInit());
+                writeNode(loop.getCondition());
+                writeNodes(loop.getUpdate());
+                writeNode(loop.getBody());
+            } else if (node instanceof ForEachLoop) {
+                final ForEachLoop loop = (ForEachLoop) node;
+                writeHeader(TAG_FOR_EACH, node);
+                writeNode(loop.getField());
+                writeNode(loop.getIterableExpression());
+                writeNode(loop.getBody());
+            } else if (node instanceof Field) {
+                final Field field = (Field) node;
+                writeHeader(TAG_FIELD, node);
+                writeString(field.getName());
+                writeNode(field.getType());
+                writeNode(field.getInitialValue());
+                out.writeBoolean(field.isConstant());
+                writeModifiable(field);
+            } else if (node instanceof Function) {
+                final Function function = (Function) node;
+                writeHeader(TAG_FUNCTION, node);
+                writeString(function.getName());
+                writeNode(function.getType());
+                writeInt(function.getParameterNames().length);
+
+                for (int i = 0; i < function.getParameterNames().length; i++) {
+                    writeString(function.getParameterNames()[i]);
+                    writeNode(function.getParameterTypes()[i]);
+                    writeModifiers(function.getParameterModifiers()[i]);
+                }
+
+                writeNode(function.getBody());
+                out.writeBoolean(function.isShortForm());
+                writeModifiable(function);
+            } else if (node instanceof Annotation) {
+                final Annotation annotation = (Annotation) node;
+                writeHeader(TAG_ANNOTATION, node);
+                writeNode(annotation.getName());
+                writeInt(annotation.getPairs().size());
+
+                for (final SimpleImmutableEntry<QualifiedName, Expression> pair : annotation.getPairs()) {
+                    writeNode(pair.getKey());
+                    writeNode(pair.getValue());
+                }
+            } else {
+                throw new IOException("Cannot write node: " + node.getClass().getName());
+            }
+        }
+
+        void writeHeader(final int tag, final Node node) throws IOException {
+            final boolean pop = node instanceof Expression && ((Expression) node).shouldPop();
+
+            writeInt(tag << 1 | (pop ? 1 : 0));
+            writeSigned(node.getLineNumber() - line);
+            writeSigned(node.getStart() - start);
+            writeSigned(node.getEnd() - node.getStart());
+
+            line = node.getLineNumber();
+            start = node.getStart();
+        }
+
+        void writeModifiable(final ModifiableStatement stmt) throws IOException {
+            writeModifiers(stmt.getModifiers());
+            writeNodes(stmt.getAnnotations());
+        }
+
+        void writeModifiers(@Nullable final List<Modifier> modifiers) throws IOException {
+            if (modifiers == null) {
+                writeInt(0);
+                return;
+            }
+
+            writeInt(modifiers.size() + 1);
+
+            for (final Modifier modifier : modifiers) {
+                writeInt(modifier.ordinal());
+            }
+        }
+
+        void writeLiteral(@Nullable final Object value) throws IOException {
+            if (value == null) {
+                writeInt(LITERAL_NULL);
+            } else if (value instanceof Boolean) {
+                writeInt(LITERAL_BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof String) {
+                writeInt(LITERAL_STRING);
+                writeString((String) value);
+            } else if (value instanceof Long) {
+                writeInt(LITERAL_LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Float) {
+                writeInt(LITERAL_FLOAT);
+                out.writeFloat((Float) value);
+            } else if (value instanceof Double) {
+                writeInt(LITERAL_DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Integer) {
+                writeInt(LITERAL_INTEGER);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Character) {
+                writeInt(LITERAL_CHARACTER);
+                out.writeChar((Character) value);
+            } else {
+                throw new IOException("Cannot write literal: " + value.getClass().getName());
+            }
+        }
+
+        void writeStrings(final String[] strings) throws IOException {
+            writeInt(strings.length);
+
+            for (final String string : strings) {
+                writeString(string);
+            }
+        }
+
+        /**
+         * Writes 0 for null, 1 followed by the string the first time it is written and its index + 2 afterwards
+         */
+        void writeString(@Nullable final String string) throws IOException {
+            if (string == null) {
+                writeInt(0);
+                return;
+            }
+
+            final Integer index = strings.get(string);
+
+            if (index != null) {
+                writeInt(index + 2);
+                return;
+            }
+
+            strings.put(string, strings.size());
+
+            final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeInt(1);
+            writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        void writeSigned(final int value) throws IOException {
+            writeInt(value << 1 ^ value >> 31);
+        }
+
+        /**
+         * Writes an integer in 7 bit groups, values below 128 take a single byte
+         */
+        void writeInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+
+            out.writeByte(value);
+        }
+    }
+
+    private static class Reader {
+
+        private final DataInputStream in;
+        private final SourceFile source;
+        private final List<String> strings = new ArrayList<>();
+        private final List<Node> nodes = new ArrayList<>();
+        private int line;
+        private int start;
+
+        Reader(final DataInputStream in, final SourceFile source) {
+            this.in = in;
+            this.source = source;
+        }
+
+        Clazz readClazz(final String sourceFile) throws IOException {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+                throw new IOException("Unsupported format");
+
+            final QualifiedName packageName = readNode(QualifiedName.class);
+            final List<QualifiedName> imports = readNodes(QualifiedName.class, new ArrayList<>());
+            final List<QualifiedName> staticImports = readNodes(QualifiedName.class, new LinkedList<>());
+            final List<Field> fields = readNodes(Field.class, new ArrayList<>());
+            final List<Function> functions = readNodes(Function.class, new ArrayList<>());
+
+            if (readInt() != nodes.size())
+                throw new IOException("Corrupt parent table");
+
+            for (int i = 0; i < nodes.size(); i++) {
+                final int distance = readSigned();
+
+                if (distance != 0) {
+                    if (i - distance < 0 || i - distance >= nodes.size())
+                        throw new IOException("Corrupt parent table");
+
+                    nodes.get(i).setParent(nodes.get(i - distance));
+                }
+            }
+
+            return new Clazz(packageName, imports, staticImports, fields, functions, sourceFile);
+        }
+
+        <T extends Node, L extends List<T>> L readNodes(final Class<T> type, final L list) throws IOException {
+            final int size = readInt();
+
+            for (int i = 0; i < size; i++) {
+                list.add(readNode(type));
+            }
+
+            return list;
+        }
+
+        @Nullable
+        <T extends Node> T readNode(final Class<T> type) throws IOException {
+            final Node node = readNode();
+
+            if (node != null && !type.isInstance(node))
+                throw new IOException("Expected " + type.getSimpleName() + " but found " + node.getClass().getSimpleName());
+
+            return type.cast(node);
+        }
+
+        @Nullable
+        Node readNode() throws IOException {
+            final int header = readInt();
+            final int tag = header >> 1;
+
+            if (tag == TAG_NULL)
+                return null;
+
+            if (tag == TAG_REF)
+                return get(readInt());
+
+            // reserve the index of this node before its children are read
+            final int id = nodes.size();
+            nodes.add(null);
+
+            final int line = this.line += readSigned();
+            final int start = this.start += readSigned();
+            final int end = start + readSigned();
+            final boolean pop = (header & 1) != 0;
+
+            final Node node;
+
+            switch (tag) {
+                case TAG_TYPE_NAME: {
+                    final String[] names = readStrings();
+                    final TypeName name = new TypeName(readInt(), names);
+                    readNodes(TypeName.class, name.getTypeParameters());
+                    node = name;
+                    break;
+                }
+                case TAG_NAME:
+                    node = new QualifiedName(readStrings());
+                    break;
+                case TAG_LITERAL:
+                    node = new Literal<>(readLiteral());
+                    break;
+                case TAG_STRING_TEMPLATE:
+                    node = new StringTemplate(readNodes(Expression.class, new ArrayList<>()));
+                    break;
+                case TAG_BINARY_OP:
+                    node = new BinaryOp(readNode(Expression.class), readString(), readNode(Expression.class));
+                    break;
+                case TAG_UNARY_OP:
+                    node = new UnaryOp(readNode(Expression.class), readString());
+                    break;
+                case TAG_CALL:
+                    node = new Call(readNode(Expression.class), readString(), readNodes(Expression.class, new ArrayList<>()));
+                    break;
+                case TAG_FIELD_ACCESS:
+                    node = new ExpressionFieldAccess(readNode(Expression.class), readString());
+                    break;
+                case TAG_INDEX:
+                    node = new ExpressionIndex(readNode(Expression.class), readNodes(Expression.class, new ArrayList<>()),
+                            readNode(Expression.class));
+                    break;
+                case TAG_ASSIGNMENT:
+                    node = new Assignment(readNode(Expression.class), readString(), readNode(Expression.class));
+                    break;
+                case TAG_TYPE_CAST:
+                    node = new TypeCast(readNode(QualifiedName.class), readNode(Expression.class));
+                    break;
+                case TAG_NEW:
+                    node = new New(readNode(QualifiedName.class), readNodes(Expression.class, new ArrayList<>()),
+                            in.readBoolean());
+                    break;
+                case TAG_WHEN: {
+                    final Expression data = readNode(Expression.class);
+                    final int size = readInt();
+                    final List<WhenCase> cases = new ArrayList<>(size);
+
+                    for (int i = 0; i < size; i++) {
+                        cases.add(new WhenCase(readNode(Expression.class), readNode()));
+                    }
+
+                    node = new When(data, cases, readNode());
+                    break;
+                }
+                case TAG_IF:
+                    node = new IfStatement(readNode(Expression.class), readNode(), readNode());
+                    break;
+                case TAG_BLOCK:
+                    node = new Block(readNodes(Node.class, new ArrayList<>()));
+                    break;
+                case TAG_RETURN:
+                    node = new Return(readNode(Expression.class));
+                    break;
+                case TAG_WHILE:
+                    node = new WhileLoop(readNode(Expression.class), readNode(), in.readBoolean());
+                    break;
+                case TAG_FOR:
+                    node = new ForLoop(readNode(), readNode(Expression.class), readNodes(Expression.class, new ArrayList<>()),
+                            readNode());
+                    break;
+                case TAG_FOR_EACH:
+                    node = new ForEachLoop(readNode(Field.class), readNode(Expression.class), readNode());
+                    break;
+                case TAG_FIELD: {
+                    final Field field = new Field(readString(), readNode(TypeName.class), readNode(Expression.class));
+                    field.setConstant(in.readBoolean());
+                    readModifiable(field);
+                    node = field;
+                    break;
+                }
+                case TAG_FUNCTION:
+                    node = readFunction();
+                    break;
+                case TAG_ANNOTATION: {
+                    final QualifiedName name = readNode(QualifiedName.class);
+                    final int size = readInt();
+                    final List<SimpleImmutableEntry<QualifiedName, Expression>> pairs = new ArrayList<>(size);
+
+                    for (int i = 0; i < size; i++) {
+                        pairs.add(new SimpleImmutableEntry<>(readNode(QualifiedName.class), readNode(Expression.class)));
+                    }
+
+                    node = new Annotation(name, pairs);
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown tag: " + tag);
+            }
+
+            node.setLineNumber(line);
+            node.setStart(start);
+            node.setEnd(end);
+
+            if (start >= 0)
+                node.setSource(source);
+
+            if (node instanceof Expression)
+                ((Expression) node).setPop(pop);
+
+            nodes.set(id, node);
+
+            return node;
+        }
+
+        @SuppressWarnings("unchecked")
+        Function readFunction() throws IOException {
+            final String name = readString();
+            final TypeName type = readNode(TypeName.class);
+            final int size = readInt();
+            final String[] parameterNames = new String[size];
+            final TypeName[] parameterTypes = new TypeName[size];
+            final List<Modifier>[] parameterModifiers = new List[size];
+
+            for (int i = 0; i < size; i++) {
+                parameterNames[i] = readString();
+                parameterTypes[i] = readNode(TypeName.class);
+                parameterModifiers[i] = readModifiers();
+            }
+
+            final Function function = new Function(parameterTypes, parameterNames, parameterModifiers, name,
+                    readNode(), type);
+            function.setShortForm(in.readBoolean());
+            readModifiable(function);
+
+            return function;
+        }
+
+        void readModifiable(final ModifiableStatement stmt) throws IOException {
+            final List<Modifier> modifiers = readModifiers();
+
+            if (modifiers != null)
+                stmt.getModifiers().addAll(modifiers);
+
+            readNodes(Annotation.class, stmt.getAnnotations());
+        }
+
+        @Nullable
+        List<Modifier> readModifiers() throws IOException {
+            final int size = readInt() - 1;
+
+            if (size < 0)
+                return null;
+
+            final List<Modifier> modifiers = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                final int ordinal = readInt();
+
+                if (ordinal >= MODIFIERS.length)
+                    throw new IOException("Unknown modifier: " + ordinal);
+
+                modifiers.add(MODIFIERS[ordinal]);
+            }
+
+            return modifiers;
+        }
+
+        @Nullable
+        Object readLiteral() throws IOException {
+            final int type = readInt();
+
+            switch (type) {
+                case LITERAL_NULL:
+                    return null;
+                case LITERAL_BOOLEAN:
+                    return in.readBoolean();
+                case LITERAL_STRING:
+                    return readString();
+                case LITERAL_LONG:
+                    return in.readLong();
+                case LITERAL_FLOAT:
+                    return in.readFloat();
+                case LITERAL_DOUBLE:
+                    return in.readDouble();
+                case LITERAL_INTEGER:
+                    return in.readInt();
+                case LITERAL_CHARACTER:
+                    return in.readChar();
+                default:
+                    throw new IOException("Unknown literal type: " + type);
+            }
+        }
+
+        String[] readStrings() throws IOException {
+            final String[] strings = new String[readInt()];
+
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString();
+            }
+
+            return strings;
+        }
+
+        @Nullable
+        String readString() throws IOException {
+            final int index = readInt();
+
+            if (index == 0)
+                return null;
+
+            if (index > 1) {
+                if (index - 2 >= strings.size())
+                    throw new IOException("Unknown string: " + index);
+
+                return strings.get(index - 2);
+            }
+
+            final byte[] bytes = new byte[readInt()];
+            in.readFully(bytes);
+
+            final String string = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(string);
+
+            return string;
+        }
+
+        Node get(final int id) throws IOException {
+            final Node node = id < nodes.size() ? nodes.get(id) : null;
+
+            if (node == null)
+                throw new IOException("Unknown node: " + id);
+
+            return node;
+        }
+
+        int readSigned() throws IOException {
+            final int value = readInt();
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        int readInt() throws IOException {
+            int value = 0;
+
+            for (int shift = 0; shift < 32; shift += 7) {
+                final int b = in.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+
+            throw new IOException("Malformed integer");
+        }
+    }
+}
@@ -6,7 +6,7 @@ import lombok.Setter;
 import org.bw.tl.compiler.resolve.ExpressionResolver;
 import org.objectweb.asm.Type;
 
-@EqualsAndHashCode(callSuper = false)
+@EqualsAndHashCode(callSuper = false, exclude = "typeDesc")
 public abstract class Expression extends Node {
 
     private @Getter @Setter String typeDesc;
@@ -30,5 +30,31 @@ public abstract class Expression extends Node {
         return pop;
     }
 
-    public abstract Type resolveType(ExpressionResolver resolver);
+    /**
+     * Resolves the type of this expression. The first successful resolution annotates
+     * this node with its type descriptor, later calls read the annotation instead of
+     * walking the subtree again
+     *
+     * @param resolver The resolver to use if this node has not been annotated yet
+     * @return The type of this expression, or null if it cannot be resolved
+     */
+    public final Type resolveType(final ExpressionResolver resolver) {
+        if (typeDesc != null)
+            return Type.getType(typeDesc);
+
+        final Type type = computeType(resolver);
+
+        if (type != null)
+            typeDesc = type.getDescriptor();
+
+        return type;
+    }
+
+    /**
+     * Computes the type of this expression without consulting the type annotation
+     *
+     * @param resolver The resolver
+     * @return The type of this expression, or null if it cannot be resolved
+     */
+    protected abstract Type computeType(ExpressionResolver resolver);
 }
@@ -13,7 +13,7 @@ public @Data class ExpressionFieldAccess extends Expression {
     private final String fieldName;
 
     @Override
-    public Type resolveType(final ExpressionResolver resolver) {
+    protected Type computeType(final ExpressionResolver resolver) {
         final FieldContext ctx = resolver.resolveFieldCtx(precedingExpr, fieldName);
 
         if (ctx == null)
@@ -23,7 +23,7 @@ public @Data class ExpressionFieldAccess extends Expression {
     }
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitExpressionFieldAccess(this);
     }
 }
@@ -17,7 +17,7 @@ public @Data class ExpressionIndex extends Expression {
     private final Expression value;
 
     @Override
-    public Type resolveType(final ExpressionResolver resolver) {
+    protected Type computeType(final ExpressionResolver resolver) {
         final Type expressionType = expression.resolveType(resolver);
         if (expressionType == null)
             return null;
@@ -29,7 +29,7 @@ public @Data class ExpressionIndex extends Expression {
     }
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitExpressionIndices(this);
     }
 }
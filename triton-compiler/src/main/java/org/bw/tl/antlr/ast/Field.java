@@ -19,7 +19,7 @@ public @Data class Field extends ModifiableStatement {
     }
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitField(this);
     }
 }
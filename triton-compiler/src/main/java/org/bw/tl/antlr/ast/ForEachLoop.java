@@ -12,7 +12,7 @@ public @Data class ForEachLoop extends Node {
     private final Node body;
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitForEach(this);
     }
 }
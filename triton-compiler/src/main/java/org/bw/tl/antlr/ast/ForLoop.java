@@ -21,7 +21,7 @@ public @Data class ForLoop extends Node {
     private final Node body;
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitFor(this);
     }
 }
@@ -1,23 +1,92 @@
 package org.bw.tl.antlr.ast;
 
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.bw.tl.Error;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-@EqualsAndHashCode(callSuper = true)
+@ToString(exclude = {"lazyBody", "syntaxErrors"})
+@EqualsAndHashCode(callSuper = true, exclude = {"lazyBody", "syntaxErrors"})
 public @Data class Function extends ModifiableStatement {
 
     private final TypeName[] parameterTypes;
     private final String[] parameterNames;
     private final List<Modifier>[] parameterModifiers;
     private final String name;
-    private final Node body;
+    private @Setter(AccessLevel.NONE) Node body;
     private final TypeName type;
     private boolean shortForm;
 
+    /**
+     * The skipped block body, null once it has been parsed
+     */
+    private @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE) volatile @Nullable LazyBody lazyBody;
+    private @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE) List<Error> syntaxErrors = Collections.emptyList();
+
+    public Function(final TypeName[] parameterTypes, final String[] parameterNames,
+                    final List<Modifier>[] parameterModifiers, final String name, final Node body,
+                    final TypeName type) {
+        this.parameterTypes = parameterTypes;
+        this.parameterNames = parameterNames;
+        this.parameterModifiers = parameterModifiers;
+        this.name = name;
+        this.body = body;
+        this.type = type;
+    }
+
+    /**
+     * Creates a function whose block body is parsed when it is first needed
+     */
+    public Function(final TypeName[] parameterTypes, final String[] parameterNames,
+                    final List<Modifier>[] parameterModifiers, final String name, final LazyBody body,
+                    final TypeName type) {
+        this(parameterTypes, parameterNames, parameterModifiers, name, (Node) null, type);
+        this.lazyBody = body;
+    }
+
+    /**
+     * @return The body, an empty block if the skipped body has syntax errors
+     */
+    public Node getBody() {
+        if (lazyBody != null)
+            parseBody();
+
+        return body;
+    }
+
+    /**
+     * Parses the body if it was skipped, only the first call parses it
+     *
+     * @return The syntax errors of the body
+     */
+    @NotNull
+    public synchronized List<Error> parseBody() {
+        final LazyBody lazyBody = this.lazyBody;
+
+        if (lazyBody != null) {
+            final List<Error> errors = new ArrayList<>();
+            final Block block = lazyBody.parse(errors);
+
+            body = block != null ? block : new Block(new ArrayList<>());
+            body.setParent(this);
+            syntaxErrors = errors;
+            this.lazyBody = null;
+        }
+
+        return syntaxErrors;
+    }
+
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitFunction(this);
     }
 }
@@ -7,7 +7,6 @@ import org.bw.tl.compiler.resolve.ExpressionResolver;
 import org.objectweb.asm.Type;
 
 import java.util.List;
-import java.util.Objects;
 
 @EqualsAndHashCode(callSuper = false)
 public @Data class IfStatement extends Expression {
@@ -17,33 +16,21 @@ public @Data class IfStatement extends Expression {
     private final Node elseBody;
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitIf(this);
     }
 
     @Override
-    public Type resolveType(final ExpressionResolver resolver) {
+    protected Type computeType(final ExpressionResolver resolver) {
         final Type bodyType = resolveNode(body, resolver);
 
         if (elseBody != null && bodyType != null) {
             final Type elseBodyType = resolveNode(elseBody, resolver);
 
-            if (elseBodyType == null) {
+            if (elseBodyType == null)
                 return null;
-            } else if (Objects.equals(bodyType, elseBodyType)) {
-                return bodyType;
-            } else if (TypeUtilities.isAssignableFrom(bodyType, elseBodyType)) {
-                return elseBodyType;
-            } else if (TypeUtilities.isAssignableFrom(elseBodyType, bodyType)) {
-                return bodyType;
-            } else if (TypeUtilities.isAssignableWithImplicitCast(bodyType, elseBodyType)) {
-                return elseBodyType;
-            } else if (TypeUtilities.isAssignableWithImplicitCast(elseBodyType, bodyType)) {
-                return bodyType;
-            } else {
-                // todo; find lowest common parent
-                return Type.getType(Object.class);
-            }
+
+            return TypeUtilities.getCommonType(bodyType, elseBodyType);
         }
 
         return bodyType;
@@ -0,0 +1,20 @@
+package org.bw.tl.antlr.ast;
+
+import org.bw.tl.Error;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * The block body of a function that was skipped when its file was parsed, see {@link Function#parseBody()}
+ */
+public interface LazyBody {
+
+    /**
+     * @param errors The list the syntax errors of the body are added to
+     * @return The body, or null if it has syntax errors
+     */
+    @Nullable
+    Block parse(@NotNull List<Error> errors);
+}
@@ -11,12 +11,12 @@ public @Data class Literal<T> extends Expression {
     private final T value;
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitLiteral(this);
     }
 
     @Override
-    public Type resolveType(final ExpressionResolver resolver) {
+    protected Type computeType(final ExpressionResolver resolver) {
         return resolver.resolveLiteral(this);
     }
 }
@@ -13,12 +13,12 @@ public @Data class New extends Expression {
     private final boolean isArray;
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitNew(this);
     }
 
     @Override
-    public Type resolveType(final ExpressionResolver resolver) {
+    protected Type computeType(final ExpressionResolver resolver) {
         return resolver.resolveConstructor(this);
     }
 }
@@ -7,15 +7,46 @@ public abstract @Data class Node {
 
     private int lineNumber = -1;
 
-    @Nullable
-    private String text;
+    /**
+     * The offsets of the first character and of the character after the last in the source file
+     */
+    private int start = -1;
+    private int end = -1;
 
     @Nullable
-    private String file;
+    private SourceFile source;
 
     @Nullable
     private Node parent;
 
-    public abstract void accept(final ASTVisitor visitor);
+    /**
+     * Passes this node to the visitor, every node goes through here so the visitor sees each one
+     *
+     * @param visitor The visitor
+     */
+    public final void accept(final ASTVisitor visitor) {
+        visitor.enterNode(this);
+        dispatch(visitor);
+    }
+
+    /**
+     * Calls the visit method of the visitor for this node
+     *
+     * @param visitor The visitor
+     */
+    protected abstract void dispatch(final ASTVisitor visitor);
+
+    /**
+     * @return The source text of this node, read from the source file on every call
+     */
+    @Nullable
+    public String getText() {
+        return source != null && start >= 0 ? source.getText(start, end) : null;
+    }
+
+    @Nullable
+    public String getFile() {
+        return source != null ? source.getName() : null;
+    }
 
 }
@@ -6,14 +6,76 @@ import org.bw.tl.compiler.resolve.ExpressionResolver;
 import org.objectweb.asm.Type;
 import org.jetbrains.annotations.NotNull;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @EqualsAndHashCode(callSuper = true)
 public @Data class QualifiedName extends Expression {
 
+    /**
+     * Name arrays shared by every qualified name with the same names, the arrays must not be modified. An
+     * array is only kept while a qualified name uses it, so a long running compiler does not keep the names
+     * of every compilation
+     */
+    private static final Map<List<String>, SharedNames> NAMES = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<String[]> COLLECTED = new ReferenceQueue<>();
+
     @NotNull
     private final String[] names;
 
     public QualifiedName(@NotNull final String... names) {
-        this.names = names;
+        this.names = intern(names);
+    }
+
+    /**
+     * @param names The names
+     * @return The shared array with the same names, the names themselves are interned as well
+     */
+    @NotNull
+    private static String[] intern(@NotNull final String[] names) {
+        removeCollected();
+
+        final SharedNames shared = NAMES.get(Arrays.asList(names));
+        final String[] sharedNames = shared != null ? shared.get() : null;
+
+        if (sharedNames != null)
+            return sharedNames;
+
+        final String[] interned = new String[names.length];
+
+        for (int i = 0; i < names.length; i++) {
+            interned[i] = names[i].intern();
+        }
+
+        // the key must not reference the array, or the array would never be collected
+        final List<String> key = Arrays.asList(interned.clone());
+        final SharedNames created = new SharedNames(key, interned);
+
+        while (true) {
+            final SharedNames previous = NAMES.putIfAbsent(key, created);
+
+            if (previous == null)
+                return interned;
+
+            final String[] previousNames = previous.get();
+
+            if (previousNames != null)
+                return previousNames;
+
+            if (NAMES.replace(key, previous, created))
+                return interned;
+        }
+    }
+
+    private static void removeCollected() {
+        for (Reference<? extends String[]> ref = COLLECTED.poll(); ref != null; ref = COLLECTED.poll()) {
+            NAMES.remove(((SharedNames) ref).key, ref);
+        }
     }
 
     @NotNull
@@ -86,12 +148,12 @@ public @Data class QualifiedName extends Expression {
     }
 
     @Override
-    public void accept(@NotNull final ASTVisitor visitor) {
+    protected void dispatch(@NotNull final ASTVisitor visitor) {
         visitor.visitName(this);
     }
 
     @Override
-    public Type resolveType(@NotNull final ExpressionResolver resolver) {
+    protected Type computeType(@NotNull final ExpressionResolver resolver) {
         return resolver.resolveName(this);
     }
 
@@ -142,4 +204,14 @@ public @Data class QualifiedName extends Expression {
     public String getDesc() {
         return "L" + toInternalName() + ";";
     }
+
+    private static class SharedNames extends WeakReference<String[]> {
+
+        private final List<String> key;
+
+        private SharedNames(@NotNull final List<String> key, @NotNull final String[] names) {
+            super(names, COLLECTED);
+            this.key = key;
+        }
+    }
 }
@@ -9,7 +9,7 @@ public @Data class Return extends Node {
     private final Expression expression;
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitReturn(this);
     }
 }
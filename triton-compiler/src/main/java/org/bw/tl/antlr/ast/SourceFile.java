@@ -0,0 +1,51 @@
+package org.bw.tl.antlr.ast;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.misc.Interval;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A source file shared by every node parsed from it. Nodes keep offsets into the file
+ * and read their text from here when asked, instead of each holding a copy
+ */
+@EqualsAndHashCode(of = "name")
+@RequiredArgsConstructor(staticName = "of")
+public class SourceFile {
+
+    private final @Getter @NotNull String name;
+    private final @NotNull CharStream input;
+
+    /**
+     * @param start The offset of the first character
+     * @param end The offset after the last character
+     * @return The text between the two offsets
+     */
+    @NotNull
+    public String getText(final int start, final int end) {
+        return input.getText(Interval.of(start, end - 1));
+    }
+
+    /**
+     * Sets the position of the node to the span of the specified context
+     *
+     * @param node The node
+     * @param ctx The context the node was built from
+     * @return The node
+     */
+    public <T extends Node> T locate(@NotNull final T node, @NotNull final ParserRuleContext ctx) {
+        node.setSource(this);
+        node.setLineNumber(ctx.start.getLine());
+        node.setStart(ctx.start.getStartIndex());
+        node.setEnd(ctx.stop != null ? ctx.stop.getStopIndex() + 1 : ctx.start.getStartIndex());
+        return node;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
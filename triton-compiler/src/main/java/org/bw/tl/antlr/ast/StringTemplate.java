@@ -0,0 +1,31 @@
+package org.bw.tl.antlr.ast;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.bw.tl.compiler.resolve.ExpressionResolver;
+import org.objectweb.asm.Type;
+
+import java.util.List;
+
+/**
+ * A string literal with $name or ${expression} substitutions, split by the parser into the string
+ * literals between the substitutions and the substituted expressions
+ */
+@EqualsAndHashCode(callSuper = true)
+public @Data class StringTemplate extends Expression {
+
+    /**
+     * The string literals and the substituted expressions in order
+     */
+    private final List<Expression> parts;
+
+    @Override
+    protected void dispatch(final ASTVisitor visitor) {
+        visitor.visitStringTemplate(this);
+    }
+
+    @Override
+    protected Type computeType(final ExpressionResolver resolver) {
+        return resolver.resolveStringTemplate(this);
+    }
+}
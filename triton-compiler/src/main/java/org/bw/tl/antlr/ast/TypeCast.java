@@ -10,12 +10,12 @@ public @Data class TypeCast extends Expression {
     private final Expression expression;
 
     @Override
-    public Type resolveType(final ExpressionResolver resolver) {
+    protected Type computeType(final ExpressionResolver resolver) {
         return resolver.resolveTypeCast(this);
     }
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitTypeCast(this);
     }
 }
@@ -29,12 +29,12 @@ public @Data class TypeName extends QualifiedName {
     }
 
     @Override
-    public void accept(@NotNull final ASTVisitor visitor) {
+    protected void dispatch(@NotNull final ASTVisitor visitor) {
 
     }
 
     @Override
-    public Type resolveType(@NotNull final ExpressionResolver resolver) {
+    protected Type computeType(@NotNull final ExpressionResolver resolver) {
         return resolver.resolveTypeName(this);
     }
 
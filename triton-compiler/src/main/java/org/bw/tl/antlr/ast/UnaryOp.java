@@ -12,12 +12,12 @@ public @Data class UnaryOp extends Expression {
     private final String operator;
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitUnaryOp(this);
     }
 
     @Override
-    public Type resolveType(final ExpressionResolver resolver) {
+    protected Type computeType(final ExpressionResolver resolver) {
         return resolver.resolveUnaryOp(this);
     }
 }
@@ -21,7 +21,7 @@ public @Data class When extends Expression {
     private final Node elseBranch;
 
     @Override
-    public Type resolveType(final ExpressionResolver resolver) {
+    protected Type computeType(final ExpressionResolver resolver) {
         if (shouldPop())
             return null;
 
@@ -33,7 +33,7 @@ public @Data class When extends Expression {
     }
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitWhen(this);
     }
 }
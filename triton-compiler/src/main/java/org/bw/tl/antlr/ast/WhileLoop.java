@@ -11,7 +11,7 @@ public @Data class WhileLoop extends Node {
     private final boolean doFirst;
 
     @Override
-    public void accept(final ASTVisitor visitor) {
+    protected void dispatch(final ASTVisitor visitor) {
         visitor.visitWhile(this);
     }
 }
@@ -6,6 +6,7 @@ import org.bw.tl.antlr.GrammarBaseVisitor;
 import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.ast.Block;
 import org.bw.tl.antlr.ast.Node;
+import org.bw.tl.antlr.ast.SourceFile;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -13,7 +14,7 @@ import java.util.List;
 @RequiredArgsConstructor(staticName = "of")
 public class BlockVisitor extends GrammarBaseVisitor<Block> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
     public Block visitBlock(final GrammarParser.BlockContext ctx) {
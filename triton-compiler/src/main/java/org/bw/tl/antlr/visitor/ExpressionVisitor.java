@@ -13,7 +13,7 @@ import java.util.stream.Collectors;
 @AllArgsConstructor(staticName = "of")
 public class ExpressionVisitor extends GrammarBaseVisitor<Expression> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
     public Expression visitExpression(final GrammarParser.ExpressionContext ctx) {
@@ -31,7 +31,7 @@ public class ExpressionVisitor extends GrammarBaseVisitor<Expression> {
             expression = ctx.name.accept(FQNVisitor.of(sourceFile));
         } else if (ctx.call != null) {
             final Expression precedingExpr = ctx.preceeding != null ? ctx.preceeding.accept(this) : null;
-            final String name = ctx.call.IDENTIFIER().getText();
+            final String name = ctx.call.identifier().getText();
 
             final List<Expression> expressionList = ctx.call.expression().stream().map(ec -> ec.accept(this))
                     .collect(Collectors.toList());
@@ -81,17 +81,17 @@ public class ExpressionVisitor extends GrammarBaseVisitor<Expression> {
             final Expression lhs = ctx.preceeding != null ? ctx.preceeding.accept(this) : null;
             Expression rhs = ctx.assignment().val.accept(this);
 
-            final int start = ctx.assignment().IDENTIFIER().getText().length();
+            final int start = ctx.assignment().identifier().getText().length();
             final int end = ctx.assignment().getText().length() - ctx.assignment().val.getText().length();
             final String op = ctx.assignment().getText().substring(start, end);
             if (!op.equals("=")) {
-                final Expression fa = lhs != null ? new ExpressionFieldAccess(lhs, ctx.assignment().IDENTIFIER().getText()) :
-                        QualifiedName.of(ctx.assignment().IDENTIFIER().getText());
+                final Expression fa = lhs != null ? new ExpressionFieldAccess(lhs, ctx.assignment().identifier().getText()) :
+                        QualifiedName.of(ctx.assignment().identifier().getText());
 
                 rhs = new BinaryOp(fa, op.substring(0, 1), rhs);
             }
 
-            expression = new Assignment(lhs, ctx.assignment().IDENTIFIER().getText(), rhs);
+            expression = new Assignment(lhs, ctx.assignment().identifier().getText(), rhs);
 
             if (lhs != null)
                 lhs.setParent(expression);
@@ -101,9 +101,7 @@ public class ExpressionVisitor extends GrammarBaseVisitor<Expression> {
         if (expression == null)
             throw new NullPointerException();
 
-        expression.setFile(sourceFile);
-        expression.setText(ctx.getText());
-        expression.setLineNumber(ctx.start.getLine());
+        sourceFile.locate(expression, ctx);
 
         return expression;
     }
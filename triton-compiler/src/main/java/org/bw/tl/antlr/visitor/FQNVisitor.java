@@ -6,19 +6,18 @@ import org.antlr.v4.runtime.tree.ParseTree;
 import org.bw.tl.antlr.GrammarBaseVisitor;
 import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.ast.QualifiedName;
+import org.bw.tl.antlr.ast.SourceFile;
 
 @RequiredArgsConstructor(staticName = "of")
 public class FQNVisitor extends GrammarBaseVisitor<QualifiedName> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
     public QualifiedName visitFqn(final GrammarParser.FqnContext ctx) {
         final QualifiedName fqn = QualifiedName.of(ctx.getText());
 
-        fqn.setLineNumber(ctx.start.getLine());
-        fqn.setText(ctx.getText());
-        fqn.setFile(sourceFile);
+        sourceFile.locate(fqn, ctx);
 
         return fqn;
     }
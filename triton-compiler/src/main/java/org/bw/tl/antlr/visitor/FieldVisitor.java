@@ -7,16 +7,17 @@ import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.ast.Expression;
 import org.bw.tl.antlr.ast.Field;
 import org.bw.tl.antlr.ast.Modifier;
+import org.bw.tl.antlr.ast.SourceFile;
 import org.bw.tl.antlr.ast.TypeName;
 
 @AllArgsConstructor(staticName = "of")
 public class FieldVisitor extends GrammarBaseVisitor<Field> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
     public Field visitVarDef(final GrammarParser.VarDefContext ctx) {
-        final String name = ctx.IDENTIFIER().getText();
+        final String name = ctx.identifier().getText();
         final TypeName type = ctx.type() != null ? ctx.type().accept(TypeVisitor.of(sourceFile)) : null;
         Expression initialValue = null;
 
@@ -39,9 +40,7 @@ public class FieldVisitor extends GrammarBaseVisitor<Field> {
         if (initialValue != null)
             initialValue.setParent(field);
 
-        field.setText(ctx.getText());
-        field.setLineNumber(ctx.start.getLine());
-        field.setFile(sourceFile);
+        sourceFile.locate(field, ctx);
 
         return field;
     }
@@ -0,0 +1,853 @@
+package org.bw.tl.antlr.visitor;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.bw.tl.Error;
+import org.bw.tl.ErrorType;
+import org.bw.tl.antlr.GrammarBaseListener;
+import org.bw.tl.antlr.GrammarLexer;
+import org.bw.tl.antlr.GrammarParser;
+import org.bw.tl.antlr.ast.*;
+import org.bw.tl.compiler.resolve.ImportMap;
+import org.bw.tl.util.CompileUtilities;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Builds a {@link Clazz} from the events of a parser that does not build a parse tree. Every rule that
+ * produces a node pushes it onto a value stack when the rule exits, the enclosing rule takes the values
+ * that were pushed since it was entered. The nodes are the same as the ones built by {@link FileVisitor},
+ * but the parse tree is never retained and the nodes do not keep a copy of their source text
+ *
+ * <pre>
+ *     parser.setBuildParseTree(false);
+ *     parser.addParseListener(listener);
+ *     parser.file();
+ *     listener.getClazz();
+ * </pre>
+ *
+ * A file parsed with {@link GrammarParser#skeleton()} instead has functions whose block bodies are parsed
+ * by another listener the first time they are needed. The substitutions of string templates are parsed by
+ * another listener as well when their literal is built
+ */
+@RequiredArgsConstructor(staticName = "of")
+public class FileListener extends GrammarBaseListener {
+
+    private final @Getter String sourceFile;
+    private final GrammarParser parser;
+
+    private SourceFile source;
+
+    /**
+     * The file of the skipped body or substitution that is being parsed, or null if a file is parsed
+     */
+    private @Nullable SourceFile enclosing;
+
+    private final List<Object> values = new ArrayList<>();
+    private final Deque<Integer> marks = new ArrayDeque<>();
+    private ParserRuleContext lastExited;
+    private boolean failed;
+
+    /**
+     * The module, or null if the file has not been parsed or had syntax errors
+     */
+    private @Getter @Nullable Clazz clazz;
+
+    /**
+     * @param source The file the part is parsed from
+     * @param parser The parser of the part, its tokens have the positions of the part in the file
+     * @return A listener that builds the nodes of a part of the file
+     */
+    static FileListener forPart(@NotNull final SourceFile source, @NotNull final GrammarParser parser) {
+        final FileListener listener = FileListener.of(source.getName(), parser);
+        listener.enclosing = source;
+        return listener;
+    }
+
+    /**
+     * @return The expression parsed with {@link GrammarParser#templateHole()}, or null if it had syntax errors
+     */
+    @Nullable
+    Expression getExpression() {
+        return failed || values.isEmpty() ? null : (Expression) values.get(0);
+    }
+
+    @Override
+    public void enterEveryRule(final ParserRuleContext ctx) {
+        if (ctx.getParent() == null) {
+            // a new parse has started, the parser may have been reset after a failed attempt
+            values.clear();
+            marks.clear();
+            lastExited = null;
+            failed = false;
+            clazz = null;
+            source = enclosing != null ? enclosing : SourceFile.of(sourceFile, ctx.start.getInputStream());
+        }
+
+        if (failed(ctx))
+            return;
+
+        // a left recursive rule is entered again after its first operand has exited, that operand belongs to it
+        marks.push(lastExited != null && lastExited.getParent() == ctx ? values.size() - 1 : values.size());
+    }
+
+    @Override
+    public void exitEveryRule(final ParserRuleContext ctx) {
+        if (failed(ctx))
+            return;
+
+        lastExited = ctx;
+
+        final int mark = marks.pop();
+        final Object value;
+
+        switch (ctx.getRuleIndex()) {
+            case GrammarParser.RULE_file:
+            case GrammarParser.RULE_skeleton:
+                clazz = buildFile(children(mark));
+                return;
+            case GrammarParser.RULE_packageDef:
+                value = new PackageName((QualifiedName) children(mark).get(0));
+                break;
+            case GrammarParser.RULE_imp:
+                value = buildImport((GrammarParser.ImpContext) ctx, children(mark));
+                break;
+            case GrammarParser.RULE_fqn:
+            case GrammarParser.RULE_className:
+                children(mark);
+                value = source.locate(QualifiedName.of(getText(ctx)), ctx);
+                break;
+            case GrammarParser.RULE_modifier:
+                value = Modifier.valueOf(getText(ctx).toUpperCase());
+                break;
+            case GrammarParser.RULE_type:
+                value = buildType(ctx, children(mark));
+                break;
+            case GrammarParser.RULE_typeArgument:
+                children(mark);
+                value = TypeName.of(getText(ctx));
+                break;
+            case GrammarParser.RULE_functionParam:
+                value = buildParam((GrammarParser.FunctionParamContext) ctx, children(mark));
+                break;
+            case GrammarParser.RULE_functionDef:
+                value = buildFunction(ctx, ((GrammarParser.FunctionDefContext) ctx).name, children(mark));
+                break;
+            case GrammarParser.RULE_lazyFunctionDef:
+                value = buildFunction(ctx, ((GrammarParser.LazyFunctionDefContext) ctx).name, children(mark));
+                break;
+            case GrammarParser.RULE_lazyBlock:
+                children(mark);
+
+                // only the outermost braces are the body
+                if (ctx.getParent().getRuleIndex() == GrammarParser.RULE_lazyBlock)
+                    return;
+
+                value = new SkippedBlock(source, ctx.start.getStartIndex(), ctx.stop.getStopIndex() + 1,
+                        ctx.start.getLine(), ctx.start.getCharPositionInLine());
+                break;
+            case GrammarParser.RULE_varDef:
+                value = buildField((GrammarParser.VarDefContext) ctx, children(mark));
+                break;
+            case GrammarParser.RULE_block:
+                value = buildBlock(children(mark));
+                break;
+            case GrammarParser.RULE_statement:
+                value = buildStatement(ctx, children(mark));
+                break;
+            case GrammarParser.RULE_returnStatement:
+                value = buildReturn(children(mark));
+                break;
+            case GrammarParser.RULE_ifStatement:
+                value = buildIf(ctx, children(mark));
+                break;
+            case GrammarParser.RULE_whileStatement:
+                value = buildWhile(ctx, children(mark));
+                break;
+            case GrammarParser.RULE_forControl:
+                value = buildForControl((GrammarParser.ForControlContext) ctx, children(mark));
+                break;
+            case GrammarParser.RULE_forStatement:
+                value = buildFor(children(mark));
+                break;
+            case GrammarParser.RULE_whenCase:
+                value = buildWhenCase(ctx, children(mark));
+                break;
+            case GrammarParser.RULE_whenElse:
+                value = new ElseBranch((Node) children(mark).get(0));
+                break;
+            case GrammarParser.RULE_whenExpr:
+                value = buildWhen(children(mark));
+                break;
+            case GrammarParser.RULE_newStatement:
+                value = buildNew((GrammarParser.NewStatementContext) ctx, children(mark));
+                break;
+            case GrammarParser.RULE_typeCast:
+                value = buildTypeCast(children(mark));
+                break;
+            case GrammarParser.RULE_functionCall:
+                value = new CallSite(((GrammarParser.FunctionCallContext) ctx).name.getText(), expressions(children(mark)));
+                break;
+            case GrammarParser.RULE_assignment:
+                value = buildAssignment((GrammarParser.AssignmentContext) ctx, children(mark));
+                break;
+            case GrammarParser.RULE_literal:
+                value = source.locate(buildLiteral(ctx), ctx);
+                break;
+            case GrammarParser.RULE_listDef:
+                // there is no list node, the file is reported instead of failing the whole compilation
+                syntaxError(ctx.start, "List literals are not supported");
+                return;
+            case GrammarParser.RULE_expression:
+                value = source.locate(buildExpression((GrammarParser.ExpressionContext) ctx, children(mark)), ctx);
+                break;
+            default:
+                // the values of the rule are passed on to the enclosing rule
+                return;
+        }
+
+        values.add(value);
+    }
+
+    private Clazz buildFile(final List<Object> children) {
+        QualifiedName packageName = new QualifiedName("default");
+        final ArrayList<QualifiedName> imports = new ArrayList<>();
+        final ArrayList<Field> fields = new ArrayList<>();
+        final ArrayList<Function> functions = new ArrayList<>();
+
+        for (final Object child : children) {
+            if (child instanceof PackageName) {
+                packageName = ((PackageName) child).getName();
+            } else if (child instanceof QualifiedName) {
+                imports.add((QualifiedName) child);
+            } else if (child instanceof Function) {
+                functions.add((Function) child);
+            } else if (child instanceof Field) {
+                fields.add((Field) child);
+            }
+        }
+
+        return new Clazz(packageName, imports, new LinkedList<>(), fields, functions, sourceFile);
+    }
+
+    private QualifiedName buildImport(final GrammarParser.ImpContext ctx, final List<Object> children) {
+        final QualifiedName fileImport = (QualifiedName) children.get(0);
+        return ctx.wildcard != null ? fileImport.append(ImportMap.WILDCARD) : fileImport;
+    }
+
+    private TypeName buildType(final ParserRuleContext ctx, final List<Object> children) {
+        if (!ctx.stop.getText().equals(">"))
+            return TypeName.of(getText(ctx));
+
+        // the type arguments start after the name of the type
+        final TokenStream tokens = parser.getTokenStream();
+        int idx = ctx.start.getTokenIndex();
+
+        while (!tokens.get(idx).getText().equals("<"))
+            idx++;
+
+        final TypeName type = TypeName.of(getText(ctx.start, tokens.get(idx - 1)));
+
+        for (final Object child : children) {
+            if (child instanceof TypeName)
+                type.addTypeParameter((TypeName) child);
+        }
+
+        return type;
+    }
+
+    private Param buildParam(final GrammarParser.FunctionParamContext ctx, final List<Object> children) {
+        final List<Modifier> modifiers = new LinkedList<>();
+        TypeName type = null;
+
+        for (final Object child : children) {
+            if (child instanceof Modifier) {
+                modifiers.add((Modifier) child);
+            } else if (child instanceof TypeName) {
+                type = (TypeName) child;
+            }
+        }
+
+        return new Param(modifiers, type, ctx.name.getText());
+    }
+
+    private Function buildFunction(final ParserRuleContext ctx, final GrammarParser.IdentifierContext nameCtx,
+                                   final List<Object> children) {
+        final String name = nameCtx.getText();
+        final Object last = children.isEmpty() ? null : children.get(children.size() - 1);
+        final boolean shortForm = !(last instanceof Block || last instanceof SkippedBlock);
+
+        if (last instanceof Block || last instanceof SkippedBlock || (last instanceof Expression && !(last instanceof TypeName))) {
+            children.remove(children.size() - 1);
+        } else {
+            throw new IllegalStateException("No body for function: " + name);
+        }
+
+        TypeName type = TypeName.of("void");
+        final List<Modifier> modifiers = new LinkedList<>();
+        final List<Param> params = new ArrayList<>();
+
+        for (final Object child : children) {
+            if (child instanceof Modifier) {
+                modifiers.add((Modifier) child);
+            } else if (child instanceof Param) {
+                params.add((Param) child);
+            } else if (child instanceof TypeName) {
+                type = (TypeName) child;
+            }
+        }
+
+        final TypeName[] paramTypes = new TypeName[params.size()];
+        final String[] paramNames = new String[params.size()];
+        final List<Modifier>[] paramModifiers = new List[params.size()];
+
+        for (int i = 0; i < params.size(); i++) {
+            paramTypes[i] = params.get(i).getType();
+            paramNames[i] = params.get(i).getName();
+            paramModifiers[i] = params.get(i).getModifiers();
+        }
+
+        final Function function;
+
+        if (last instanceof SkippedBlock) {
+            function = new Function(paramTypes, paramNames, paramModifiers, name, (SkippedBlock) last, type);
+        } else {
+            function = new Function(paramTypes, paramNames, paramModifiers, name, (Node) last, type);
+            ((Node) last).setParent(function);
+        }
+
+        function.setShortForm(shortForm);
+        function.addModifiers(modifiers.toArray(new Modifier[0]));
+
+        source.locate(function, ctx);
+
+        return function;
+    }
+
+    private Field buildField(final GrammarParser.VarDefContext ctx, final List<Object> children) {
+        final List<Modifier> modifiers = new LinkedList<>();
+        TypeName type = null;
+        Expression initialValue = null;
+
+        for (final Object child : children) {
+            if (child instanceof Modifier) {
+                modifiers.add((Modifier) child);
+            } else if (child instanceof TypeName) {
+                type = (TypeName) child;
+            } else if (child instanceof Expression) {
+                initialValue = (Expression) child;
+            }
+        }
+
+        final Field field = new Field(ctx.name.getText(), type, initialValue);
+
+        if (ctx.val != null)
+            field.addModifiers(Modifier.FINAL);
+
+        field.setConstant(ctx.val != null);
+        field.addModifiers(modifiers.toArray(new Modifier[0]));
+
+        if (initialValue != null)
+            initialValue.setParent(field);
+
+        source.locate(field, ctx);
+
+        return field;
+    }
+
+    private Block buildBlock(final List<Object> children) {
+        final List<Node> statements = new LinkedList<>();
+        final Block block = new Block(statements);
+
+        for (final Object child : children) {
+            final Node stmt = (Node) child;
+            stmt.setParent(block);
+            statements.add(stmt);
+        }
+
+        return block;
+    }
+
+    private Node buildStatement(final ParserRuleContext ctx, final List<Object> children) {
+        final Node stmt = (Node) children.get(0);
+
+        if (stmt instanceof Expression)
+            ((Expression) stmt).setPop(true);
+
+        source.locate(stmt, ctx);
+
+        return stmt;
+    }
+
+    private Return buildReturn(final List<Object> children) {
+        final Expression retVal = children.isEmpty() ? null : (Expression) children.get(0);
+        final Return ret = new Return(retVal);
+
+        if (retVal != null)
+            retVal.setParent(ret);
+
+        return ret;
+    }
+
+    private IfStatement buildIf(final ParserRuleContext ctx, final List<Object> children) {
+        final Expression condition = (Expression) children.get(0);
+        final Node body = (Node) children.get(1);
+        final Node otherwise = children.size() > 2 ? (Node) children.get(2) : null;
+
+        final IfStatement stmt = new IfStatement(condition, body, otherwise);
+
+        body.setParent(stmt);
+        condition.setParent(stmt);
+
+        if (otherwise != null)
+            otherwise.setParent(stmt);
+
+        source.locate(stmt, ctx);
+
+        return stmt;
+    }
+
+    private WhileLoop buildWhile(final ParserRuleContext ctx, final List<Object> children) {
+        final boolean doWhile = ctx.start.getType() == GrammarParser.DO;
+        final Expression condition = (Expression) children.get(doWhile ? 1 : 0);
+        final Node body = (Node) children.get(doWhile ? 0 : 1);
+
+        final WhileLoop whileLoop = new WhileLoop(condition, body, doWhile);
+
+        body.setParent(whileLoop);
+        condition.setParent(whileLoop);
+
+        source.locate(whileLoop, ctx);
+
+        return whileLoop;
+    }
+
+    private Object buildForControl(final GrammarParser.ForControlContext ctx, final List<Object> children) {
+        if (ctx.name != null) { // for each
+            final List<Modifier> modifiers = new LinkedList<>();
+            TypeName type = null;
+            Expression iterableExpression = null;
+
+            for (final Object child : children) {
+                if (child instanceof Modifier) {
+                    modifiers.add((Modifier) child);
+                } else if (child instanceof TypeName) {
+                    type = (TypeName) child;
+                } else {
+                    iterableExpression = (Expression) child;
+                }
+            }
+
+            final Field field = new Field(ctx.name.getText(), type, null);
+            field.addModifiers(modifiers.toArray(new Modifier[0]));
+
+            if (ctx.val != null)
+                field.addModifiers(Modifier.FINAL);
+
+            return new ForEachControl(field, iterableExpression);
+        }
+
+        int idx = 0;
+        Node init = null;
+
+        if (ctx.init != null || (!children.isEmpty() && children.get(0) instanceof Field))
+            init = (Node) children.get(idx++);
+
+        final Expression condition = ctx.condition != null ? (Expression) children.get(idx++) : null;
+
+        return new ForControl(init, condition, expressions(children.subList(idx, children.size())));
+    }
+
+    private Node buildFor(final List<Object> children) {
+        final Object last = children.get(children.size() - 1);
+
+        if (!(last instanceof Node))
+            throw new IllegalStateException("No body for loop");
+
+        final Node body = (Node) last;
+        final Object control = children.size() > 1 ? children.get(0) : null;
+
+        if (control instanceof ForEachControl) {
+            final ForEachControl fctx = (ForEachControl) control;
+            final ForEachLoop loop = new ForEachLoop(fctx.getField(), fctx.getIterableExpression(), body);
+
+            fctx.getField().setParent(loop);
+            fctx.getIterableExpression().setParent(loop);
+            body.setParent(loop);
+
+            return loop;
+        } else if (control instanceof ForControl) {
+            final ForControl fctx = (ForControl) control;
+            final ForLoop loop = new ForLoop(fctx.getInit(), fctx.getCondition(), fctx.getUpdate(), body);
+
+            if (fctx.getInit() != null)
+                fctx.getInit().setParent(loop);
+
+            body.setParent(loop);
+            fctx.getUpdate().forEach(e -> e.setParent(loop));
+            fctx.getUpdate().forEach(e -> e.setPop(true));
+
+            return loop;
+        } else { // infinite loop
+            final ForLoop loop = new ForLoop(null, null, Collections.emptyList(), body);
+            body.setParent(loop);
+
+            return loop;
+        }
+    }
+
+    private WhenCase buildWhenCase(final ParserRuleContext ctx, final List<Object> children) {
+        if (ctx.start.getText().equals("is") || ctx.start.getText().equals("!is"))
+            throw new UnsupportedOperationException("Instance check not supported yet for 'when' expression");
+
+        return new WhenCase((Expression) children.get(0), (Node) children.get(1));
+    }
+
+    private When buildWhen(final List<Object> children) {
+        Expression expr = null;
+        Node elseBranch = null;
+        final List<WhenCase> cases = new LinkedList<>();
+
+        for (final Object child : children) {
+            if (child instanceof Expression) {
+                expr = (Expression) child;
+            } else if (child instanceof WhenCase) {
+                cases.add((WhenCase) child);
+            } else if (child instanceof ElseBranch) {
+                elseBranch = ((ElseBranch) child).getBranch();
+            }
+        }
+
+        final When when = new When(expr, cases, elseBranch);
+
+        for (final WhenCase whenCase : cases) {
+            whenCase.getBranch().setParent(when);
+            whenCase.getCondition().setParent(when);
+        }
+
+        if (expr != null)
+            expr.setParent(when);
+
+        if (elseBranch != null)
+            elseBranch.setParent(when);
+
+        return when;
+    }
+
+    private New buildNew(final GrammarParser.NewStatementContext ctx, final List<Object> children) {
+        final QualifiedName name;
+        final List<Expression> expressions = new LinkedList<>();
+
+        if (!children.isEmpty() && children.get(0) instanceof QualifiedName) {
+            name = QualifiedName.of(children.remove(0).toString());
+        } else {
+            name = QualifiedName.of(nextToken(ctx.start).getText());
+        }
+
+        final New newStmt = new New(name, expressions, ctx.array != null);
+        name.setParent(newStmt);
+
+        for (final Expression expr : expressions(children)) {
+            expr.setParent(newStmt);
+            expressions.add(expr);
+        }
+
+        return newStmt;
+    }
+
+    private TypeCast buildTypeCast(final List<Object> children) {
+        final QualifiedName type = (QualifiedName) children.get(0);
+        final Expression expression = (Expression) children.get(1);
+
+        final TypeCast typeCast = new TypeCast(type, expression);
+
+        type.setParent(typeCast);
+        expression.setParent(typeCast);
+
+        return typeCast;
+    }
+
+    private AssignmentSite buildAssignment(final GrammarParser.AssignmentContext ctx, final List<Object> children) {
+        return new AssignmentSite(ctx.name.getText(), ctx.op.getText(), (Expression) children.get(0));
+    }
+
+    private Expression buildLiteral(final ParserRuleContext ctx) {
+        final Token token = ctx.start;
+        final String text = token.getText();
+
+        switch (token.getType()) {
+            case GrammarParser.NULL:
+                return new Literal<>(null);
+            case GrammarParser.TRUE:
+            case GrammarParser.FALSE:
+                return new Literal<>(Boolean.parseBoolean(text));
+            case GrammarParser.StringLiteral:
+                return TemplateParser.parse(source, token, this::syntaxError);
+            case GrammarParser.FLOAT:
+                return new Literal<>(text.toLowerCase().contains("f") ? (Object) Float.parseFloat(text) :
+                        (Object) Double.parseDouble(text));
+            default:
+                return new Literal<>(Long.parseLong(text, token.getType() == GrammarParser.HEX ? 16 : 10));
+        }
+    }
+
+    /**
+     * Reports an error of a substitution or an unsupported construct as a syntax error of the file. The first
+     * stage of {@link CompileUtilities#parse} reports no errors and stops at the first one, the file is then
+     * parsed again with the error listeners
+     */
+    private void syntaxError(final Token token, final String msg) {
+        if (parser.getErrorHandler() instanceof BailErrorStrategy) {
+            failed = true;
+            throw new ParseCancellationException(msg);
+        }
+
+        parser.notifyErrorListeners(token, msg, null);
+    }
+
+    private Expression buildExpression(final GrammarParser.ExpressionContext ctx, final List<Object> children) {
+        final Object last = children.get(children.size() - 1);
+        final Expression expression;
+
+        if (ctx.wrapped != null || ctx.name != null) {
+            expression = (Expression) children.get(0);
+        } else if (ctx.id != null) {
+            final Expression preceding = (Expression) children.get(0);
+            expression = new ExpressionFieldAccess(preceding, ctx.id.getText());
+            preceding.setParent(expression);
+        } else if (ctx.call != null) {
+            final Expression precedingExpr = ctx.preceeding != null ? (Expression) children.get(0) : null;
+            final CallSite call = (CallSite) last;
+
+            expression = new Call(precedingExpr, call.getName(), call.getParameters());
+
+            if (precedingExpr != null) {
+                precedingExpr.setParent(expression);
+            }
+            for (final Expression expr : call.getParameters()) {
+                expr.setParent(expression);
+            }
+        } else if (ctx.indexed != null) {
+            final Expression lstMapOrArray = (Expression) children.get(0);
+            final Expression value = ctx.assign != null ? (Expression) last : null;
+            final List<Expression> indices = new LinkedList<>(expressions(children.subList(1,
+                    value != null ? children.size() - 1 : children.size())));
+            final ExpressionIndex eIdx = new ExpressionIndex(lstMapOrArray, indices, value);
+
+            lstMapOrArray.setParent(eIdx);
+            indices.forEach(e -> e.setParent(eIdx));
+            expression = eIdx;
+        } else if (ctx.lhs != null && ctx.rhs != null) {
+            final Expression lhs = (Expression) children.get(0);
+            final Expression rhs = (Expression) children.get(1);
+
+            expression = new BinaryOp(lhs, ctx.bop.getText(), rhs);
+            lhs.setParent(expression);
+            rhs.setParent(expression);
+        } else if (ctx.unaryOperand != null) {
+            final Expression uExpr = (Expression) children.get(0);
+
+            expression = new UnaryOp(uExpr, ctx.prefix.getText());
+            uExpr.setParent(expression);
+        } else if (last instanceof AssignmentSite) {
+            final AssignmentSite assignment = (AssignmentSite) last;
+            final Expression lhs = ctx.preceeding != null ? (Expression) children.get(0) : null;
+            Expression rhs = assignment.getValue();
+
+            if (!assignment.getOperator().equals("=")) {
+                final Expression fa = lhs != null ? new ExpressionFieldAccess(lhs, assignment.getName()) :
+                        QualifiedName.of(assignment.getName());
+
+                rhs = new BinaryOp(fa, assignment.getOperator().substring(0, 1), rhs);
+            }
+
+            expression = new Assignment(lhs, assignment.getName(), rhs);
+
+            if (lhs != null)
+                lhs.setParent(expression);
+            rhs.setParent(expression);
+        } else {
+            // literal, new, when, if and type cast
+            expression = (Expression) last;
+        }
+
+        return expression;
+    }
+
+    /**
+     * Removes the values that were pushed after the mark
+     */
+    private List<Object> children(final int mark) {
+        final List<Object> pushed = values.subList(mark, values.size());
+        final List<Object> children = new ArrayList<>(pushed);
+
+        pushed.clear();
+
+        return children;
+    }
+
+    private static List<Expression> expressions(final List<Object> children) {
+        final List<Expression> expressions = new ArrayList<>(children.size());
+
+        for (final Object child : children) {
+            expressions.add((Expression) child);
+        }
+
+        return expressions;
+    }
+
+    /**
+     * Once the parser reports an error the rules may exit without their values, the nodes of the
+     * file are not built
+     */
+    private boolean failed(final ParserRuleContext ctx) {
+        if (!failed && (ctx.exception != null || parser.getNumberOfSyntaxErrors() > 0))
+            failed = true;
+
+        return failed;
+    }
+
+    /**
+     * @return The text of the context without the hidden tokens, the same as {@link ParserRuleContext#getText()}
+     */
+    private String getText(final ParserRuleContext ctx) {
+        return getText(ctx.start, ctx.stop);
+    }
+
+    private String getText(final Token start, final Token stop) {
+        final TokenStream tokens = parser.getTokenStream();
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = start.getTokenIndex(); i <= stop.getTokenIndex(); i++) {
+            final Token token = tokens.get(i);
+
+            if (token.getChannel() == Token.DEFAULT_CHANNEL)
+                sb.append(token.getText());
+        }
+
+        return sb.toString();
+    }
+
+    private Token nextToken(final Token token) {
+        final TokenStream tokens = parser.getTokenStream();
+        int idx = token.getTokenIndex() + 1;
+
+        while (tokens.get(idx).getType() == GrammarParser.NL || tokens.get(idx).getChannel() != Token.DEFAULT_CHANNEL)
+            idx++;
+
+        return tokens.get(idx);
+    }
+
+    /**
+     * The range of a block body skipped by {@link GrammarParser#skeleton()}. The body is parsed from a copy of
+     * its own text, the tokens are shifted to the offsets of the body in the file so the nodes have the same
+     * positions as if the whole file had been parsed
+     */
+    @RequiredArgsConstructor
+    private static class SkippedBlock implements LazyBody {
+
+        private final SourceFile source;
+        private final int start;
+        private final int end;
+        private final int line;
+        private final int column;
+
+        @Nullable
+        @Override
+        public Block parse(@NotNull final List<Error> errors) {
+            final GrammarLexer lexer = new GrammarLexer(CharStreams.fromString(source.getText(start, end), source.getName()));
+            lexer.setLine(line);
+            lexer.setCharPositionInLine(column);
+            lexer.setTokenFactory(new ShiftedTokenFactory(start));
+            // the lexer errors have been reported when the file was parsed
+            lexer.removeErrorListeners();
+
+            final GrammarParser parser = new GrammarParser(new CommonTokenStream(lexer));
+            parser.setBuildParseTree(false);
+            parser.removeErrorListeners();
+            parser.addErrorListener(new BaseErrorListener() {
+                @Override
+                public void syntaxError(final Recognizer<?, ?> recognizer, final Object offendingSymbol, final int line,
+                                        final int column, final String msg, final RecognitionException e) {
+                    errors.add(ErrorType.SYNTAX_ERROR.newError(msg, source.getName(), line));
+                }
+            });
+
+            final FileListener listener = forPart(source, parser);
+            parser.addParseListener(listener);
+
+            CompileUtilities.parse(parser, GrammarParser::block);
+
+            if (parser.getNumberOfSyntaxErrors() != 0 || listener.values.isEmpty())
+                return null;
+
+            return (Block) listener.values.get(0);
+        }
+    }
+
+    /**
+     * Creates tokens at an offset from the positions in the stream they are lexed from
+     */
+    @RequiredArgsConstructor
+    static class ShiftedTokenFactory extends CommonTokenFactory {
+
+        private final int offset;
+
+        @Override
+        public CommonToken create(final Pair<TokenSource, CharStream> source, final int type, final String text,
+                                  final int channel, final int start, final int stop, final int line,
+                                  final int charPositionInLine) {
+            final CommonToken token = new CommonToken(source, type, channel, start + offset, stop + offset);
+
+            token.setLine(line);
+            token.setCharPositionInLine(charPositionInLine);
+            // the text can not be read from the stream at the shifted positions
+            token.setText(text != null ? text : source.b.getText(Interval.of(start, stop)));
+
+            return token;
+        }
+    }
+
+    private static @Data class PackageName {
+        private final QualifiedName name;
+    }
+
+    private static @Data class Param {
+        private final List<Modifier> modifiers;
+        private final TypeName type;
+        private final String name;
+    }
+
+    private static @Data class CallSite {
+        private final String name;
+        private final List<Expression> parameters;
+    }
+
+    private static @Data class AssignmentSite {
+        private final String name;
+        private final String operator;
+        private final Expression value;
+    }
+
+    private static @Data class ForControl {
+        private final Node init;
+        private final Expression condition;
+        private final List<Expression> update;
+    }
+
+    private static @Data class ForEachControl {
+        private final Field field;
+        private final Expression iterableExpression;
+    }
+
+    private static @Data class ElseBranch {
+        private final Node branch;
+    }
+}
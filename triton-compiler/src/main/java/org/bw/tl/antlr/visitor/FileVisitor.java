@@ -8,6 +8,8 @@ import org.bw.tl.antlr.ast.Clazz;
 import org.bw.tl.antlr.ast.Field;
 import org.bw.tl.antlr.ast.Function;
 import org.bw.tl.antlr.ast.QualifiedName;
+import org.bw.tl.antlr.ast.SourceFile;
+import org.bw.tl.compiler.resolve.ImportMap;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -19,28 +21,29 @@ public class FileVisitor extends GrammarBaseVisitor<Clazz> {
 
     @Override
     public Clazz visitFile(final GrammarParser.FileContext ctx) {
+        final SourceFile source = SourceFile.of(sourceFile, ctx.start.getInputStream());
         QualifiedName packageName = new QualifiedName("default");
         final ArrayList<QualifiedName> imports = new ArrayList<>();
         final ArrayList<Field> fields = new ArrayList<>();
         final ArrayList<Function> functions = new ArrayList<>();
 
         if (ctx.packageDef() != null) {
-            packageName = ctx.packageDef().fqn().accept(FQNVisitor.of(sourceFile));
+            packageName = ctx.packageDef().fqn().accept(FQNVisitor.of(source));
         }
 
         if (ctx.imp() != null) {
             for (final GrammarParser.ImpContext impCtx : ctx.imp()) {
-                final QualifiedName fileImport = impCtx.fqn().accept(FQNVisitor.of(sourceFile));
-                imports.add(fileImport);
+                final QualifiedName fileImport = impCtx.fqn().accept(FQNVisitor.of(source));
+                imports.add(impCtx.wildcard != null ? fileImport.append(ImportMap.WILDCARD) : fileImport);
             }
         }
 
         if (ctx.topLevelStatement() != null) {
             for (final GrammarParser.TopLevelStatementContext tlCtx : ctx.topLevelStatement()) {
                 if (tlCtx.functionDef() != null) {
-                    functions.add(tlCtx.functionDef().accept(FunctionVisitor.of(sourceFile)));
+                    functions.add(tlCtx.functionDef().accept(FunctionVisitor.of(source)));
                 } else if (tlCtx.varDef() != null) {
-                    fields.add(tlCtx.varDef().accept(FieldVisitor.of(sourceFile)));
+                    fields.add(tlCtx.varDef().accept(FieldVisitor.of(source)));
                 }
             }
         }
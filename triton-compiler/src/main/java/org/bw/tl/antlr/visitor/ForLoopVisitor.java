@@ -13,7 +13,7 @@ import java.util.List;
 @RequiredArgsConstructor(staticName = "of")
 public class ForLoopVisitor extends GrammarBaseVisitor<Node> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
     public Node visitForStatement(final GrammarParser.ForStatementContext ctx) {
@@ -24,7 +24,7 @@ public class ForLoopVisitor extends GrammarBaseVisitor<Node> {
         if (fctx != null && ctx.forControl().COLON() != null) { // for each
             final TypeName type = fctx.type() != null ? fctx.type().accept(TypeVisitor.of(sourceFile)) : null;
             final Expression iterableExpression = fctx.expression(0).accept(ExpressionVisitor.of(sourceFile));
-            final Field field = new Field(fctx.IDENTIFIER().getText(), type, null);
+            final Field field = new Field(fctx.identifier().getText(), type, null);
 
             if (fctx.modifierList() != null && fctx.modifierList().modifier() != null) {
                 for (final GrammarParser.ModifierContext modCtx : fctx.modifierList().modifier()) {
@@ -13,14 +13,14 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor(staticName = "of")
 public class FunctionVisitor extends GrammarBaseVisitor<Function> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
     public Function visitFunctionDef(final GrammarParser.FunctionDefContext ctx) {
         TypeName type = ctx.type() != null ? ctx.type().accept(TypeVisitor.of(sourceFile)):
                 TypeName.of("void");
 
-        final String name = ctx.IDENTIFIER().getText();
+        final String name = ctx.identifier().getText();
         boolean shortForm = false;
         final Node body;
 
@@ -52,7 +52,7 @@ public class FunctionVisitor extends GrammarBaseVisitor<Function> {
             paramTypes = ctx.functionParamDefs().functionParam().stream()
                     .map(p -> p.type().accept(TypeVisitor.of(sourceFile))).toArray(TypeName[]::new);
             paramNames = ctx.functionParamDefs().functionParam().stream()
-                    .map(p -> p.IDENTIFIER().getText()).toArray(String[]::new);
+                    .map(p -> p.identifier().getText()).toArray(String[]::new);
         }
 
         final Function function = new Function(paramTypes, paramNames, paramModifiers, name, body, type);
@@ -66,9 +66,7 @@ public class FunctionVisitor extends GrammarBaseVisitor<Function> {
 
         body.setParent(function);
 
-        function.setText(ctx.getText());
-        function.setFile(sourceFile);
-        function.setLineNumber(ctx.start.getLine());
+        sourceFile.locate(function, ctx);
 
         return function;
     }
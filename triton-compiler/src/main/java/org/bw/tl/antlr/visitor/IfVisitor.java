@@ -7,11 +7,12 @@ import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.ast.Expression;
 import org.bw.tl.antlr.ast.IfStatement;
 import org.bw.tl.antlr.ast.Node;
+import org.bw.tl.antlr.ast.SourceFile;
 
 @RequiredArgsConstructor(staticName = "of")
 public class IfVisitor extends GrammarBaseVisitor<IfStatement> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
     public IfStatement visitIfStatement(final GrammarParser.IfStatementContext ctx) {
@@ -32,9 +33,7 @@ public class IfVisitor extends GrammarBaseVisitor<IfStatement> {
         if (otherwise != null)
             otherwise.setParent(stmt);
 
-        stmt.setText(ctx.getText());
-        stmt.setLineNumber(ctx.start.getLine());
-        stmt.setFile(sourceFile);
+        sourceFile.locate(stmt, ctx);
 
         return stmt;
     }
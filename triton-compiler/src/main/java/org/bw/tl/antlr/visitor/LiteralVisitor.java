@@ -2,26 +2,31 @@ package org.bw.tl.antlr.visitor;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.bw.tl.antlr.GrammarBaseVisitor;
 import org.bw.tl.antlr.GrammarParser;
+import org.bw.tl.antlr.ast.Expression;
 import org.bw.tl.antlr.ast.Literal;
+import org.bw.tl.antlr.ast.SourceFile;
 
 @RequiredArgsConstructor(staticName = "of")
-public class LiteralVisitor extends GrammarBaseVisitor<Literal> {
+public class LiteralVisitor extends GrammarBaseVisitor<Expression> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
-    public Literal visitLiteral(final GrammarParser.LiteralContext ctx) {
-        Literal literal = null;
+    public Expression visitLiteral(final GrammarParser.LiteralContext ctx) {
+        Expression literal = null;
 
         if (ctx.NULL() != null) {
             literal = new Literal<>(null);
         } else if (ctx.bool() != null) {
             literal = new Literal<>(Boolean.parseBoolean(ctx.bool().getText()));
         } else if (ctx.string() != null) {
-            final String quote = ctx.string().getText();
-            literal = new Literal<>(quote.substring(1, quote.length() - 1));
+            literal = TemplateParser.parse(sourceFile, ctx.string().start, (token, msg) -> {
+                throw new ParseCancellationException("line " + token.getLine() + ":" + token.getCharPositionInLine() +
+                        " " + msg);
+            });
         } else if (ctx.number() != null) {
             final int radix = ctx.number().HEX() != null ? 16 : 10;
             final Object value;
@@ -40,9 +45,7 @@ public class LiteralVisitor extends GrammarBaseVisitor<Literal> {
         if (literal == null)
             throw new NullPointerException();
 
-        literal.setFile(sourceFile);
-        literal.setText(ctx.getText());
-        literal.setLineNumber(ctx.start.getLine());
+        sourceFile.locate(literal, ctx);
 
         return literal;
     }
@@ -7,6 +7,7 @@ import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.ast.Expression;
 import org.bw.tl.antlr.ast.New;
 import org.bw.tl.antlr.ast.QualifiedName;
+import org.bw.tl.antlr.ast.SourceFile;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -14,11 +15,11 @@ import java.util.List;
 @AllArgsConstructor(staticName = "of")
 public class NewVisitor extends GrammarBaseVisitor<New> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
     public New visitNewStatement(final GrammarParser.NewStatementContext ctx) {
-        final QualifiedName name = QualifiedName.of(ctx.fqn() != null ? ctx.fqn().getText() : ctx.primitiveType().getText());
+        final QualifiedName name = QualifiedName.of(ctx.className() != null ? ctx.className().getText() : ctx.primitiveType().getText());
         final List<Expression> expressions = new LinkedList<>();
 
         final New newStmt = new New(name, expressions, ctx.array != null);
@@ -7,11 +7,12 @@ import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.ast.Expression;
 import org.bw.tl.antlr.ast.Node;
 import org.bw.tl.antlr.ast.Return;
+import org.bw.tl.antlr.ast.SourceFile;
 
 @RequiredArgsConstructor(staticName = "of")
 public class StatementVisitor extends GrammarBaseVisitor<Node> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
     public Node visitStatement(final GrammarParser.StatementContext ctx) {
@@ -42,9 +43,7 @@ public class StatementVisitor extends GrammarBaseVisitor<Node> {
         if (stmt == null)
             throw new IllegalStateException();
 
-        stmt.setLineNumber(ctx.start.getLine());
-        stmt.setText(ctx.getText());
-        stmt.setFile(sourceFile);
+        sourceFile.locate(stmt, ctx);
 
         return stmt;
     }
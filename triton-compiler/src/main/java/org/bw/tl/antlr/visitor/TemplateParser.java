@@ -0,0 +1,261 @@
+package org.bw.tl.antlr.visitor;
+
+import org.antlr.v4.runtime.*;
+import org.bw.tl.antlr.GrammarLexer;
+import org.bw.tl.antlr.GrammarParser;
+import org.bw.tl.antlr.ast.*;
+import org.bw.tl.util.CompileUtilities;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Splits a string literal at its substitutions when the literal is parsed. A $name substitution becomes a
+ * name, the text of a ${expression} substitution is parsed as an expression whose tokens are shifted to
+ * their position in the file. A $ that does not start a name, or a ${ without its closing brace, is part
+ * of the string
+ */
+final class TemplateParser {
+
+    private TemplateParser() {
+    }
+
+    /**
+     * @param source The source file of the literal
+     * @param token The string literal
+     * @param errors Receives the syntax errors of the substituted expressions, with a token at the position
+     *               of each error
+     * @return The literal, or a {@link StringTemplate} if it has substitutions. The caller positions the node
+     */
+    @NotNull
+    static Expression parse(@NotNull final SourceFile source, @NotNull final Token token,
+                            @NotNull final BiConsumer<Token, String> errors) {
+        final String text = token.getText();
+        // the index of the closing quote
+        final int end = text.length() - 1;
+        final List<Expression> parts = new ArrayList<>();
+
+        int segment = 1;
+        int i = 1;
+
+        while (i < end) {
+            final char c = text.charAt(i);
+
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+
+            if (c != '$' || i + 1 >= end) {
+                i++;
+                continue;
+            }
+
+            final int hole = text.charAt(i + 1) == '{' ? holeEnd(text, i, end) : -1;
+            final int partEnd;
+            final Expression part;
+
+            if (hole > 0) {
+                partEnd = hole;
+                part = parseHole(source, token, i + 2, hole - 1, errors);
+            } else if (isNameStart(text.charAt(i + 1))) {
+                int nameEnd = i + 2;
+
+                while (nameEnd < end && isNamePart(text.charAt(nameEnd)))
+                    nameEnd++;
+
+                partEnd = nameEnd;
+                part = locate(QualifiedName.of(text.substring(i + 1, nameEnd)), source, token, i, nameEnd);
+            } else {
+                i++;
+                continue;
+            }
+
+            if (i > segment)
+                parts.add(locate(new Literal<>(text.substring(segment, i)), source, token, segment, i));
+
+            // a substitution that failed to parse has been reported
+            if (part != null)
+                parts.add(part);
+
+            segment = i = partEnd;
+        }
+
+        if (parts.isEmpty())
+            return new Literal<>(text.substring(1, end));
+
+        if (segment < end)
+            parts.add(locate(new Literal<>(text.substring(segment, end)), source, token, segment, end));
+
+        final StringTemplate template = new StringTemplate(parts);
+        parts.forEach(part -> part.setParent(template));
+
+        return template;
+    }
+
+    /**
+     * Finds the closing brace of a ${expression} substitution the same way the lexer does, braces and
+     * string literals in the expression are skipped
+     *
+     * @param text The text of the string literal
+     * @param start The index of the $
+     * @param end The index the substitution must close before
+     * @return The index after the closing brace, or -1 if the substitution is not closed
+     */
+    private static int holeEnd(final String text, final int start, final int end) {
+        int depth = 0;
+        int i = start + 2;
+
+        while (i < end) {
+            final char c = text.charAt(i);
+
+            if (c == '"') {
+                i = stringEnd(text, i, end);
+
+                if (i < 0)
+                    return -1;
+
+                continue;
+            }
+
+            if (c == '}') {
+                if (depth == 0)
+                    return i + 1;
+
+                depth--;
+            } else if (c == '{') {
+                depth++;
+            }
+
+            i++;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param text The text of the enclosing string literal
+     * @param start The index of the opening quote of a string literal in a substitution
+     * @param end The index the string must close before
+     * @return The index after the closing quote, or -1 if the string is not closed
+     */
+    private static int stringEnd(final String text, final int start, final int end) {
+        int i = start + 1;
+
+        while (i < end) {
+            final char c = text.charAt(i);
+
+            if (c == '"')
+                return i + 1;
+
+            final int hole = c == '$' && i + 1 < end && text.charAt(i + 1) == '{' ? holeEnd(text, i, end) : -1;
+
+            if (c == '\\') {
+                i += 2;
+            } else if (hole > 0) {
+                i = hole;
+            } else {
+                i++;
+            }
+        }
+
+        return -1;
+    }
+
+    @Nullable
+    private static Expression parseHole(final SourceFile source, final Token token, final int start, final int end,
+                                        final BiConsumer<Token, String> errors) {
+        final String text = token.getText();
+        final GrammarLexer lexer = new GrammarLexer(CharStreams.fromString(text.substring(start, end), source.getName()));
+        final HoleErrorListener listener = new HoleErrorListener(errors);
+
+        lexer.setLine(lineAt(token, start));
+        lexer.setCharPositionInLine(columnAt(token, start));
+        lexer.setTokenFactory(new FileListener.ShiftedTokenFactory(token.getStartIndex() + start));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(listener);
+
+        final GrammarParser parser = new GrammarParser(new CommonTokenStream(lexer));
+        parser.setBuildParseTree(false);
+        parser.removeErrorListeners();
+        parser.addErrorListener(listener);
+
+        final FileListener hole = FileListener.forPart(source, parser);
+        parser.addParseListener(hole);
+
+        CompileUtilities.parse(parser, GrammarParser::templateHole);
+
+        return listener.failed || parser.getNumberOfSyntaxErrors() != 0 ? null : hole.getExpression();
+    }
+
+    private static <T extends Node> T locate(final T node, final SourceFile source, final Token token,
+                                             final int start, final int end) {
+        node.setSource(source);
+        node.setLineNumber(lineAt(token, start));
+        node.setStart(token.getStartIndex() + start);
+        node.setEnd(token.getStartIndex() + end);
+        return node;
+    }
+
+    /**
+     * @return The line of a character of the literal, which may span lines
+     */
+    private static int lineAt(final Token token, final int index) {
+        final String text = token.getText();
+        int line = token.getLine();
+
+        for (int i = 0; i < index; i++) {
+            if (text.charAt(i) == '\n')
+                line++;
+        }
+
+        return line;
+    }
+
+    private static int columnAt(final Token token, final int index) {
+        final int newline = token.getText().lastIndexOf('\n', index - 1);
+        return newline < 0 ? token.getCharPositionInLine() + index : index - newline - 1;
+    }
+
+    private static boolean isNameStart(final char c) {
+        return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isNamePart(final char c) {
+        return isNameStart(c) || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * Passes the lexer and parser errors of a substitution on with a token at their position
+     */
+    private static class HoleErrorListener extends BaseErrorListener {
+
+        private final BiConsumer<Token, String> errors;
+        private boolean failed;
+
+        HoleErrorListener(final BiConsumer<Token, String> errors) {
+            this.errors = errors;
+        }
+
+        @Override
+        public void syntaxError(final Recognizer<?, ?> recognizer, final Object offendingSymbol, final int line,
+                                final int column, final String msg, final RecognitionException e) {
+            final Token token;
+
+            if (offendingSymbol instanceof Token) {
+                token = (Token) offendingSymbol;
+            } else {
+                final CommonToken position = new CommonToken(Token.INVALID_TYPE);
+                position.setLine(line);
+                position.setCharPositionInLine(column);
+                token = position;
+            }
+
+            failed = true;
+            errors.accept(token, msg);
+        }
+    }
+}
@@ -6,12 +6,13 @@ import org.bw.tl.antlr.GrammarBaseVisitor;
 import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.ast.Expression;
 import org.bw.tl.antlr.ast.QualifiedName;
+import org.bw.tl.antlr.ast.SourceFile;
 import org.bw.tl.antlr.ast.TypeCast;
 
 @RequiredArgsConstructor(staticName = "of")
 public class TypeCastVisitor extends GrammarBaseVisitor<TypeCast> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
     public TypeCast visitTypeCast(final GrammarParser.TypeCastContext ctx) {
@@ -2,6 +2,7 @@ package org.bw.tl.antlr.visitor;
 
 import lombok.Getter;
 import lombok.AllArgsConstructor;
+import org.bw.tl.antlr.ast.SourceFile;
 import org.bw.tl.antlr.ast.TypeName;
 import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.GrammarBaseVisitor;
@@ -9,7 +10,7 @@ import org.bw.tl.antlr.GrammarBaseVisitor;
 @AllArgsConstructor(staticName = "of")
 public class TypeVisitor extends GrammarBaseVisitor<TypeName> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
     public TypeName visitType(final GrammarParser.TypeContext ctx) {
@@ -6,6 +6,7 @@ import org.bw.tl.antlr.GrammarBaseVisitor;
 import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.ast.Expression;
 import org.bw.tl.antlr.ast.Node;
+import org.bw.tl.antlr.ast.SourceFile;
 import org.bw.tl.antlr.ast.When;
 import org.bw.tl.antlr.ast.WhenCase;
 
@@ -15,7 +16,7 @@ import java.util.List;
 @RequiredArgsConstructor(staticName = "of")
 public class WhenVisitor extends GrammarBaseVisitor<When> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
     public When visitWhenExpr(final GrammarParser.WhenExprContext ctx) {
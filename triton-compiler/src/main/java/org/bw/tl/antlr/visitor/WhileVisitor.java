@@ -6,12 +6,13 @@ import org.bw.tl.antlr.GrammarBaseVisitor;
 import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.ast.Expression;
 import org.bw.tl.antlr.ast.Node;
+import org.bw.tl.antlr.ast.SourceFile;
 import org.bw.tl.antlr.ast.WhileLoop;
 
 @RequiredArgsConstructor(staticName = "of")
 public class WhileVisitor extends GrammarBaseVisitor<WhileLoop> {
 
-    private final @Getter String sourceFile;
+    private final @Getter SourceFile sourceFile;
 
     @Override
     public WhileLoop visitWhileStatement(final GrammarParser.WhileStatementContext ctx) {
@@ -24,9 +25,7 @@ public class WhileVisitor extends GrammarBaseVisitor<WhileLoop> {
         body.setParent(whileLoop);
         condition.setParent(whileLoop);
 
-        whileLoop.setText(ctx.getText());
-        whileLoop.setLineNumber(ctx.start.getLine());
-        whileLoop.setFile(sourceFile);
+        sourceFile.locate(whileLoop, ctx);
 
         return whileLoop;
     }
@@ -6,44 +6,103 @@ import org.bw.tl.ErrorType;
 import org.bw.tl.antlr.ast.*;
 import org.bw.tl.compiler.resolve.ExpressionResolver;
 import org.bw.tl.compiler.resolve.ExpressionResolverImpl;
+import org.bw.tl.compiler.resolve.SymbolTable;
+import org.bw.tl.util.CompileProfiler;
+import org.bw.tl.util.CompileProfiler.Phase;
 import org.bw.tl.util.TypeUtilities;
 import org.bw.tl.verify.FunReturnVerifier;
 import org.bw.tl.verify.Verifiable;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassWriter;
-import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.MethodNode;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 import static org.objectweb.asm.ClassWriter.*;
 import static org.objectweb.asm.Opcodes.*;
 
+/**
+ * Generates the bytecode of a list of modules. Function descriptors are resolved up front on the calling
+ * thread, after which classes, and the functions of classes with many functions, can be generated on a
+ * {@link ForkJoinPool}. Every method is generated into a {@link MethodNode} that is written to its class
+ * in declaration order and the errors of each method are kept apart until all of them are done, so a
+ * parallel build produces the same bytes and reports the same errors in the same order as a sequential one
+ */
 public @Data class Compiler {
 
+    /**
+     * Classes with at least this many functions generate their functions in parallel
+     */
+    public static final int PARALLEL_FUNCTION_THRESHOLD = 8;
+
     private final Verifiable<Function> functionVerifiable = new FunReturnVerifier();
     private final List<Error> errors = new LinkedList<>();
     private final List<Clazz> classes;
+    private final SymbolTable symbolTable;
     private String parent = "java/lang/Object";
 
+    /**
+     * The class file version of the generated classes
+     */
+    private int target = V1_8;
+    private @Nullable ForkJoinPool pool;
+
     public Compiler(final List<Clazz> classes) {
         this.classes = classes;
+        this.symbolTable = new SymbolTable(classes);
     }
 
     public Compiler(final Clazz... classes) {
         this(Arrays.asList(classes));
     }
 
+    /**
+     * Compiles the modules. If a pool has been set the classes are generated in parallel on that pool,
+     * otherwise everything is generated on the calling thread
+     *
+     * @return The bytecode of each module by class name, or null if the compilation failed
+     */
     public Map<String, byte[]> compile() {
+        return compile(classes);
+    }
+
+    /**
+     * Compiles some of the modules, the other modules are only resolved against. The same compiler can
+     * be used to compile several lists of targets
+     *
+     * @param targets The modules to generate
+     * @return The bytecode of each target by class name, or null if the compilation failed
+     */
+    public Map<String, byte[]> compile(final List<Clazz> targets) {
         final HashMap<String, byte[]> classMap = new HashMap<>();
+        final byte[][] bytecode = new byte[targets.size()][];
+        final List<List<Error>> classErrors = new ArrayList<>(targets.size());
+        final List<Runnable> tasks = new ArrayList<>(targets.size());
+
+        try {
+            resolveFunctions();
+
+            for (int i = 0; i < targets.size(); i++) {
+                final int idx = i;
+                final List<Error> errorList = new LinkedList<>();
 
-        for (final Clazz clazz : classes) {
-            try {
-                classMap.put(clazz.getModuleClassName(), build(clazz));
-            } catch (final Throwable throwable) {
-                throwable.printStackTrace();
-                return null;
+                classErrors.add(errorList);
+                tasks.add(() -> bytecode[idx] = build(targets.get(idx), errorList));
             }
+
+            run(tasks, pool != null && tasks.size() > 1);
+        } catch (final Throwable throwable) {
+            throwable.printStackTrace();
+            return null;
+        }
+
+        for (int i = 0; i < targets.size(); i++) {
+            classMap.put(targets.get(i).getModuleClassName(), bytecode[i]);
+            errors.addAll(classErrors.get(i));
         }
 
         if (!errors.isEmpty())
@@ -52,15 +111,32 @@ public @Data class Compiler {
         return classMap;
     }
 
-    private byte[] build(final Clazz clazz) {
-        final ClassWriter cw = new ClassWriter(COMPUTE_FRAMES + COMPUTE_MAXS);
+    /**
+     * Resolves the descriptor of every function in declaration order. A function without a declared
+     * return type is typed while it is being resolved, which must not race with the generation of
+     * the functions that call it
+     */
+    private void resolveFunctions() {
+        try (final CompileProfiler.Timer timer = CompileProfiler.start(Phase.RESOLVE)) {
+            for (final Clazz clazz : classes) {
+                final ExpressionResolverImpl resolver = new ExpressionResolverImpl(clazz, classes, new Scope(), symbolTable);
+
+                for (final Function function : clazz.getFunctions()) {
+                    resolver.resolveFunctionCtx(clazz, function);
+                }
+            }
+        }
+    }
+
+    private byte[] build(final Clazz clazz, final List<Error> errors) {
+        final ClassWriter cw = new IndexedClassWriter(COMPUTE_FRAMES + COMPUTE_MAXS);
 
-        cw.visit(V1_8, ACC_PUBLIC + ACC_SUPER, clazz.getInternalName(), null,
+        cw.visit(target, ACC_PUBLIC + ACC_SUPER, clazz.getInternalName(), null,
                 parent, null);
 
-        buildClassInitializer(cw, clazz);
+        buildClassInitializer(cw, clazz, errors);
 
-        final ExpressionResolver resolver = new ExpressionResolverImpl(clazz, classes, new Scope());
+        final ExpressionResolver resolver = new ExpressionResolverImpl(clazz, classes, new Scope(), symbolTable);
 
         for (final Field field : clazz.getFields()) {
             if (field.getType() == null) {
@@ -78,56 +154,76 @@ public @Data class Compiler {
         }
 
         final Set<String> methodSignatures = new HashSet<>();
+        final List<Function> functions = clazz.getFunctions();
+        final MethodNode[] methods = new MethodNode[functions.size()];
+        final List<List<Error>> methodErrors = new ArrayList<>(functions.size());
+        final List<Runnable> tasks = new ArrayList<>(functions.size());
+
+        // the bodies skipped by a lazy parse are needed now, they are parsed together before any is generated
+        final List<Runnable> bodies = functions.stream().<Runnable>map(f -> () -> {
+            try (final CompileProfiler.Timer timer = CompileProfiler.start(Phase.PARSE)) {
+                f.parseBody();
+            }
+        }).collect(Collectors.toList());
+        run(bodies, pool != null && bodies.size() >= PARALLEL_FUNCTION_THRESHOLD);
+
+        for (int i = 0; i < functions.size(); i++) {
+            final Function function = functions.get(i);
+            final List<Error> errorList = new LinkedList<>();
+
+            methodErrors.add(errorList);
+
+            final List<Error> syntaxErrors = function.parseBody();
+
+            if (!syntaxErrors.isEmpty()) {
+                errorList.addAll(syntaxErrors);
+                continue;
+            }
 
-        for (final Function function : clazz.getFunctions()) {
             final Type methodDescriptor = resolver.resolveFunctionCtx(clazz, function);
 
             if (!functionVerifiable.isValid(function)) {
-                errors.add(ErrorType.GENERAL_ERROR.newError("Missing return statement", function));
+                errorList.add(ErrorType.GENERAL_ERROR.newError("Missing return statement", function));
                 continue;
             }
 
             if (methodDescriptor == null) {
-                errors.add(ErrorType.GENERAL_ERROR.newError("Invalid method signature", function));
+                errorList.add(ErrorType.GENERAL_ERROR.newError("Invalid method signature", function));
                 continue;
             }
 
             final String sig = TypeUtilities.getMethodSignature(function.getName(), methodDescriptor);
 
             if (methodSignatures.contains(sig)) {
-                errors.add(ErrorType.GENERAL_ERROR.newError("Duplicate method signature: " + sig, function));
+                errorList.add(ErrorType.GENERAL_ERROR.newError("Duplicate method signature: " + sig, function));
                 continue;
             }
 
             methodSignatures.add(sig);
 
-            final MethodVisitor mv = cw.visitMethod(function.getAccessModifiers(), function.getName(),
+            final MethodNode mn = new MethodNode(function.getAccessModifiers(), function.getName(),
                     methodDescriptor.getDescriptor(), null, null);
 
-            mv.visitCode();
-
-            final MethodCtx ctx = new MethodCtx(classes, function, clazz);
+            methods[i] = mn;
+            tasks.add(() -> buildFunction(mn, clazz, function, errorList));
+        }
 
-            final MethodImpl methodImpl = new MethodImpl(mv, ctx);
-            function.accept(methodImpl);
+        run(tasks, pool != null && tasks.size() >= PARALLEL_FUNCTION_THRESHOLD);
 
-            errors.addAll(ctx.getErrors());
+        // the frames and maximums are computed by the class writer while the methods are written to it
+        try (final CompileProfiler.Timer timer = CompileProfiler.start(Phase.FRAMES)) {
+            for (int i = 0; i < methods.length; i++) {
+                if (methods[i] != null)
+                    methods[i].accept(cw);
 
-            mv.visitMaxs(0, 0);
-            mv.visitEnd();
+                errors.addAll(methodErrors.get(i));
+            }
 
+            return cw.toByteArray();
         }
-
-        return cw.toByteArray();
     }
 
-    private void buildClassInitializer(final ClassWriter cw, final Clazz clazz) {
-
-        final MethodVisitor mv = cw.visitMethod(ACC_PUBLIC + ACC_STATIC, "<clinit>", "()V",
-                null, null);
-
-        mv.visitCode();
-
+    private void buildClassInitializer(final ClassWriter cw, final Clazz clazz, final List<Error> errors) {
         final List<Node> statements = clazz.getFields().stream().filter(stmt -> stmt.getType() != null)
                 .map(f -> new Assignment(null, f.getName(), f.getInitialValue()))
                 .collect(Collectors.toList());
@@ -136,14 +232,48 @@ public @Data class Compiler {
         final Function init = new Function(new TypeName[0], new String[0], new List[0], "<clinit>", block,
                 new TypeName("void"));
 
-        final MethodCtx ctx = new MethodCtx(classes, init, clazz);
+        final MethodNode mn = new MethodNode(ACC_PUBLIC + ACC_STATIC, "<clinit>", "()V", null, null);
 
-        final MethodImpl methodImpl = new MethodImpl(mv, ctx);
-        init.accept(methodImpl);
+        buildFunction(mn, clazz, init, errors);
+        mn.accept(cw);
+    }
 
-        errors.addAll(ctx.getErrors());
+    private void buildFunction(final MethodNode mn, final Clazz clazz, final Function function,
+                               final List<Error> errors) {
+        try (final CompileProfiler.Timer timer = CompileProfiler.start(Phase.CODEGEN)) {
+            mn.visitCode();
 
-        mv.visitMaxs(0, 0);
-        mv.visitEnd();
+            final MethodCtx ctx = new MethodCtx(classes, function, clazz, symbolTable);
+            ctx.setTarget(target);
+
+            final MethodImpl methodImpl = new MethodImpl(mn, ctx);
+            function.accept(methodImpl);
+
+            errors.addAll(ctx.getErrors());
+
+            mn.visitMaxs(0, 0);
+            mn.visitEnd();
+        }
+    }
+
+    /**
+     * Runs the tasks and waits for all of them to finish
+     *
+     * @param tasks The tasks
+     * @param parallel True to run the tasks on the pool, otherwise they are run on the calling thread
+     */
+    private void run(final List<Runnable> tasks, final boolean parallel) {
+        if (!parallel) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
+
+        final List<ForkJoinTask<?>> forks = tasks.stream().map(ForkJoinTask::adapt).collect(Collectors.toList());
+
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(forks);
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(forks)));
+        }
     }
 }
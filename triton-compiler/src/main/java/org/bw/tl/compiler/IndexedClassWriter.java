@@ -0,0 +1,28 @@
+package org.bw.tl.compiler;
+
+import org.bw.tl.util.ClassIndex;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * A class writer that merges the types of stack map frames with the {@link ClassIndex} of the compiler.
+ * The default implementation loads both classes with {@link Class#forName(String)}, which initializes
+ * classes of the compiled program in the compiler's JVM and fails for classes only on the compile class path
+ */
+public class IndexedClassWriter extends ClassWriter {
+
+    private final ClassIndex index;
+
+    public IndexedClassWriter(final int flags) {
+        this(flags, ClassIndex.getDefault());
+    }
+
+    public IndexedClassWriter(final int flags, final ClassIndex index) {
+        super(flags);
+        this.index = index;
+    }
+
+    @Override
+    protected String getCommonSuperClass(final String type1, final String type2) {
+        return index.getCommonSuperClass(type1, type2);
+    }
+}
@@ -6,6 +6,8 @@ import org.bw.tl.ErrorType;
 import org.bw.tl.antlr.ast.*;
 import org.bw.tl.compiler.resolve.ExpressionResolver;
 import org.bw.tl.compiler.resolve.ExpressionResolverImpl;
+import org.bw.tl.compiler.resolve.SymbolTable;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
 import java.util.LinkedList;
@@ -19,6 +21,24 @@ public @Data class MethodCtx {
     private final List<Clazz> classPath;
     private final Function function;
     private final Clazz clazz;
+    private final SymbolTable symbolTable;
+
+    /**
+     * The class file version of the class the method is generated in
+     */
+    private int target = Opcodes.V1_8;
+
+    public MethodCtx(final List<Clazz> classPath, final Function function, final Clazz clazz,
+                     final SymbolTable symbolTable) {
+        this.classPath = classPath;
+        this.function = function;
+        this.clazz = clazz;
+        this.symbolTable = symbolTable;
+    }
+
+    public MethodCtx(final List<Clazz> classPath, final Function function, final Clazz clazz) {
+        this(classPath, function, clazz, new SymbolTable(classPath));
+    }
 
     /**
      * Returns the expression resolver for the clazz that defined this method.
@@ -30,7 +50,7 @@ public @Data class MethodCtx {
      */
     public ExpressionResolver getResolver() {
         if (resolver == null) {
-            resolver = new ExpressionResolverImpl(clazz, classPath, scope);
+            resolver = new ExpressionResolverImpl(clazz, classPath, scope, symbolTable);
         }
         return resolver;
     }
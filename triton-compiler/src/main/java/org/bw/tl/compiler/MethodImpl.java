@@ -6,22 +6,40 @@ import org.bw.tl.antlr.ast.*;
 import org.bw.tl.compiler.resolve.*;
 import org.bw.tl.compiler.types.AnyTypeHandler;
 import org.bw.tl.compiler.types.TypeHandler;
+import org.bw.tl.util.CompileProfiler;
+import org.bw.tl.util.CompileProfiler.Counter;
 import org.bw.tl.util.TypeUtilities;
 import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static org.bw.tl.util.TypeUtilities.*;
 
 @EqualsAndHashCode(callSuper = false)
 public @Data class MethodImpl extends ASTVisitorBase implements Opcodes {
 
+
+    /**
+     * The class file version of Java 9, ASM 5 has no constant for it
+     */
+    private static final int V9 = 53;
+
+    /**
+     * The parameter slots of an invokedynamic concatenation, larger concatenations use a StringBuilder
+     */
+    private static final int MAX_CONCAT_SLOTS = 200;
+
+    private static final char CONCAT_ARG = '\u0001';
+    private static final char CONCAT_CONSTANT = '\u0002';
+    private static final Handle CONCAT_BOOTSTRAP = new Handle(H_INVOKESTATIC, "java/lang/invoke/StringConcatFactory",
+            "makeConcatWithConstants", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;" +
+            "Ljava/lang/invoke/MethodType;Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;", false);
+
     protected final @NotNull MethodVisitor mv;
     protected final @NotNull MethodCtx ctx;
 
@@ -57,6 +75,11 @@ public @Data class MethodImpl extends ASTVisitorBase implements Opcodes {
         }
     }
 
+    @Override
+    public void enterNode(final Node node) {
+        CompileProfiler.increment(Counter.NODES_VISITED);
+    }
+
     @Override
     public void visitFunction(final Function function) {
         ctx.beginScope();
@@ -67,7 +90,9 @@ public @Data class MethodImpl extends ASTVisitorBase implements Opcodes {
             if (function.getBody() instanceof Expression) {
                 final Expression retVal = (Expression) function.getBody();
                 final Type retType = retVal.resolveType(ctx.getResolver());
-                if (ctx.getReturnType().equals(Type.VOID_TYPE)) {
+                if (retType == null) {
+                    ctx.reportError("Cannot resolve expression", retVal);
+                } else if (ctx.getReturnType().equals(Type.VOID_TYPE)) {
                     // short-form function definition with where void return type is explicitly requested
                     retVal.accept(this);
 
@@ -259,15 +284,17 @@ public @Data class MethodImpl extends ASTVisitorBase implements Opcodes {
             return;
         }
 
+        final Type rangeElementType = getRangeElementType(iterableType);
         int dim = TypeUtilities.getDim(iterableType);
 
-        if (dim == 0) {
-            ctx.reportError("Expected array type but got " + iterableType.getClassName(), iterable);
+        if (dim == 0 && rangeElementType == null) {
+            ctx.reportError("Expected array or range type but got " + iterableType.getClassName(), iterable);
             return;
         }
 
         final Field field = forEachLoop.getField();
-        final Type expectedType = TypeUtilities.setDim(iterableType, dim - 1);
+        final Type expectedType = rangeElementType != null ? rangeElementType :
+                TypeUtilities.setDim(iterableType, dim - 1);
         Type fieldType = expectedType;
 
         if (field.getType() != null) {
@@ -284,6 +311,12 @@ public @Data class MethodImpl extends ASTVisitorBase implements Opcodes {
             }
         }
 
+        if (rangeElementType != null) {
+            rangeLoop(forEachLoop, rangeElementType, fieldType);
+            ctx.endScope();
+            return;
+        }
+
         ctx.getScope().putVar(" __ITERABLE__ ", iterableType, 0);
         iterable.accept(this);
         mv.visitVarInsn(ASTORE, ctx.getScope().findVar(" __ITERABLE__ ").getIndex());
@@ -552,20 +585,21 @@ public @Data class MethodImpl extends ASTVisitorBase implements Opcodes {
             }
         }
 
+        if (hasParameter && switchWhen(when, parameterType, whenType))
+            return;
+
         final TypeHandler paramTypeHandler = TypeUtilities.getTypeHandler(parameterType);
         final Label endLabel = new Label();
 
-        if (hasParameter) {
+        // the subject stays on the stack until a case matches, each case compares a copy of it
+        if (hasParameter)
             when.getData().accept(this);
-            duplicate(parameterType);
-        }
 
         final List<WhenCase> cases = when.getCases();
 
         for (int i = 0; i < cases.size(); i++) {
             final WhenCase whenCase = cases.get(i);
             final Type conditionType = whenCase.getCondition().resolveType(ctx.getResolver());
-            final Type branchType = resolveNode(whenCase.getBranch());
             final Label nextCaseLabel = new Label();
 
             if (conditionType == null) {
@@ -587,11 +621,17 @@ public @Data class MethodImpl extends ASTVisitorBase implements Opcodes {
                 if (!Type.BOOLEAN_TYPE.equals(conditionType)) {
                     ctx.reportError("Expected type boolean but got " + conditionType.getClassName(),
                             whenCase.getCondition());
+                    return;
                 }
+
+                whenCase.getCondition().accept(this);
+                mv.visitJumpInsn(IFEQ, nextCaseLabel);
             } else if (eqOperator != null) {
+                duplicate(parameterType);
                 whenCase.getCondition().accept(this);
                 eqOperator.applyCmp(mv, nextCaseLabel);
             } else {
+                duplicate(parameterType);
                 paramTypeHandler.toObject(mv);
                 whenCase.getCondition().accept(this);
                 conditionTypeHandler.toObject(mv);
@@ -600,35 +640,248 @@ public @Data class MethodImpl extends ASTVisitorBase implements Opcodes {
                 mv.visitJumpInsn(IFEQ, nextCaseLabel);
             }
 
-            whenCase.getBranch().accept(this);
-
-            if (whenType != null) {
-                typeCast(branchType, whenType);
-            }
+            if (hasParameter)
+                pop(parameterType);
 
+            whenBranch(when, whenCase.getBranch(), whenType);
             mv.visitJumpInsn(GOTO, endLabel);
 
             mv.visitLabel(nextCaseLabel);
+        }
 
-            if (hasParameter && i < cases.size() - 1) {
-                duplicate(parameterType);
-            }
+        if (hasParameter)
+            pop(parameterType);
+
+        if (when.getElseBranch() != null)
+            whenBranch(when, when.getElseBranch(), whenType);
+
+        mv.visitLabel(endLabel);
+
+        if (when.shouldPop() && whenType != null) {
+            pop(whenType);
+        }
+    }
+
+    /**
+     * Generates a when whose cases are distinct constants of an int-like or string subject as a switch. The
+     * subject is evaluated once and the case is found with a single tableswitch or lookupswitch, a string
+     * subject switches on its hash code and compares the strings of the matching hash. A null string matches
+     * no case. A constant that repeats an earlier case is never matched, the same as the chain of comparisons
+     *
+     * @return False if the when has to be generated as a chain of comparisons
+     */
+    private boolean switchWhen(final When when, final Type subjectType, final Type whenType) {
+        final List<WhenCase> cases = when.getCases();
+        final boolean isString = Type.getType(String.class).equals(subjectType);
+
+        // without an else branch a when that produces a value has nothing to produce when no case matches
+        if (cases.isEmpty() || (whenType != null && when.getElseBranch() == null))
+            return false;
+
+        if (!isString && subjectType.getSort() != Type.INT && subjectType.getSort() != Type.SHORT &&
+                subjectType.getSort() != Type.BYTE && subjectType.getSort() != Type.CHAR)
+            return false;
+
+        final Map<Object, Integer> constants = new LinkedHashMap<>();
+
+        for (int i = 0; i < cases.size(); i++) {
+            final Object constant = isString ? stringConstant(cases.get(i).getCondition()) :
+                    intConstant(cases.get(i).getCondition());
+
+            if (constant == null)
+                return false;
+
+            constants.putIfAbsent(constant, i);
+        }
+
+        final Label[] branchLabels = new Label[cases.size()];
+        final Label elseLabel = new Label();
+        final Label endLabel = new Label();
+
+        for (final int i : constants.values()) {
+            branchLabels[i] = new Label();
         }
 
-        final Type elseType = resolveNode(when.getElseBranch());
+        when.getData().accept(this);
 
-        if (when.getElseBranch() != null) {
-            when.getElseBranch().accept(this);
+        if (isString) {
+            stringSwitch(constants, branchLabels, elseLabel);
+        } else {
+            final TreeMap<Integer, Label> labels = new TreeMap<>();
+            constants.forEach((key, i) -> labels.put((Integer) key, branchLabels[i]));
+            intSwitch(labels, elseLabel);
+        }
 
-            if (whenType != null)
-                typeCast(elseType, whenType);
+        for (int i = 0; i < cases.size(); i++) {
+            if (branchLabels[i] == null)
+                continue;
+
+            mv.visitLabel(branchLabels[i]);
+            whenBranch(when, cases.get(i).getBranch(), whenType);
+            mv.visitJumpInsn(GOTO, endLabel);
         }
 
+        mv.visitLabel(elseLabel);
+
+        if (when.getElseBranch() != null)
+            whenBranch(when, when.getElseBranch(), whenType);
+
         mv.visitLabel(endLabel);
 
         if (when.shouldPop() && whenType != null) {
             pop(whenType);
         }
+
+        return true;
+    }
+
+    /**
+     * Generates a branch of a when, the value of the branch is the value of the when or is popped if the
+     * when is a statement, so every branch leaves the stack the same
+     */
+    private void whenBranch(final When when, final Node branch, final Type whenType) {
+        branch.accept(this);
+
+        final Type branchType = resolveNode(branch);
+
+        if (whenType != null) {
+            typeCast(branchType, whenType);
+        } else if (when.shouldPop() && branch instanceof Expression && !((Expression) branch).shouldPop() &&
+                branchType != null) {
+            pop(branchType);
+        }
+    }
+
+    /**
+     * Jumps from the string on the stack to the label of its case
+     *
+     * @param constants The strings and the index of their case
+     * @param branchLabels The labels of the cases
+     * @param elseLabel The label if no case matches
+     */
+    private void stringSwitch(final Map<Object, Integer> constants, final Label[] branchLabels, final Label elseLabel) {
+        final TreeMap<Integer, List<String>> buckets = new TreeMap<>();
+        final TreeMap<Integer, Label> labels = new TreeMap<>();
+
+        for (final Object constant : constants.keySet()) {
+            final int hash = constant.hashCode();
+
+            buckets.computeIfAbsent(hash, h -> new ArrayList<>()).add((String) constant);
+            labels.computeIfAbsent(hash, h -> new Label());
+        }
+
+        // the subject is only needed until the case is found
+        ctx.beginScope();
+        ctx.getScope().putVar(" __WHEN__ ", Type.getType(String.class), 0);
+
+        final int subject = ctx.getScope().findVar(" __WHEN__ ").getIndex();
+
+        mv.visitVarInsn(ASTORE, subject);
+        mv.visitVarInsn(ALOAD, subject);
+        mv.visitJumpInsn(IFNULL, elseLabel);
+        mv.visitVarInsn(ALOAD, subject);
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "hashCode", "()I", false);
+
+        intSwitch(labels, elseLabel);
+
+        for (final Map.Entry<Integer, List<String>> bucket : buckets.entrySet()) {
+            mv.visitLabel(labels.get(bucket.getKey()));
+
+            for (final String constant : bucket.getValue()) {
+                mv.visitVarInsn(ALOAD, subject);
+                mv.visitLdcInsn(constant);
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z", false);
+                mv.visitJumpInsn(IFNE, branchLabels[constants.get(constant)]);
+            }
+
+            mv.visitJumpInsn(GOTO, elseLabel);
+        }
+
+        ctx.endScope();
+    }
+
+    /**
+     * Jumps from the int on the stack to the label of its key with a tableswitch, or with a lookupswitch if
+     * the keys are sparse. The choice weighs the size and the time of each the same way javac does
+     *
+     * @param labels The labels of the keys in order of the keys
+     * @param defaultLabel The label if no key matches
+     */
+    private void intSwitch(final TreeMap<Integer, Label> labels, final Label defaultLabel) {
+        final long lo = labels.firstKey();
+        final long hi = labels.lastKey();
+        final long tableCost = 4 + (hi - lo + 1) + 3 * 3;
+        final long lookupCost = 3 + 2L * labels.size() + 3L * labels.size();
+
+        if (tableCost <= lookupCost) {
+            final Label[] table = new Label[(int) (hi - lo + 1)];
+            Arrays.fill(table, defaultLabel);
+            labels.forEach((key, label) -> table[(int) (key - lo)] = label);
+
+            mv.visitTableSwitchInsn((int) lo, (int) hi, defaultLabel, table);
+        } else {
+            final int[] keys = new int[labels.size()];
+            int i = 0;
+
+            for (final int key : labels.keySet()) {
+                keys[i++] = key;
+            }
+
+            mv.visitLookupSwitchInsn(defaultLabel, keys, labels.values().toArray(new Label[0]));
+        }
+    }
+
+    /**
+     * @return The value of an integer literal, or a negated one, if it fits in an int, otherwise null
+     */
+    private static Integer intConstant(final Expression expr) {
+        if (expr instanceof UnaryOp && "-".equals(((UnaryOp) expr).getOperator())) {
+            final Integer value = intConstant(((UnaryOp) expr).getExpression());
+            return value != null && value != Integer.MIN_VALUE ? -value : null;
+        }
+
+        if (!(expr instanceof Literal))
+            return null;
+
+        final Object value = ((Literal) expr).getValue();
+
+        if (value instanceof Character)
+            return (int) (Character) value;
+
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            final long val = ((Number) value).longValue();
+            return val >= Integer.MIN_VALUE && val <= Integer.MAX_VALUE ? (int) val : null;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The value of an integer literal, or a negated one, otherwise null
+     */
+    private static Long longConstant(final Expression expr) {
+        if (expr instanceof UnaryOp && "-".equals(((UnaryOp) expr).getOperator())) {
+            final Long value = longConstant(((UnaryOp) expr).getExpression());
+            return value != null && value != Long.MIN_VALUE ? -value : null;
+        }
+
+        if (!(expr instanceof Literal))
+            return null;
+
+        final Object value = ((Literal) expr).getValue();
+
+        if (value instanceof Character)
+            return (long) (Character) value;
+
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+            return ((Number) value).longValue();
+
+        return null;
+    }
+
+    private static String stringConstant(final Expression expr) {
+        return expr instanceof Literal && ((Literal) expr).getValue() instanceof String ?
+                (String) ((Literal) expr).getValue() : null;
     }
 
     @Override
@@ -816,43 +1069,627 @@ public @Data class MethodImpl extends ASTVisitorBase implements Opcodes {
         mv.visitLabel(endLabel);
     }
 
-    private int depthCounter = 0;
+    private static boolean isRangeOperator(final String operator) {
+        return "..".equals(operator) || "downTo".equals(operator) || "step".equals(operator) ||
+                "in".equals(operator);
+    }
 
-    private void stringAdd(final Expression lhs, final Expression rhs, final Type leftType, final Type rightType) {
-        if (depthCounter == 0) {
-            mv.visitTypeInsn(NEW, "java/lang/StringBuilder");
-            mv.visitInsn(DUP);
-            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V", false);
+    private void rangeOperator(final BinaryOp binaryOp, final Type leftType, final Type rightType) {
+        final Type type = binaryOp.resolveType(ctx.getResolver());
+
+        if (type == null) {
+            ctx.reportError("No such operator (" + leftType.getClassName() + " " + binaryOp.getOperator() +
+                    " " + rightType.getClassName() + ")", binaryOp);
+            return;
         }
 
-        depthCounter++;
+        if ("in".equals(binaryOp.getOperator())) {
+            inOperator(binaryOp.getLeftSide(), binaryOp.getRightSide(), leftType, rightType);
+        } else {
+            newRange(binaryOp, type);
+        }
 
-        append(lhs, leftType);
-        append(rhs, rightType);
+        if (binaryOp.shouldPop())
+            pop(type);
+    }
 
-        depthCounter--;
+    /**
+     * Creates the range of a range expression that is used as a value
+     */
+    private void newRange(final BinaryOp binaryOp, final Type rangeType) {
+        final Type elementType = getRangeElementType(rangeType);
+        final TypeHandler handler = getTypeHandler(elementType);
+        final RangeBounds range = rangeBounds(binaryOp);
+
+        if (range == null) {
+            // the step of a range value
+            binaryOp.getLeftSide().accept(this);
+            pushRangeValue(binaryOp.getRightSide(), elementType);
+            mv.visitMethodInsn(INVOKEVIRTUAL, rangeType.getInternalName(), "step",
+                    Type.getMethodDescriptor(rangeType, elementType), false);
+            return;
+        }
+
+        final Long constantStep = constantStep(range);
+
+        if (constantStep != null && constantStep <= 0)
+            return;
 
-        if (depthCounter == 0) {
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;", false);
+        ctx.beginScope();
+
+        final int first = putTemp(" __FIRST__ ", elementType);
+        final int end = putTemp(" __END__ ", elementType);
+        final int step = constantStep == null ? putTemp(" __STEP__ ", elementType) : -1;
+
+        pushRangeValue(range.getFirst(), elementType);
+        handler.store(mv, first);
+        pushRangeValue(range.getEnd(), elementType);
+        handler.store(mv, end);
+
+        if (constantStep == null) {
+            pushStep(range.getStep(), elementType);
+            handler.store(mv, step);
+        }
+
+        mv.visitTypeInsn(NEW, rangeType.getInternalName());
+        mv.visitInsn(DUP);
+        handler.load(mv, first);
+        handler.load(mv, end);
+
+        if (constantStep != null) {
+            pushRangeConstant(range.isDescending() ? -constantStep : constantStep, elementType);
+        } else {
+            handler.load(mv, step);
+
+            if (range.isDescending())
+                mv.visitInsn(isLong(elementType) ? LNEG : INEG);
         }
+
+        mv.visitMethodInsn(INVOKESPECIAL, rangeType.getInternalName(), "<init>",
+                Type.getMethodDescriptor(Type.VOID_TYPE, elementType, elementType, elementType), false);
+
+        ctx.endScope();
     }
 
-    private void append(final Expression expr, final Type type) {
-        Type typeToAppend = type;
+    /**
+     * Checks if a value is in a range. The value of a range expression is compared to its bounds and, if it has
+     * a step, its distance to the first value is checked to be a multiple of the step. A range value is asked
+     * if it contains the value
+     */
+    private void inOperator(final Expression value, final Expression rangeExpr, final Type valueType,
+                            final Type rangeType) {
+        final Type elementType = getRangeElementType(rangeType);
+        final TypeHandler handler = getTypeHandler(elementType);
+        final RangeBounds range = rangeBounds(rangeExpr);
+        final Long constantStep = range != null ? constantStep(range) : null;
+
+        if (constantStep != null && constantStep <= 0)
+            return;
+
+        ctx.beginScope();
+
+        final int index = putTemp(" __IN__ ", elementType);
+
+        value.accept(this);
+        typeCast(valueType, elementType);
+        handler.store(mv, index);
+
+        if (range == null) {
+            rangeExpr.accept(this);
+            handler.load(mv, index);
+            mv.visitMethodInsn(INVOKEVIRTUAL, rangeType.getInternalName(), "contains",
+                    Type.getMethodDescriptor(Type.BOOLEAN_TYPE, elementType), false);
+            ctx.endScope();
+            return;
+        }
+
+        final Label falseLabel = new Label();
+        final Label after = new Label();
+
+        if (constantStep != null && constantStep == 1) {
+            pushRangeValue(range.getFirst(), elementType);
+            handler.load(mv, index);
+            jumpIfPast(elementType, range.isDescending(), falseLabel);
+
+            handler.load(mv, index);
+            pushRangeValue(range.getEnd(), elementType);
+            jumpIfPast(elementType, range.isDescending(), falseLabel);
+        } else {
+            final int first = putTemp(" __FIRST__ ", elementType);
+            final int end = putTemp(" __END__ ", elementType);
+            final int step = constantStep == null ? putTemp(" __STEP__ ", elementType) : -1;
+
+            pushRangeValue(range.getFirst(), elementType);
+            handler.store(mv, first);
+            pushRangeValue(range.getEnd(), elementType);
+            handler.store(mv, end);
+
+            if (constantStep == null) {
+                pushStep(range.getStep(), elementType);
+                handler.store(mv, step);
+            }
+
+            handler.load(mv, first);
+            handler.load(mv, index);
+            jumpIfPast(elementType, range.isDescending(), falseLabel);
+
+            handler.load(mv, index);
+            handler.load(mv, end);
+            jumpIfPast(elementType, range.isDescending(), falseLabel);
+
+            // the distance from the first value is a multiple of the step
+            if (range.isDescending()) {
+                pushDistanceModulo(first, index, constantStep, step, elementType);
+            } else {
+                pushDistanceModulo(index, first, constantStep, step, elementType);
+            }
+
+            if (isLong(elementType)) {
+                mv.visitInsn(LCONST_0);
+                mv.visitInsn(LCMP);
+            }
 
-        if (!Type.getType(String.class).equals(type) && isAssignableFrom(type, Type.getType(Object.class))) {
-            typeToAppend = Type.getType(Object.class);
-        } else if (isAssignableFrom(type, Type.INT_TYPE)) {
-            typeToAppend = Type.INT_TYPE;
+            mv.visitJumpInsn(IFNE, falseLabel);
         }
 
-        final Type appendDesc = Type.getMethodType(Type.getType(StringBuilder.class), typeToAppend);
+        mv.visitInsn(ICONST_1);
+        mv.visitJumpInsn(GOTO, after);
+        mv.visitLabel(falseLabel);
+        mv.visitInsn(ICONST_0);
+        mv.visitLabel(after);
+
+        ctx.endScope();
+    }
+
+    /**
+     * Compiles a for loop over a range to a counted loop, a range expression is not created. The loop ends
+     * after the iteration of the last value the step reaches, so a range that ends at the largest value does
+     * not overflow the counter. The last value is computed before the loop, at compile time if the bounds and
+     * the step are constants
+     */
+    private void rangeLoop(final ForEachLoop forEachLoop, final Type elementType, final Type fieldType) {
+        final Expression iterable = forEachLoop.getIterableExpression();
+        final Type rangeType = iterable.resolveType(ctx.getResolver());
+        final RangeBounds range = rangeBounds(iterable);
+        final TypeHandler handler = getTypeHandler(elementType);
+        final Field field = forEachLoop.getField();
+        final Long constantStep = range != null ? constantStep(range) : null;
+
+        if (constantStep != null && constantStep <= 0)
+            return;
+
+        final int counter = putTemp(" __COUNTER__ ", elementType);
+        final int last = putTemp(" __LAST__ ", elementType);
+        final int step = constantStep == null ? putTemp(" __STEP__ ", elementType) : -1;
+        final boolean descending = range != null && range.isDescending();
+        final Label conditionalLabel = new Label();
+        final Label endLabel = new Label();
+
+        if (range != null) {
+            final Long first = longConstant(range.getFirst());
+            final Long end = longConstant(range.getEnd());
+
+            pushRangeValue(range.getFirst(), elementType);
+            handler.store(mv, counter);
+
+            if (first != null && end != null && constantStep != null) {
+                pushRangeConstant(lastElement(first, end, constantStep, descending), elementType);
+                handler.store(mv, last);
+
+                if (descending ? first < end : first > end)
+                    mv.visitJumpInsn(GOTO, endLabel);
+            } else {
+                pushRangeValue(range.getEnd(), elementType);
+                handler.store(mv, last);
+
+                if (constantStep == null) {
+                    pushStep(range.getStep(), elementType);
+                    handler.store(mv, step);
+                }
+
+                handler.load(mv, counter);
+                handler.load(mv, last);
+                jumpIfPast(elementType, descending, endLabel);
+
+                if (constantStep == null || constantStep != 1) {
+                    // the end less its distance from the last value the step reaches
+                    handler.load(mv, last);
+
+                    if (descending) {
+                        pushDistanceModulo(counter, last, constantStep, step, elementType);
+                    } else {
+                        pushDistanceModulo(last, counter, constantStep, step, elementType);
+                    }
+
+                    mv.visitInsn(isLong(elementType) ? descending ? LADD : LSUB : descending ? IADD : ISUB);
+                    handler.store(mv, last);
+                }
+            }
+        } else {
+            iterable.accept(this);
+            rangeProperty(rangeType, "getFirst", elementType, counter);
+            rangeProperty(rangeType, "getLast", elementType, last);
+            rangeProperty(rangeType, "getStep", elementType, step);
+            mv.visitMethodInsn(INVOKEVIRTUAL, rangeType.getInternalName(), "isEmpty", "()Z", false);
+            mv.visitJumpInsn(IFNE, endLabel);
+        }
+
+        mv.visitLabel(conditionalLabel);
+
+        ctx.beginScope();
+
+        ctx.getScope().putVar(field.getName(), fieldType, 0);
+        handler.load(mv, counter);
+        handler.store(mv, ctx.getScope().findVar(field.getName()).getIndex());
+
+        forEachLoop.getBody().accept(this);
+
+        ctx.endScope();
+
+        handler.load(mv, counter);
+        handler.load(mv, last);
+
+        if (isLong(elementType)) {
+            mv.visitInsn(LCMP);
+            mv.visitJumpInsn(IFEQ, endLabel);
+        } else {
+            mv.visitJumpInsn(IF_ICMPEQ, endLabel);
+        }
+
+        if (constantStep != null && !isLong(elementType) && constantStep <= Short.MAX_VALUE) {
+            mv.visitIincInsn(counter, (int) (descending ? -constantStep : constantStep));
+        } else {
+            // the step of a range value is negative for a descending range
+            handler.load(mv, counter);
+
+            if (constantStep != null) {
+                pushRangeConstant(constantStep, elementType);
+            } else {
+                handler.load(mv, step);
+            }
+
+            mv.visitInsn(isLong(elementType) ? descending ? LSUB : LADD : descending ? ISUB : IADD);
+            handler.store(mv, counter);
+        }
+
+        mv.visitJumpInsn(GOTO, conditionalLabel);
+        mv.visitLabel(endLabel);
+    }
+
+    /**
+     * Stores a property of the range on the stack, the range is left on the stack
+     */
+    private void rangeProperty(final Type rangeType, final String getter, final Type elementType, final int index) {
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKEVIRTUAL, rangeType.getInternalName(), getter,
+                Type.getMethodDescriptor(elementType), false);
+        getTypeHandler(elementType).store(mv, index);
+    }
+
+    /**
+     * @return The step of a range expression if it is a constant, 1 if the range has no step. A step that is
+     * not positive is reported
+     */
+    private Long constantStep(final RangeBounds range) {
+        if (range.getStep() == null)
+            return 1L;
+
+        final Long step = longConstant(range.getStep());
+
+        if (step != null && step <= 0)
+            ctx.reportError("Step must be positive, was: " + step, range.getStep());
+
+        return step;
+    }
+
+    /**
+     * Pushes a step that is not a constant, an IllegalArgumentException is thrown if it is not positive
+     */
+    private void pushStep(final Expression step, final Type elementType) {
+        final Label positive = new Label();
+
+        pushRangeValue(step, elementType);
+        getTypeHandler(elementType).dup(mv);
+
+        if (isLong(elementType)) {
+            mv.visitInsn(LCONST_0);
+            mv.visitInsn(LCMP);
+        }
+
+        mv.visitJumpInsn(IFGT, positive);
+
+        final String exception = Type.getInternalName(IllegalArgumentException.class);
+
+        mv.visitTypeInsn(NEW, exception);
+        mv.visitInsn(DUP);
+        mv.visitLdcInsn("Step must be positive");
+        mv.visitMethodInsn(INVOKESPECIAL, exception, "<init>", "(Ljava/lang/String;)V", false);
+        mv.visitInsn(ATHROW);
+        mv.visitLabel(positive);
+    }
+
+    /**
+     * Pushes the distance of two values of a range modulo its step, the first value is not less than the second.
+     * The distance of two ints is a long, the distance of two longs is treated as an unsigned long
+     */
+    private void pushDistanceModulo(final int from, final int to, final Long constantStep, final int step,
+                                    final Type elementType) {
+        final TypeHandler handler = getTypeHandler(elementType);
+        final boolean isLong = isLong(elementType);
+
+        handler.load(mv, from);
+
+        if (!isLong)
+            mv.visitInsn(I2L);
+
+        handler.load(mv, to);
+
+        if (!isLong)
+            mv.visitInsn(I2L);
+
+        mv.visitInsn(LSUB);
+
+        if (constantStep != null) {
+            pushRangeConstant(constantStep, Type.LONG_TYPE);
+        } else {
+            handler.load(mv, step);
+
+            if (!isLong)
+                mv.visitInsn(I2L);
+        }
+
+        if (isLong) {
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "remainderUnsigned", "(JJ)J", false);
+        } else {
+            mv.visitInsn(LREM);
+            mv.visitInsn(L2I);
+        }
+    }
+
+    /**
+     * @return The last value a step reaches from the first value without passing the end, or the end if the
+     * range is empty
+     */
+    private static long lastElement(final long first, final long end, final long step, final boolean descending) {
+        if (descending)
+            return first <= end ? end : end + Long.remainderUnsigned(first - end, step);
+
+        return first >= end ? end : end - Long.remainderUnsigned(end - first, step);
+    }
+
+    private void pushRangeValue(final Expression expr, final Type elementType) {
+        final Type type = expr.resolveType(ctx.getResolver());
 
         expr.accept(this);
 
-        if (!(expr instanceof BinaryOp) || !Type.getType(String.class).equals(type)) {
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", appendDesc.getDescriptor(), false);
+        if (type != null)
+            typeCast(type, elementType);
+    }
+
+    private void pushRangeConstant(final long value, final Type elementType) {
+        if (!isLong(elementType)) {
+            pushInteger((int) value);
+        } else if (value == 0 || value == 1) {
+            mv.visitInsn((int) (LCONST_0 + value));
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    /**
+     * Compares the two values on the stack and jumps if the first is greater, or less for a descending range
+     */
+    private void jumpIfPast(final Type elementType, final boolean descending, final Label label) {
+        if (isLong(elementType)) {
+            mv.visitInsn(LCMP);
+            mv.visitJumpInsn(descending ? IFLT : IFGT, label);
+        } else {
+            mv.visitJumpInsn(descending ? IF_ICMPLT : IF_ICMPGT, label);
+        }
+    }
+
+    private static boolean isLong(final Type type) {
+        return Type.LONG_TYPE.equals(type);
+    }
+
+    /**
+     * Declares a variable of the compiler in the current scope, a number is added to the name of the variable
+     * of a nested loop or expression
+     *
+     * @return The index of the variable
+     */
+    private int putTemp(final String name, final Type type) {
+        String unique = name;
+
+        for (int i = 1; !ctx.getScope().putVar(unique, type, 0); i++) {
+            unique = name + i;
         }
+
+        return ctx.getScope().findVar(unique).getIndex();
+    }
+
+    /**
+     * @return The bounds of a .., downTo or step expression, null if the expression is not one or is the step of
+     * a range value
+     */
+    private static RangeBounds rangeBounds(final Expression expr) {
+        if (!(expr instanceof BinaryOp))
+            return null;
+
+        final BinaryOp bop = (BinaryOp) expr;
+
+        switch (bop.getOperator()) {
+            case "..":
+                return new RangeBounds(bop.getLeftSide(), bop.getRightSide(), null, false);
+            case "downTo":
+                return new RangeBounds(bop.getLeftSide(), bop.getRightSide(), null, true);
+            case "step":
+                final RangeBounds range = rangeBounds(bop.getLeftSide());
+
+                return range != null && range.getStep() == null ? new RangeBounds(range.getFirst(), range.getEnd(),
+                        bop.getRightSide(), range.isDescending()) : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Generates a chain of string concatenations as a single concatenation. Adjacent string literals are
+     * joined at compile time. For a Java 9 or later target the other operands are passed to an invokedynamic
+     * of {@link java.lang.invoke.StringConcatFactory}, otherwise they are appended to one StringBuilder
+     * presized for the literals
+     *
+     * @param operands The operands in order
+     */
+    private void concat(final List<Expression> operands) {
+        final List<Object> parts = new ArrayList<>();
+        final List<Type> types = new ArrayList<>();
+        final StringBuilder constant = new StringBuilder();
+        int literalLength = 0;
+        int slots = 0;
+
+        for (final Expression operand : operands) {
+            if (operand instanceof Literal && ((Literal) operand).getValue() instanceof String) {
+                constant.append((String) ((Literal) operand).getValue());
+                continue;
+            }
+
+            final Type type = operand.resolveType(ctx.getResolver());
+
+            if (type == null) {
+                ctx.reportError("Cannot resolve expression", operand);
+                return;
+            }
+
+            if (constant.length() > 0) {
+                parts.add(constant.toString());
+                literalLength += constant.length();
+                constant.setLength(0);
+            }
+
+            parts.add(operand);
+            types.add(concatType(type));
+            slots += type.getSize();
+        }
+
+        if (constant.length() > 0) {
+            parts.add(constant.toString());
+            literalLength += constant.length();
+        }
+
+        if (types.isEmpty()) {
+            mv.visitLdcInsn(parts.isEmpty() ? "" : parts.get(0));
+        } else if (ctx.getTarget() >= V9 && slots <= MAX_CONCAT_SLOTS) {
+            indyConcat(parts, types);
+        } else {
+            builderConcat(parts, types, literalLength);
+        }
+    }
+
+    private void builderConcat(final List<Object> parts, final List<Type> types, final int literalLength) {
+        final String sb = "java/lang/StringBuilder";
+        int typeIdx = 0;
+
+        mv.visitTypeInsn(NEW, sb);
+        mv.visitInsn(DUP);
+        // the same 16 characters of slack for each operand that a default StringBuilder starts with
+        pushInteger(literalLength + 16 * types.size());
+        mv.visitMethodInsn(INVOKESPECIAL, sb, "<init>", "(I)V", false);
+
+        for (final Object part : parts) {
+            final Type type;
+
+            if (part instanceof String) {
+                mv.visitLdcInsn(part);
+                type = Type.getType(String.class);
+            } else {
+                ((Expression) part).accept(this);
+                type = types.get(typeIdx++);
+            }
+
+            mv.visitMethodInsn(INVOKEVIRTUAL, sb, "append",
+                    Type.getMethodDescriptor(Type.getType(StringBuilder.class), type), false);
+        }
+
+        mv.visitMethodInsn(INVOKEVIRTUAL, sb, "toString", "()Ljava/lang/String;", false);
+    }
+
+    private void indyConcat(final List<Object> parts, final List<Type> types) {
+        final StringBuilder recipe = new StringBuilder();
+        final List<Object> constants = new ArrayList<>();
+
+        for (final Object part : parts) {
+            if (part instanceof Expression) {
+                ((Expression) part).accept(this);
+                recipe.append(CONCAT_ARG);
+            } else if (((String) part).indexOf(CONCAT_ARG) >= 0 || ((String) part).indexOf(CONCAT_CONSTANT) >= 0) {
+                recipe.append(CONCAT_CONSTANT);
+                constants.add(part);
+            } else {
+                recipe.append((String) part);
+            }
+        }
+
+        final Object[] bsmArgs = new Object[constants.size() + 1];
+        bsmArgs[0] = recipe.toString();
+
+        for (int i = 0; i < constants.size(); i++) {
+            bsmArgs[i + 1] = constants.get(i);
+        }
+
+        mv.visitInvokeDynamicInsn("makeConcatWithConstants",
+                Type.getMethodDescriptor(Type.getType(String.class), types.toArray(new Type[0])), CONCAT_BOOTSTRAP,
+                bsmArgs);
+    }
+
+    /**
+     * @return The type an operand is passed to a concatenation as, the same overload of
+     * {@link StringBuilder#append} that javac would choose
+     */
+    private static Type concatType(final Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+            case Type.CHAR:
+            case Type.INT:
+            case Type.LONG:
+            case Type.FLOAT:
+            case Type.DOUBLE:
+                return type;
+            case Type.BYTE:
+            case Type.SHORT:
+                return Type.INT_TYPE;
+            default:
+                return Type.getType(String.class).equals(type) ? type : Type.getType(Object.class);
+        }
+    }
+
+    /**
+     * Adds the operands of a chain of string concatenations in order. A nested concatenation is flattened
+     * into the chain, other operands such as a numeric addition are kept as a single operand
+     */
+    private void flattenConcat(final Expression expr, final List<Expression> operands) {
+        if (isConcat(expr)) {
+            final BinaryOp bop = (BinaryOp) expr;
+
+            flattenConcat(bop.getLeftSide(), operands);
+            flattenConcat(bop.getRightSide(), operands);
+        } else if (expr instanceof StringTemplate) {
+            operands.addAll(((StringTemplate) expr).getParts());
+        } else {
+            operands.add(expr);
+        }
+    }
+
+    private boolean isConcat(final Expression expr) {
+        if (!(expr instanceof BinaryOp) || !"+".equals(((BinaryOp) expr).getOperator()))
+            return false;
+
+        final Type stringType = Type.getType(String.class);
+        final Type leftType = ((BinaryOp) expr).getLeftSide().resolveType(ctx.getResolver());
+        final Type rightType = ((BinaryOp) expr).getRightSide().resolveType(ctx.getResolver());
+
+        return leftType != null && rightType != null &&
+                (isAssignableFrom(leftType, stringType) || isAssignableFrom(rightType, stringType));
     }
 
     @Override
@@ -882,7 +1719,15 @@ public @Data class MethodImpl extends ASTVisitorBase implements Opcodes {
             return;
         } else if ((isAssignableFrom(leftType, stringType) || isAssignableFrom(rightType, stringType)) &&
                 "+".equals(binaryOp.getOperator())) {
-            stringAdd(lhs, rhs, leftType, rightType);
+            final List<Expression> operands = new ArrayList<>();
+            flattenConcat(binaryOp, operands);
+            concat(operands);
+
+            if (binaryOp.shouldPop())
+                mv.visitInsn(POP);
+            return;
+        } else if (isRangeOperator(binaryOp.getOperator())) {
+            rangeOperator(binaryOp, leftType, rightType);
             return;
         }
 
@@ -945,8 +1790,6 @@ public @Data class MethodImpl extends ASTVisitorBase implements Opcodes {
                 pushDouble((Double) value);
             } else if (value instanceof Boolean) {
                 pushInteger((Boolean) value ? 1 : 0);
-            } else if (value instanceof String) {
-                pushString(literal);
             } else {
                 mv.visitLdcInsn(value);
             }
@@ -955,71 +1798,12 @@ public @Data class MethodImpl extends ASTVisitorBase implements Opcodes {
         }
     }
 
-    private void pushString(final Literal<String> value) {
-        final String str = value.getValue();
-        final Pattern identifierPattern = Pattern.compile("\\$[a-zA-Z_][a-zA-Z_0-9]*");
-        final Matcher matcher = identifierPattern.matcher(str);
-        final List<Expression> expressions = new ArrayList<>();
-
-        int index = 0;
-
-        while (matcher.find()) {
-            final int end = matcher.end();
-            final int start = matcher.start();
-            final Literal<String> lhs = new Literal<>(str.substring(index, start));
-
-            lhs.setText(str.substring(index, start));
-            lhs.setLineNumber(value.getLineNumber());
-            lhs.setFile(value.getFile());
-            lhs.setParent(value);
-
-            if (start - index > 0) {
-                expressions.add(lhs);
-            }
-
-            final QualifiedName id = QualifiedName.of(str.substring(matcher.start() + 1, end));
-            id.setText(str.substring(matcher.start(), end));
-            id.setLineNumber(value.getLineNumber());
-            id.setFile(value.getFile());
-            id.setParent(value);
-
-            expressions.add(id);
-
-            index = end;
-        }
-
-        if (index < str.length()) {
-            final Literal<String> id = new Literal<>(str.substring(index));
-
-            id.setLineNumber(value.getLineNumber());
-            id.setText(str.substring(index));
-            id.setFile(value.getFile());
-            id.setParent(value);
-
-            expressions.add(id);
-        }
-
-        if (expressions.size() < 2) {
-            mv.visitLdcInsn(str);
-        } else {
-            final Expression bop = addExpressions(expressions);
-            bop.accept(this);
-        }
-    }
-
-    private Expression addExpressions(final List<Expression> expressions) {
-        final int len = expressions.size();
-
-        if (len == 2) {
-            return new BinaryOp(expressions.get(0), "+", expressions.get(1));
-        } else if (len == 1) {
-            return expressions.get(0);
-        }
-
-        final Expression lhs = addExpressions(expressions.subList(0, len / 2));
-        final Expression rhs = addExpressions(expressions.subList(len / 2, len));
+    @Override
+    public void visitStringTemplate(final StringTemplate template) {
+        concat(template.getParts());
 
-        return addExpressions(Arrays.asList(lhs, rhs));
+        if (template.shouldPop())
+            mv.visitInsn(POP);
     }
 
     @Override
@@ -1305,4 +2089,15 @@ public @Data class MethodImpl extends ASTVisitorBase implements Opcodes {
             mv.visitLdcInsn(value);
         }
     }
+
+    /**
+     * The bounds and step of a range expression, used to compile the expression without the range
+     */
+    private static @Data class RangeBounds {
+
+        private final Expression first;
+        private final Expression end;
+        private final Expression step;
+        private final boolean descending;
+    }
 }
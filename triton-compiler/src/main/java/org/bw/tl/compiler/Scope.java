@@ -4,19 +4,30 @@ import lombok.Data;
 import org.jetbrains.annotations.NotNull;
 import org.objectweb.asm.Type;
 
-import java.util.ArrayList;
-import java.util.Stack;
-
+import java.util.*;
+
+/**
+ * Local variables of a method. Variables are found by name through a hash map and every variable
+ * gets a local variable slot when it is declared. When a scope ends the slots of its variables are
+ * released and reused by later variables of the same type, keeping the frame small without ever
+ * giving a slot two different types
+ */
 public class Scope {
 
-    private final Stack<ArrayList<Var>> scope = new Stack<>();
+    private final Deque<List<Var>> scope = new ArrayDeque<>();
+    private final Map<String, Var> vars = new HashMap<>();
+    private final Map<String, Deque<Integer>> freeSlots = new HashMap<>();
+    private int slotCount = 0;
 
     public void beginScope() {
         scope.push(new ArrayList<>());
     }
 
     public void endScope() {
-        scope.pop();
+        for (final Var var : scope.pop()) {
+            vars.remove(var.getName());
+            freeSlots.computeIfAbsent(var.getType().getDescriptor(), desc -> new ArrayDeque<>()).push(var.getIndex());
+        }
     }
 
     public boolean putVar(@NotNull final String name, @NotNull final Type type, final int modifiers) {
@@ -24,41 +35,46 @@ public class Scope {
             return false;
         }
 
-        int idx = 0;
-        for (final ArrayList<Var> vars : scope) {
-            idx += vars.size();
+        final List<Var> frame = scope.getFirst();
+        final Deque<Integer> free = freeSlots.get(type.getDescriptor());
+        final int idx;
+
+        if (free != null && !free.isEmpty()) {
+            idx = free.pop();
+        } else {
+            idx = slotCount;
+            // long, double use 2 local indices
+            slotCount += type.getSize() == 2 ? 2 : 1;
         }
 
         final Var var = new Var(name, type, idx, modifiers);
 
-        scope.peek().add(var);
-
-        if (type.equals(Type.LONG_TYPE) || type.equals(Type.DOUBLE_TYPE)) {
-            final Var second = new Var(name + " _2", type, idx + 1, modifiers);
-            scope.peek().add(second);
-            // long, double use 2 local indices
-        }
+        frame.add(var);
+        vars.put(name, var);
 
         return true;
     }
 
     public Var findVar(@NotNull final String name) {
-        for (final ArrayList<Var> list : scope) {
-            for (final Var var : list) {
-                if (var.getName().equals(name)) {
-                    return var;
-                }
-            }
-        }
-        return null;
+        return vars.get(name);
     }
 
     public int count() {
         return scope.size();
     }
 
+    /**
+     * @return The number of local variable slots used so far
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
     public void clear() {
         scope.clear();
+        vars.clear();
+        freeSlots.clear();
+        slotCount = 0;
     }
 
     public static @Data class Var {
@@ -67,4 +83,4 @@ public class Scope {
         private final int index;
         private final int modifiers;
     }
-}
\ No newline at end of file
+}
@@ -14,6 +14,8 @@ public interface ExpressionResolver {
 
     Type resolveLiteral(Literal literal);
 
+    Type resolveStringTemplate(StringTemplate template);
+
     Type resolveName(QualifiedName name);
 
     Type resolveWhen(When when);
@@ -4,20 +4,37 @@ import lombok.Data;
 import org.bw.tl.antlr.ast.*;
 import org.bw.tl.compiler.Scope;
 import org.bw.tl.compiler.types.MethodComparator;
+import org.bw.tl.util.ClassIndex;
+import org.bw.tl.util.ClassIndex.MemberInfo;
+import org.bw.tl.util.CompileProfiler;
+import org.bw.tl.util.CompileProfiler.Counter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Type;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Executable;
-import java.lang.reflect.Method;
 import java.util.*;
 
 import static org.bw.tl.util.TypeUtilities.*;
+import static org.objectweb.asm.Opcodes.ACC_BRIDGE;
 import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
 
 public @Data class ExpressionResolverImpl implements ExpressionResolver {
 
+    private void addDependency(@NotNull final Clazz module) {
+        if (clazz != null)
+            symbolTable.addDependency(clazz, module);
+    }
+
+    /**
+     * Records a class of the class index the module depends on, called before each lookup in the index
+     */
+    private void addExternalDependency(@NotNull final String internalName) {
+        CompileProfiler.increment(Counter.CLASS_INDEX_LOOKUPS);
+
+        if (clazz != null)
+            symbolTable.addExternalDependency(clazz, internalName);
+    }
+
     public static FieldContext ARRAY_LENGTH = new FieldContext("length", "java/lang/Object",
             Type.INT_TYPE, ACC_PUBLIC, false);
 
@@ -27,6 +44,21 @@ public @Data class ExpressionResolverImpl implements ExpressionResolver {
     private final List<Clazz> classpath;
     private final Scope scope;
 
+    @NotNull
+    private final SymbolTable symbolTable;
+
+    public ExpressionResolverImpl(final Clazz clazz, @NotNull final List<Clazz> classpath, final Scope scope,
+                                  @NotNull final SymbolTable symbolTable) {
+        this.clazz = clazz;
+        this.classpath = classpath;
+        this.scope = scope;
+        this.symbolTable = symbolTable;
+    }
+
+    public ExpressionResolverImpl(final Clazz clazz, @NotNull final List<Clazz> classpath, final Scope scope) {
+        this(clazz, classpath, scope, new SymbolTable(classpath));
+    }
+
     @Nullable
     @Override
     public Type resolveBinaryOp(@NotNull final BinaryOp bop) {
@@ -51,6 +83,18 @@ public @Data class ExpressionResolverImpl implements ExpressionResolver {
         if ("&&".equals(bop.getOperator()) || "||".equals(bop.getOperator()))
             return Type.BOOLEAN_TYPE;
 
+        switch (bop.getOperator()) {
+            case "..":
+            case "downTo":
+                return getRangeType(lhs, rhs);
+            case "step":
+                final Type elementType = getRangeElementType(lhs);
+                return elementType != null && isRangeValue(rhs, elementType) ? lhs : null;
+            case "in":
+                final Type rangeElementType = getRangeElementType(rhs);
+                return rangeElementType != null && isRangeValue(lhs, rangeElementType) ? Type.BOOLEAN_TYPE : null;
+        }
+
         if ((isAssignableFrom(lhs, Type.getType(String.class)) || isAssignableFrom(rhs, Type.getType(String.class))) &&
                 "+".equals(bop.getOperator())) {
             return Type.getType(String.class);
@@ -82,9 +126,33 @@ public @Data class ExpressionResolverImpl implements ExpressionResolver {
         return ctx.getTypeDescriptor().getReturnType();
     }
 
+    /**
+     * The type of a when is the common type of its branches, the same as the type of an if
+     */
+    @Nullable
     @Override
     public Type resolveWhen(@NotNull final When when) {
-        return Type.getType(Object.class);
+        Type type = null;
+
+        for (final WhenCase whenCase : when.getCases()) {
+            final Type branchType = resolveNode(whenCase.getBranch());
+
+            if (branchType == null)
+                return null;
+
+            type = type != null ? getCommonType(type, branchType) : branchType;
+        }
+
+        if (when.getElseBranch() != null) {
+            final Type elseType = resolveNode(when.getElseBranch());
+
+            if (elseType == null)
+                return null;
+
+            type = type != null ? getCommonType(type, elseType) : elseType;
+        }
+
+        return type;
     }
 
     private Type resolveNode(final Node node) {
@@ -131,6 +199,15 @@ public @Data class ExpressionResolverImpl implements ExpressionResolver {
         return null;
     }
 
+    /**
+     * A template is a string whether or not its substitutions resolve, they are reported when it is generated
+     */
+    @NotNull
+    @Override
+    public Type resolveStringTemplate(@NotNull final StringTemplate template) {
+        return Type.getType(String.class);
+    }
+
     @Nullable
     @Override
     public Type resolveName(@NotNull final QualifiedName name) {
@@ -271,40 +348,48 @@ public @Data class ExpressionResolverImpl implements ExpressionResolver {
 
         final List<FieldContext> ctxList = new LinkedList<>();
         final String[] names = name.getNames();
+        final ImportMap imports = symbolTable.getSymbols(clazz).getImports();
 
-        for (final QualifiedName imp : clazz.getImports()) {
-            int idx = imp.length();
+        QualifiedName imp = null;
+        int idx = 0;
 
-            if (name.equals(imp)) // name is fqn not a field
-                return null;
+        // the name may start with the fully qualified name of an import
+        for (int i = 1; i <= names.length && imp == null; i++) {
+            final QualifiedName candidate = imports.get(names[i - 1]);
 
-            if (name.length() <= imp.length() || !imp.equals(name.subname(0, imp.length()))) {
-                if (imp.endsWith(names[0])) {
-                    idx = 1;
-                } else {
-                    continue;
-                }
+            if (candidate != null && candidate.length() == i && candidate.equals(name.subname(0, i))) {
+                if (i == names.length) // name is fqn not a field
+                    return null;
+
+                imp = candidate;
+                idx = i;
             }
+        }
 
-            Type type = resolveType(imp);
+        if (imp == null) {
+            imp = imports.get(names[0]);
+            idx = 1;
 
-            if (type == null)
+            if (imp == null)
                 return null;
+        }
 
-            for (int i = idx; i < names.length; i++) {
-                final FieldContext ctx = resolveFieldCtx(type, names[i]);
+        Type type = resolveType(imp);
 
-                if (ctx == null)
-                    return null;
+        if (type == null)
+            return null;
 
-                ctxList.add(ctx);
-                type = ctx.getTypeDescriptor();
-            }
+        for (int i = idx; i < names.length; i++) {
+            final FieldContext ctx = resolveFieldCtx(type, names[i]);
 
-            return ctxList.toArray(new FieldContext[0]);
+            if (ctx == null)
+                return null;
+
+            ctxList.add(ctx);
+            type = ctx.getTypeDescriptor();
         }
 
-        return null;
+        return ctxList.toArray(new FieldContext[0]);
     }
 
     private FieldContext[] resolveFieldFromLocalVar(@NotNull final QualifiedName fqn) {
@@ -392,54 +477,64 @@ public @Data class ExpressionResolverImpl implements ExpressionResolver {
     private SymbolContext resolveFunctionCtx(@NotNull final Type owner, @NotNull final String name, @NotNull final Type... parameterTypes) {
         for (final Clazz module : classpath) {
             if (module.getPackageName().getName().equals(owner.getClassName())) {
-                final Function fun = resolveFunctionCtx(name, parameterTypes);
-                if (fun != null) {
-                    final Type retType = getTypeFromName(fun.getType());
+                addDependency(module);
 
-                    if (retType == null)
-                        return null;
+                final SymbolContext ctx = resolveFunctionContext(module, name, parameterTypes);
 
-                    final Type methodType = resolveFunctionCtx(clazz, fun);
-
-                    if (methodType == null)
-                        return null;
-
-                    return new SymbolContext(fun.getName(), module.getInternalName(), methodType, fun.getAccessModifiers());
-                }
+                if (ctx != null)
+                    return ctx;
             }
         }
 
-        try {
-            return resolveFunctionCtx(Class.forName(owner.getClassName()), name, parameterTypes);
-        } catch (ClassNotFoundException ignored) {
-        }
-
-        return null;
+        return resolveClassFunctionCtx(owner, name, parameterTypes);
     }
 
     @Nullable
-    private SymbolContext resolveFunctionCtx(final @NotNull Class<?> clazz, @NotNull final String name, @NotNull final Type... parameterTypes) {
-        final List<Executable> candidates = new LinkedList<>();
+    private SymbolContext resolveClassFunctionCtx(@NotNull final Type owner, @NotNull final String name,
+                                                  @NotNull final Type... parameterTypes) {
+        if (owner.getSort() != Type.OBJECT)
+            return null;
 
-        for (final Method method : clazz.getMethods()) {
-            if (method.getName().equals(name)) {
-                final Class<?>[] types = method.getParameterTypes();
+        addExternalDependency(owner.getInternalName());
 
-                if (!method.getName().equals(name) || types.length != parameterTypes.length)
-                    continue;
+        return symbolTable.getOverload(owner.getInternalName(), name, parameterTypes, () -> {
+            final List<MemberInfo> candidates = new ArrayList<>();
 
-                candidates.add(method);
+            for (final MemberInfo method : ClassIndex.getDefault().getMethods(owner.getInternalName(), name)) {
+                if (Type.getArgumentTypes(method.getDesc()).length == parameterTypes.length)
+                    addCandidate(candidates, method);
+            }
+
+            int best = selectMember(candidates, parameterTypes);
+            if (best != -1) {
+                final MemberInfo method = candidates.get(best);
+                return new SymbolContext(name, owner.getInternalName(), Type.getMethodType(method.getDesc()),
+                        method.getAccess());
             }
-        }
 
-        int best = selectExecutable(candidates, parameterTypes);
-        if (best != -1) {
-            final Method method = (Method) candidates.get(best);
-            return new SymbolContext(name, clazz.getName().replace(".", "/"), Type.getType(method),
-                    method.getModifiers());
+            return null;
+        });
+    }
+
+    /**
+     * Adds a method to the candidate list. A bridge method with the same parameters as another
+     * candidate, such as one generated for a covariant return type, would make the call ambiguous
+     * so only the method it bridges to is kept
+     */
+    private static void addCandidate(@NotNull final List<MemberInfo> candidates, @NotNull final MemberInfo method) {
+        final String params = method.getDesc().substring(0, method.getDesc().indexOf(')') + 1);
+
+        for (int i = 0; i < candidates.size(); i++) {
+            final MemberInfo candidate = candidates.get(i);
+
+            if (candidate.getDesc().startsWith(params)) {
+                if ((candidate.getAccess() & ACC_BRIDGE) != 0)
+                    candidates.set(i, method);
+                return;
+            }
         }
 
-        return null;
+        candidates.add(method);
     }
 
     @Nullable
@@ -447,24 +542,24 @@ public @Data class ExpressionResolverImpl implements ExpressionResolver {
         if (name.length() == 0)
             return null;
 
-        QualifiedName typeName = name;
+        QualifiedName typeName = symbolTable.getSymbols(clazz).getImports().get(name.getNames()[0]);
 
-        for (final QualifiedName imp : clazz.getImports()) {
-            if (imp.endsWith(name.getNames()[0])) {
-                typeName = imp;
-            }
-        }
+        if (typeName == null)
+            typeName = name;
 
         for (final Clazz module : classpath) {
             if (module.getPackageName().getName().equals(typeName.getName())) {
+                addDependency(module);
                 return Type.getType(module.getPackageName().getDesc());
             }
         }
 
-        try {
-            return Type.getType(Class.forName(typeName.getName()));
-        } catch (ClassNotFoundException ignored) {
-        }
+        final String internalName = typeName.getName().replace('.', '/');
+
+        addExternalDependency(internalName);
+
+        if (ClassIndex.getDefault().contains(internalName))
+            return Type.getObjectType(internalName);
 
         return getTypeFromName(name);
     }
@@ -481,12 +576,16 @@ public @Data class ExpressionResolverImpl implements ExpressionResolver {
 
     @Nullable
     private SymbolContext resolveConstructorCtx(@NotNull final Type owner, @NotNull final Type... parameterTypes) {
-        try {
-            final Class<?> clazz = Class.forName(owner.getClassName());
-            final List<Executable> constructorList = new LinkedList<>();
+        if (owner.getSort() != Type.OBJECT)
+            return null;
 
-            for (final Constructor<?> constructor : clazz.getConstructors()) {
-                final Class<?>[] types = constructor.getParameterTypes();
+        addExternalDependency(owner.getInternalName());
+
+        return symbolTable.getOverload(owner.getInternalName(), "<init>", parameterTypes, () -> {
+            final List<MemberInfo> constructorList = new ArrayList<>();
+
+            for (final MemberInfo constructor : ClassIndex.getDefault().getConstructors(owner.getInternalName())) {
+                final Type[] types = Type.getArgumentTypes(constructor.getDesc());
 
                 if (types.length != parameterTypes.length)
                     continue;
@@ -494,19 +593,16 @@ public @Data class ExpressionResolverImpl implements ExpressionResolver {
                 constructorList.add(constructor);
             }
 
-            int best = selectExecutable(constructorList, parameterTypes);
+            int best = selectMember(constructorList, parameterTypes);
 
             if (best == -1)
                 return null;
 
-            final Constructor constructor = (Constructor) constructorList.get(best);
-
-            return new SymbolContext("<init>", owner.getInternalName(), Type.getType(constructor),
-                    constructor.getModifiers());
-        } catch (final ClassNotFoundException ignored) {
-        }
+            final MemberInfo constructor = constructorList.get(best);
 
-        return null;
+            return new SymbolContext("<init>", owner.getInternalName(), Type.getMethodType(constructor.getDesc()),
+                    constructor.getAccess());
+        });
     }
 
     @Nullable
@@ -516,6 +612,8 @@ public @Data class ExpressionResolverImpl implements ExpressionResolver {
 
         for (final Clazz module : classpath) {
             if (Type.getType(module.getDescriptor()).equals(owner)) {
+                addDependency(module);
+
                 final Field field = resolveFieldCtx(module, name);
 
                 if (field == null)
@@ -530,115 +628,109 @@ public @Data class ExpressionResolverImpl implements ExpressionResolver {
             }
         }
 
-        try {
-            return resolveFieldCtx(Class.forName(owner.getClassName()), name);
-        } catch (final ClassNotFoundException ignored) {
-        }
+        if (owner.getSort() != Type.OBJECT)
+            return null;
 
-        return null;
-    }
+        addExternalDependency(owner.getInternalName());
 
-    @Nullable
-    private FieldContext resolveFieldCtx(@NotNull final Class<?> clazz, @NotNull final String name) {
-        if (clazz.isArray() && name.equals("length"))
-            return ExpressionResolverImpl.ARRAY_LENGTH;
+        final MemberInfo f = ClassIndex.getDefault().getField(owner.getInternalName(), name);
+
+        if (f != null)
+            return new FieldContext(name, owner.getInternalName(), Type.getType(f.getDesc()), f.getAccess(), false);
 
-        try {
-            java.lang.reflect.Field f = clazz.getField(name);
-            return new FieldContext(name, Type.getType(clazz).getInternalName(), Type.getType(f.getType()), f.getModifiers(), false);
-        } catch (final NoSuchFieldException ignored) {
-        }
         return null;
     }
 
     @Nullable
     public SymbolContext resolveFunctionContext(@NotNull final String name, @NotNull final Type... parameterTypes) {
-        final Function function = resolveFunctionCtx(name, parameterTypes);
+        return resolveFunctionContext(clazz, name, parameterTypes);
+    }
 
-        if (function == null)
-            return null;
+    @Nullable
+    private SymbolContext resolveFunctionContext(@NotNull final Clazz module, @NotNull final String name,
+                                                 @NotNull final Type... parameterTypes) {
+        final List<Type> methodTypes = new ArrayList<>();
+        final List<Type[]> functionTypeList = new ArrayList<>();
+        final List<Function> functionList = new ArrayList<>();
 
-        final Type type = resolveFunctionCtx(clazz, function);
+        addDependency(module);
 
-        if (type == null)
+        for (final SymbolTable.FunctionSymbol symbol : symbolTable.getSymbols(module).getFunctions(name, parameterTypes.length)) {
+            final Type type = resolveFunctionCtx(module, symbol.getFunction());
+
+            if (type != null) {
+                methodTypes.add(type);
+                functionTypeList.add(type.getArgumentTypes());
+                functionList.add(symbol.getFunction());
+            }
+        }
+
+        final int idx = selectFun(functionTypeList, parameterTypes);
+
+        if (idx == -1)
             return null;
 
-        return new SymbolContext(function.getName(), clazz.getInternalName(), type, function.getAccessModifiers());
+        final Function function = functionList.get(idx);
+
+        return new SymbolContext(function.getName(), module.getInternalName(), methodTypes.get(idx),
+                function.getAccessModifiers());
     }
 
+    /**
+     * Selects the most specific applicable candidate in a single pass. The selection fails if no
+     * candidate is applicable or if the best candidate is not strictly better than every other
+     * applicable candidate
+     *
+     * @param functionArgList The parameter types of each candidate
+     * @param parameterTypes The argument types of the call
+     * @return The index of the selected candidate, or -1
+     */
     private int selectFun(@NotNull final List<Type[]> functionArgList, @NotNull final Type... parameterTypes) {
         final MethodComparator mc = new MethodComparator(parameterTypes);
+        final boolean[] applicable = new boolean[functionArgList.size()];
+        int best = -1;
 
-        final List<Type[]> types = new ArrayList<>(functionArgList);
-        types.sort(mc);
-
-        if (types.isEmpty())
-            return -1;
-
-        final Type[] bestTypes = types.get(0);
+        for (int i = 0; i < applicable.length; i++) {
+            applicable[i] = isApplicable(functionArgList.get(i), parameterTypes);
 
-        for (int i = 0; i < bestTypes.length; i++) {
-            if (!isAssignableFrom(parameterTypes[i], bestTypes[i]) &&
-                    !isAssignableWithImplicitCast(parameterTypes[i], bestTypes[i]))
-                return -1;
+            if (applicable[i] && (best == -1 || mc.compare(functionArgList.get(i), functionArgList.get(best)) < 0))
+                best = i;
         }
 
-        if (types.size() > 1) {
-            if (mc.compare(bestTypes, types.get(1)) >= 0) {
+        if (best == -1)
+            return -1;
+
+        for (int i = 0; i < applicable.length; i++) {
+            if (i != best && applicable[i] && mc.compare(functionArgList.get(best), functionArgList.get(i)) >= 0)
                 return -1;
-            }
         }
 
-        return functionArgList.indexOf(types.get(0));
+        return best;
     }
 
-    private int selectExecutable(@NotNull final List<Executable> executables, @NotNull final Type... parameterTypes) {
-        final LinkedList<Type[]> executableParamList = new LinkedList<>();
-
-        for (final Executable executable : executables) {
-            final Class<?>[] classes = executable.getParameterTypes();
-            final Type[] types = new Type[classes.length];
-
-            for (int i = 0; i < types.length; i++) {
-                types[i] = Type.getType(classes[i]);
-            }
-            executableParamList.add(types);
+    private static boolean isApplicable(@NotNull final Type[] types, @NotNull final Type... parameterTypes) {
+        for (int i = 0; i < types.length; i++) {
+            if (!isAssignableFrom(parameterTypes[i], types[i]) &&
+                    !isAssignableWithImplicitCast(parameterTypes[i], types[i]))
+                return false;
         }
 
-        return selectFun(executableParamList, parameterTypes);
+        return true;
     }
 
-    @Nullable
-    private Function resolveFunctionCtx(@NotNull final String name, @NotNull final Type... parameterTypes) {
-        final List<Type[]> functionTypeList = new LinkedList<>();
-        final List<Function> functionList = new LinkedList<>();
-
-        for (final Function function : clazz.getFunctions()) {
-            final TypeName[] types = function.getParameterTypes();
-
-            if (!function.getName().equals(name) || types.length != parameterTypes.length)
-                continue;
-
-            final Type type = resolveFunctionCtx(clazz, function);
-
-            if (type != null) {
-                functionTypeList.add(type.getArgumentTypes());
-                functionList.add(function);
-            }
+    private int selectMember(@NotNull final List<MemberInfo> members, @NotNull final Type... parameterTypes) {
+        final List<Type[]> memberParamList = new ArrayList<>(members.size());
 
+        for (final MemberInfo member : members) {
+            memberParamList.add(Type.getArgumentTypes(member.getDesc()));
         }
 
-        int idx = selectFun(functionTypeList, parameterTypes);
-
-        if (idx != -1)
-            return functionList.get(idx);
-
-        return null;
+        return selectFun(memberParamList, parameterTypes);
     }
 
     @Nullable
     public Type resolveType(@NotNull final Clazz clazz, final TypeName name) {
-        final QualifiedName imp = getNameFromImports(clazz.getImports(), name);
+        final QualifiedName imp = symbolTable.getSymbols(clazz).getImports().qualify(name);
 
         if (imp == null)
             return null;
@@ -671,8 +763,42 @@ public @Data class ExpressionResolverImpl implements ExpressionResolver {
         }
     }
 
+    /**
+     * Resolves the method descriptor of a function. Descriptors of functions declared by a module
+     * are resolved once per symbol table, in a scope that only contains the function's parameters
+     *
+     * @param clazz The module that declares the function
+     * @param function The function
+     * @return The method descriptor, or null if it cannot be resolved
+     */
     @Nullable
     public Type resolveFunctionCtx(@NotNull final Clazz clazz, @NotNull final Function function) {
+        final SymbolTable.FunctionSymbol symbol = symbolTable.getSymbols(clazz).getSymbol(function);
+
+        if (symbol == null)
+            return computeFunctionType(clazz, function);
+
+        if (!symbol.isResolved()) {
+            if (symbol.isResolving()) // the return type depends on itself
+                return null;
+
+            symbol.setResolving(true);
+
+            try {
+                final ExpressionResolverImpl resolver = new ExpressionResolverImpl(clazz, classpath, new Scope(),
+                        symbolTable);
+                symbol.setDescriptor(resolver.computeFunctionType(clazz, function));
+                symbol.setResolved(true);
+            } finally {
+                symbol.setResolving(false);
+            }
+        }
+
+        return symbol.getDescriptor();
+    }
+
+    @Nullable
+    private Type computeFunctionType(@NotNull final Clazz clazz, @NotNull final Function function) {
         final TypeName[] parameterTypes = function.getParameterTypes();
         final Type retType;
 
@@ -739,12 +865,7 @@ public @Data class ExpressionResolverImpl implements ExpressionResolver {
 
     @Nullable
     private Field resolveFieldCtx(@NotNull final Clazz clazz, @NotNull final String name) {
-        for (final Field field : clazz.getFields()) {
-            if (field.getName().equals(name)) {
-                return field;
-            }
-        }
-        return null;
+        return symbolTable.getSymbols(clazz).getField(name);
     }
 
     @Nullable
@@ -0,0 +1,95 @@
+package org.bw.tl.compiler.resolve;
+
+import org.bw.tl.antlr.ast.QualifiedName;
+import org.bw.tl.util.ClassIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the simple names imported by a module to their fully qualified names. Single type imports
+ * are indexed when the map is created, names imported with a wildcard such as {@code import java.util.*}
+ * are looked up in the {@link ClassIndex} on first use and remembered
+ */
+public class ImportMap {
+
+    public static final String WILDCARD = "*";
+
+    private static final QualifiedName NOT_IMPORTED = new QualifiedName();
+
+    private final Map<String, QualifiedName> imports = new HashMap<>();
+    private final Map<String, QualifiedName> wildcardImports = new ConcurrentHashMap<>();
+    private final List<QualifiedName> packages = new ArrayList<>();
+
+    public ImportMap(@NotNull final List<QualifiedName> imports) {
+        for (final QualifiedName imp : imports) {
+            if (imp.length() == 0)
+                continue;
+
+            if (isWildcard(imp)) {
+                packages.add(imp.removeLast());
+            } else {
+                // explicit imports are declared before the default imports, so the first one wins
+                this.imports.putIfAbsent(imp.getNames()[imp.length() - 1], imp);
+            }
+        }
+    }
+
+    /**
+     * @param name The simple name
+     * @return The fully qualified name that the simple name was imported as, otherwise null
+     */
+    @Nullable
+    public QualifiedName get(@NotNull final String name) {
+        final QualifiedName imp = imports.get(name);
+
+        if (imp != null || packages.isEmpty())
+            return imp;
+
+        QualifiedName wildcardImport = wildcardImports.get(name);
+
+        if (wildcardImport == null) {
+            wildcardImport = NOT_IMPORTED;
+
+            for (final QualifiedName pkg : packages) {
+                if (ClassIndex.getDefault().contains(pkg.toInternalName() + "/" + name)) {
+                    wildcardImport = pkg.append(name);
+                    break;
+                }
+            }
+
+            wildcardImports.put(name, wildcardImport);
+        }
+
+        return wildcardImport == NOT_IMPORTED ? null : wildcardImport;
+    }
+
+    /**
+     * Qualifies a type name with the imports of the module, names with more than one
+     * part are expected to be qualified already
+     *
+     * @param name The name of the type
+     * @return The imported name, or the name itself if it was not imported
+     */
+    @NotNull
+    public QualifiedName qualify(@NotNull final QualifiedName name) {
+        if (name.length() == 1) {
+            final QualifiedName imp = get(name.getNames()[0]);
+
+            if (imp != null)
+                return imp;
+        }
+
+        return name;
+    }
+
+    /**
+     * @param imp The import
+     * @return True if the import ends with a wildcard
+     */
+    public static boolean isWildcard(@NotNull final QualifiedName imp) {
+        return imp.endsWith(WILDCARD);
+    }
+}
@@ -1,6 +1,7 @@
 package org.bw.tl.compiler.resolve;
 
 import lombok.Data;
+import org.bw.tl.util.ClassIndex;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Label;
@@ -8,15 +9,27 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.bw.tl.util.TypeUtilities.getTypeFromName;
 import static org.bw.tl.util.TypeUtilities.isAssignableFrom;
 
 public @Data class Operator implements Opcodes {
 
-    private static final List<Operator> operators = new LinkedList<>();
+    /**
+     * Operand types indexed by their {@link Type#getSort() sort}
+     */
+    private static final Type[] PRIMITIVES = {Type.VOID_TYPE, Type.BOOLEAN_TYPE, Type.CHAR_TYPE, Type.BYTE_TYPE,
+            Type.SHORT_TYPE, Type.INT_TYPE, Type.FLOAT_TYPE, Type.LONG_TYPE, Type.DOUBLE_TYPE};
+
+    private static final List<Operator> operators = new ArrayList<>();
+    private static final Map<String, Integer> symbols = new HashMap<>();
+
+    /**
+     * Operators for primitive operands indexed by symbol, left sort and right sort
+     */
+    private static final Operator[][][] table;
 
     @NotNull
     private final String name;
@@ -183,9 +196,24 @@ public @Data class Operator implements Opcodes {
 
         addCmpOperator("==", IF_ICMPNE, "boolean");
         addCmpOperator("!=", IF_ICMPEQ, "boolean");
+
+        for (final Operator operator : operators) {
+            symbols.putIfAbsent(operator.getName(), symbols.size());
+        }
+
+        table = new Operator[symbols.size()][PRIMITIVES.length][PRIMITIVES.length];
+
+        for (final Map.Entry<String, Integer> symbol : symbols.entrySet()) {
+
+            for (final Type lhs : PRIMITIVES) {
+                for (final Type rhs : PRIMITIVES) {
+                    table[symbol.getValue()][lhs.getSort()][rhs.getSort()] = findOperator(symbol.getKey(), lhs, rhs);
+                }
+            }
+        }
     }
 
-    public static void addOperator(@NotNull final String name, final int opcode, final @NotNull String resultType,
+    private static void addOperator(@NotNull final String name, final int opcode, final @NotNull String resultType,
                                    @NotNull final String... applicableTypes) {
         final Type rt = getTypeFromName(resultType);
 
@@ -195,7 +223,7 @@ public @Data class Operator implements Opcodes {
         }
     }
 
-    public static void addCmpOperator(@NotNull final String name, final int opcode, final int branchOpcode, final @NotNull String type,
+    private static void addCmpOperator(@NotNull final String name, final int opcode, final int branchOpcode, final @NotNull String type,
                                       @NotNull final String... applicableTypes) {
         final Type pt = getTypeFromName(type);
         final Type rt = getTypeFromName("boolean");
@@ -206,13 +234,38 @@ public @Data class Operator implements Opcodes {
         }
     }
 
-    public static void addCmpOperator(@NotNull final String name, final int opcode, final @NotNull String type,
+    private static void addCmpOperator(@NotNull final String name, final int opcode, final @NotNull String type,
                                       @NotNull final String... applicableTypes) {
         addCmpOperator(name, opcode, -1, type, applicableTypes);
     }
 
+    /**
+     * Finds the operator for the specified operand types. The returned operator has the operand types as
+     * its left and right types and is shared, the same instance is returned for the same operands
+     *
+     * @param name The operator symbol
+     * @param lhs The type of the left operand
+     * @param rhs The type of the right operand
+     * @return The operator, or null if the operator is not defined for the operand types
+     */
     @Nullable
     public static Operator getOperator(@NotNull final String name, @NotNull final Type lhs, @NotNull final Type rhs) {
+        final Integer symbol = symbols.get(name);
+
+        if (symbol == null)
+            return null;
+
+        if (lhs.getSort() < PRIMITIVES.length && rhs.getSort() < PRIMITIVES.length)
+            return table[symbol][lhs.getSort()][rhs.getSort()];
+
+        // operators on reference types depend on the class path, they are remembered by the index they were found with
+        return ClassIndex.getDefault().getOperators().computeIfAbsent(name, n -> new ConcurrentHashMap<>())
+                .computeIfAbsent(lhs, type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(rhs, type -> Optional.ofNullable(findOperator(name, lhs, rhs))).orElse(null);
+    }
+
+    @Nullable
+    private static Operator findOperator(@NotNull final String name, @NotNull final Type lhs, @NotNull final Type rhs) {
         for (final Operator operator : operators) {
             if (operator.getName().equals(name)) {
                 if((isAssignableFrom(operator.lhs, lhs) && isAssignableFrom(operator.rhs, rhs)) ||
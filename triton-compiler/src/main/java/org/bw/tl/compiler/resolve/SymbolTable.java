@@ -0,0 +1,188 @@
+package org.bw.tl.compiler.resolve;
+
+import lombok.Data;
+import lombok.Getter;
+import org.bw.tl.antlr.ast.Clazz;
+import org.bw.tl.antlr.ast.Field;
+import org.bw.tl.antlr.ast.Function;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Type;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Symbols declared by the modules of a compilation. Functions are indexed by name and arity,
+ * fields by name. The method descriptor of each function is resolved at most once, so a
+ * single table should be shared by every method compiled from the same list of modules.
+ * The table also records which modules and classes each module resolved symbols from
+ */
+public class SymbolTable {
+
+    private final Map<String, ModuleSymbols> modules = new ConcurrentHashMap<>();
+    private final Map<String, Optional<SymbolContext>> overloads = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> dependencies = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> externalDependencies = new ConcurrentHashMap<>();
+    private final @Getter List<Clazz> classpath;
+
+    public SymbolTable(@NotNull final List<Clazz> classpath) {
+        this.classpath = classpath;
+
+        for (final Clazz clazz : classpath) {
+            getSymbols(clazz);
+        }
+    }
+
+    /**
+     * Returns the symbols of the specified module, indexing the module if it is not
+     * part of the classpath this table was created with
+     *
+     * @param clazz The module
+     * @return The symbols declared by the module
+     */
+    @NotNull
+    public ModuleSymbols getSymbols(@NotNull final Clazz clazz) {
+        return modules.computeIfAbsent(clazz.getInternalName(), name -> new ModuleSymbols(clazz));
+    }
+
+    /**
+     * Returns the result of resolving a call to a class on the class path. Calls with the same owner,
+     * name and argument types are only resolved once
+     *
+     * @param owner The internal name of the owner
+     * @param name The method name
+     * @param parameterTypes The argument types of the call
+     * @param resolver Resolves the call if it has not been resolved before
+     * @return The resolved method, or null if the call cannot be resolved
+     */
+    @Nullable
+    public SymbolContext getOverload(@NotNull final String owner, @NotNull final String name,
+                                     @NotNull final Type[] parameterTypes,
+                                     @NotNull final Supplier<SymbolContext> resolver) {
+        final StringBuilder key = new StringBuilder(owner).append('.').append(name).append('(');
+
+        for (final Type type : parameterTypes) {
+            key.append(type.getDescriptor());
+        }
+
+        final String k = key.append(')').toString();
+        Optional<SymbolContext> ctx = overloads.get(k);
+
+        if (ctx == null) {
+            ctx = Optional.ofNullable(resolver.get());
+            overloads.putIfAbsent(k, ctx);
+        }
+
+        return ctx.orElse(null);
+    }
+
+    /**
+     * Records that a module resolved a symbol declared by another module
+     *
+     * @param clazz The module that resolved the symbol
+     * @param module The module that declares the symbol
+     */
+    public void addDependency(@NotNull final Clazz clazz, @NotNull final Clazz module) {
+        if (clazz != module)
+            dependencies.computeIfAbsent(clazz.getInternalName(), k -> ConcurrentHashMap.newKeySet())
+                    .add(module.getInternalName());
+    }
+
+    /**
+     * Records that a module looked up a class on the class path, whether or not the class exists
+     *
+     * @param clazz The module that looked up the class
+     * @param internalName The internal name of the class
+     */
+    public void addExternalDependency(@NotNull final Clazz clazz, @NotNull final String internalName) {
+        externalDependencies.computeIfAbsent(clazz.getInternalName(), k -> ConcurrentHashMap.newKeySet())
+                .add(internalName);
+    }
+
+    /**
+     * @param clazz The module
+     * @return The internal names of the other modules the module resolved symbols from
+     */
+    @NotNull
+    public Set<String> getDependencies(@NotNull final Clazz clazz) {
+        return dependencies.getOrDefault(clazz.getInternalName(), Collections.emptySet());
+    }
+
+    /**
+     * @param clazz The module
+     * @return The internal names of the classes on the class path the module looked up
+     */
+    @NotNull
+    public Set<String> getExternalDependencies(@NotNull final Clazz clazz) {
+        return externalDependencies.getOrDefault(clazz.getInternalName(), Collections.emptySet());
+    }
+
+    public static class ModuleSymbols {
+
+        private final Map<String, List<FunctionSymbol>> functions = new HashMap<>();
+        private final Map<String, Field> fields = new HashMap<>();
+        private final @Getter Clazz clazz;
+        private final @Getter ImportMap imports;
+
+        ModuleSymbols(@NotNull final Clazz clazz) {
+            this.clazz = clazz;
+            this.imports = new ImportMap(clazz.getImports());
+
+            for (final Function function : clazz.getFunctions()) {
+                final String key = key(function.getName(), function.getParameterTypes().length);
+                functions.computeIfAbsent(key, k -> new ArrayList<>()).add(new FunctionSymbol(function));
+            }
+
+            for (final Field field : clazz.getFields()) {
+                fields.putIfAbsent(field.getName(), field);
+            }
+        }
+
+        /**
+         * @param name The function name
+         * @param arity The number of parameters
+         * @return All functions with the specified name and arity
+         */
+        @NotNull
+        public List<FunctionSymbol> getFunctions(@NotNull final String name, final int arity) {
+            return functions.getOrDefault(key(name, arity), Collections.emptyList());
+        }
+
+        /**
+         * @param function The function
+         * @return The symbol for the specified function if it is declared by this module, otherwise null
+         */
+        @Nullable
+        public FunctionSymbol getSymbol(@NotNull final Function function) {
+            for (final FunctionSymbol symbol : getFunctions(function.getName(), function.getParameterTypes().length)) {
+                if (symbol.getFunction() == function)
+                    return symbol;
+            }
+
+            return null;
+        }
+
+        /**
+         * @param name The field name
+         * @return The first field declared with the specified name, otherwise null
+         */
+        @Nullable
+        public Field getField(@NotNull final String name) {
+            return fields.get(name);
+        }
+
+        private static String key(final String name, final int arity) {
+            return name + "/" + arity;
+        }
+    }
+
+    public static @Data class FunctionSymbol {
+
+        private final @NotNull Function function;
+        private Type descriptor;
+        private boolean resolved;
+        private boolean resolving;
+    }
+}
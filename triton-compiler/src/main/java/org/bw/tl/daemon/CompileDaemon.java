@@ -0,0 +1,305 @@
+package org.bw.tl.daemon;
+
+import lombok.Getter;
+import org.bw.tl.util.ClassIndex;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A compiler JVM that serves compile requests from a loopback socket. The ANTLR DFA cache of the parser,
+ * the class indexes of recently used class paths and their member tables and subtype lattices are kept
+ * between requests. The port and a random token are written to a file only the owner can read, a
+ * connection that does not present the token is closed. Requests are executed one at a time
+ */
+public class CompileDaemon {
+
+    static final String PORT_FILE = "daemon.port";
+
+    static final int COMPILE = 1;
+    static final int STATUS = 2;
+    static final int STOP = 3;
+
+    /**
+     * The number of class paths whose indexes are kept
+     */
+    private static final int MAX_INDEXES = 4;
+
+    /**
+     * The fraction of the maximum heap after which the caches are dropped, the daemon stops if that
+     * does not bring it below the limit
+     */
+    private static final double MEMORY_LIMIT = 0.75;
+
+    /**
+     * The milliseconds a connection has to present the token, requests are served one at a time so a silent
+     * connection would otherwise block every other client
+     */
+    static final int TOKEN_TIMEOUT = 5_000;
+
+    private final @Getter Path directory;
+    private final @Getter long idleTimeout;
+    private final Map<List<String>, ClassIndex> indexes = new LinkedHashMap<>(MAX_INDEXES, 0.75f, true);
+    private final String token;
+    private volatile boolean running = true;
+    private @Getter int requests;
+
+    /**
+     * @param directory The directory of the port file
+     * @param idleTimeout The milliseconds without a request after which the daemon stops, or 0 to never stop
+     */
+    public CompileDaemon(@NotNull final Path directory, final long idleTimeout) {
+        this.directory = directory;
+        this.idleTimeout = idleTimeout;
+
+        final byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        final StringBuilder sb = new StringBuilder();
+
+        for (final byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+
+        this.token = sb.toString();
+    }
+
+    /**
+     * Serves requests until a stop request is received, the idle timeout expires or the memory limit is exceeded
+     *
+     * @throws IOException If the socket could not be opened or the port file could not be written
+     */
+    public void run() throws IOException {
+        Files.createDirectories(directory);
+
+        final Path portFile = directory.resolve(PORT_FILE);
+
+        try (final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout((int) Math.min(idleTimeout, Integer.MAX_VALUE));
+            writePortFile(portFile, server.getLocalPort());
+
+            while (running) {
+                final Socket accepted;
+
+                try {
+                    accepted = server.accept();
+                } catch (final SocketTimeoutException e) {
+                    break;
+                }
+
+                try (final Socket socket = accepted) {
+                    socket.setSoTimeout(TOKEN_TIMEOUT);
+                    handle(socket);
+                } catch (final IOException e) {
+                    // a client that disconnects or does not send the token in time must not stop the daemon
+                }
+
+                checkMemory();
+            }
+        } finally {
+            Files.deleteIfExists(portFile);
+        }
+    }
+
+    private void writePortFile(@NotNull final Path portFile, final int port) throws IOException {
+        final Path tmp = directory.resolve(PORT_FILE + ".tmp");
+        final byte[] content = (port + " " + token).getBytes(StandardCharsets.UTF_8);
+
+        Files.deleteIfExists(tmp);
+
+        try {
+            Files.createFile(tmp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (final UnsupportedOperationException e) {
+            Files.createFile(tmp);
+        }
+
+        Files.write(tmp, content);
+        Files.move(tmp, portFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void handle(@NotNull final Socket socket) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        final byte[] expected = token.getBytes(StandardCharsets.UTF_8);
+
+        if (!MessageDigest.isEqual(expected, in.readUTF().getBytes(StandardCharsets.UTF_8)))
+            return;
+
+        socket.setSoTimeout(0);
+
+        switch (in.readByte()) {
+            case COMPILE:
+                requests++;
+                compile(CompileRequest.read(in)).write(out);
+                break;
+            case STATUS:
+                final Runtime runtime = Runtime.getRuntime();
+
+                out.writeInt(requests);
+                out.writeInt(indexes.size());
+                out.writeLong(runtime.totalMemory() - runtime.freeMemory());
+                out.writeLong(runtime.maxMemory());
+                break;
+            case STOP:
+                running = false;
+                out.writeBoolean(true);
+                break;
+            default:
+                return;
+        }
+
+        out.flush();
+    }
+
+    @NotNull
+    private CompileResult compile(@NotNull final CompileRequest request) {
+        // the output directory holds the classes being compiled, indexing it would change the key every build
+        final List<String> classpath = new ArrayList<>(request.getClasspath());
+        final Path output = Paths.get(request.getOutputDirectory()).toAbsolutePath().normalize();
+        classpath.removeIf(path -> Paths.get(path).toAbsolutePath().normalize().equals(output));
+
+        final CompileRequest effective = new CompileRequest(request.getSourceDirectory(), classpath,
+                request.getOutputDirectory(), request.getStateFile(), request.getCacheDirectory(), request.getTarget(),
+                request.isProfile());
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final PrintStream err = System.err;
+
+        System.setErr(new PrintStream(buffer, true));
+
+        try {
+            setDefaultIndex(getIndex(classpath));
+
+            final CompileResult result = effective.execute();
+
+            System.err.flush();
+
+            return new CompileResult(result.isSuccess(), result.getModules(), result.getCompiled(),
+                    new String(buffer.toByteArray(), StandardCharsets.UTF_8), result.getProfile());
+        } catch (final Exception e) {
+            e.printStackTrace();
+            System.err.flush();
+
+            return new CompileResult(false, 0, 0, new String(buffer.toByteArray(), StandardCharsets.UTF_8), "");
+        } finally {
+            System.setErr(err);
+        }
+    }
+
+    @NotNull
+    private ClassIndex getIndex(@NotNull final List<String> classpath) throws IOException {
+        final List<String> key = new ArrayList<>();
+
+        for (final String path : classpath) {
+            key.add(path);
+            key.add(fingerprint(Paths.get(path)));
+        }
+
+        ClassIndex index = indexes.get(key);
+
+        if (index == null) {
+            index = ClassIndex.ofSystem();
+            indexes.put(key, index);
+
+            if (indexes.size() > MAX_INDEXES)
+                close(indexes.remove(indexes.keySet().iterator().next()));
+        }
+
+        return index;
+    }
+
+    /**
+     * Replaces the default index and closes the previous one unless it is kept for its class path
+     */
+    private void setDefaultIndex(@NotNull final ClassIndex index) {
+        final ClassIndex previous = ClassIndex.getDefault();
+
+        ClassIndex.setDefault(index);
+
+        if (previous != index && !indexes.containsValue(previous))
+            close(previous);
+    }
+
+    private static void close(@NotNull final ClassIndex index) {
+        try {
+            index.close();
+        } catch (final IOException e) {
+            // the jars were only read, nothing is lost if one cannot be closed
+        }
+    }
+
+    /**
+     * @return A string that changes when a class in the jar or directory changes
+     */
+    @NotNull
+    private static String fingerprint(@NotNull final Path path) throws IOException {
+        if (!Files.exists(path))
+            return "";
+
+        if (!Files.isDirectory(path))
+            return Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis();
+
+        long count = 0, hash = 0;
+
+        try (final Stream<Path> files = Files.walk(path)) {
+            for (final Iterator<Path> it = files.iterator(); it.hasNext(); ) {
+                final Path file = it.next();
+
+                if (!file.toString().endsWith(".class"))
+                    continue;
+
+                count++;
+                hash = hash * 31 + file.hashCode();
+                hash = hash * 31 + Files.getLastModifiedTime(file).toMillis();
+                hash = hash * 31 + Files.size(file);
+            }
+        }
+
+        return count + ":" + Long.toHexString(hash);
+    }
+
+    private void checkMemory() {
+        if (!overLimit())
+            return;
+
+        indexes.values().forEach(CompileDaemon::close);
+        indexes.clear();
+        ClassIndex.setDefault(ClassIndex.ofSystem());
+        System.gc();
+
+        if (overLimit()) {
+            System.err.println("Memory limit exceeded, stopping");
+            running = false;
+        }
+    }
+
+    private static boolean overLimit() {
+        final Runtime runtime = Runtime.getRuntime();
+
+        return runtime.totalMemory() - runtime.freeMemory() > runtime.maxMemory() * MEMORY_LIMIT;
+    }
+
+    /**
+     * @param args The directory of the port file and the idle timeout in minutes
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompileDaemon <directory> <idle minutes>");
+            System.exit(1);
+        }
+
+        new CompileDaemon(Paths.get(args[0]), TimeUnit.MINUTES.toMillis(Long.parseLong(args[1]))).run();
+    }
+}
@@ -0,0 +1,157 @@
+package org.bw.tl.daemon;
+
+import lombok.Data;
+import org.bw.tl.util.ASTCache;
+import org.bw.tl.util.CompileProfiler;
+import org.bw.tl.util.CompileProfiler.Phase;
+import org.bw.tl.util.CompileUtilities;
+import org.bw.tl.util.IncrementalCompiler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The compilation of a source directory into an output directory, executed either in the calling JVM or
+ * by a {@link CompileDaemon}. All paths should be absolute, the daemon does not share the working
+ * directory of its clients
+ */
+public @Data class CompileRequest {
+
+    private final @NotNull String sourceDirectory;
+    private final @NotNull List<String> classpath;
+    private final @NotNull String outputDirectory;
+
+    /**
+     * The state file of an incremental build, or null to compile every module
+     */
+    private final @Nullable String stateFile;
+
+    /**
+     * The directory of the AST cache, or null to parse every file
+     */
+    private final @Nullable String cacheDirectory;
+
+    /**
+     * The class file version of the generated classes
+     */
+    private final int target;
+
+    /**
+     * Time the phases of the compilation and return a summary with the result
+     */
+    private final boolean profile;
+
+    /**
+     * Compiles the modules and writes their class files to the output directory
+     *
+     * @return The result, the errors have been printed to the system error stream
+     * @throws IOException If a file could not be read or written
+     */
+    @NotNull
+    public CompileResult execute() throws IOException {
+        CompileUtilities.setCache(cacheDirectory != null ? new ASTCache(Paths.get(cacheDirectory)) : null);
+        CompileUtilities.setTarget(target);
+
+        final boolean wasProfiling = CompileProfiler.isEnabled();
+
+        if (profile) {
+            CompileProfiler.reset();
+            CompileProfiler.setEnabled(true);
+        }
+
+        try {
+            final long start = System.nanoTime();
+            final CompileResult result = compile();
+
+            if (!profile)
+                return result;
+
+            final String summary = CompileProfiler.summary() + String.format(Locale.ROOT, "%nTotal %.1f ms%n",
+                    (System.nanoTime() - start) / 1e6);
+
+            return new CompileResult(result.isSuccess(), result.getModules(), result.getCompiled(), result.getOutput(),
+                    summary);
+        } finally {
+            CompileProfiler.setEnabled(wasProfiling);
+        }
+    }
+
+    @NotNull
+    private CompileResult compile() throws IOException {
+        final List<String> files = CompileUtilities.findSources(sourceDirectory);
+        final IncrementalCompiler compiler = stateFile != null ?
+                new IncrementalCompiler(Paths.get(stateFile), Paths.get(outputDirectory)) : null;
+        final Map<String, byte[]> classes = compiler != null ? compiler.compile(files, classpath) :
+                CompileUtilities.compile(files, classpath);
+
+        if (classes == null)
+            return new CompileResult(false, files.size(), 0, "", "");
+
+        try (final CompileProfiler.Timer timer = CompileProfiler.start(Phase.WRITE)) {
+            for (final Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                final Path file = Paths.get(outputDirectory, entry.getKey().replace('.', '/') + ".class");
+
+                Files.createDirectories(file.getParent());
+                Files.write(file, entry.getValue());
+            }
+
+            if (compiler != null) {
+                for (final String removed : compiler.getRemoved()) {
+                    Files.deleteIfExists(Paths.get(outputDirectory, removed + ".class"));
+                }
+            }
+        }
+
+        return new CompileResult(true, files.size(), classes.size(), "", "");
+    }
+
+    void write(@NotNull final DataOutputStream out) throws IOException {
+        out.writeUTF(sourceDirectory);
+        out.writeInt(classpath.size());
+
+        for (final String path : classpath) {
+            out.writeUTF(path);
+        }
+
+        out.writeUTF(outputDirectory);
+        writeNullable(out, stateFile);
+        writeNullable(out, cacheDirectory);
+        out.writeInt(target);
+        out.writeBoolean(profile);
+    }
+
+    @NotNull
+    static CompileRequest read(@NotNull final DataInputStream in) throws IOException {
+        final String sourceDirectory = in.readUTF();
+        final List<String> classpath = new ArrayList<>();
+
+        for (int i = in.readInt(); i > 0; i--) {
+            classpath.add(in.readUTF());
+        }
+
+        return new CompileRequest(sourceDirectory, classpath, in.readUTF(), readNullable(in), readNullable(in),
+                in.readInt(), in.readBoolean());
+    }
+
+    private static void writeNullable(@NotNull final DataOutputStream out, @Nullable final String s) throws IOException {
+        out.writeBoolean(s != null);
+
+        if (s != null)
+            out.writeUTF(s);
+    }
+
+    @Nullable
+    private static String readNullable(@NotNull final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
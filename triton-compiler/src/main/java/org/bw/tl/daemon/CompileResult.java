@@ -0,0 +1,68 @@
+package org.bw.tl.daemon;
+
+import lombok.Data;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public @Data class CompileResult {
+
+    private final boolean success;
+
+    /**
+     * The number of modules in the source directory
+     */
+    private final int modules;
+
+    /**
+     * The number of modules that were generated
+     */
+    private final int compiled;
+
+    /**
+     * The errors printed by a daemon, a compilation in the calling JVM prints them directly
+     */
+    private final @NotNull String output;
+
+    /**
+     * The summary of the {@link org.bw.tl.util.CompileProfiler}, empty if the compilation was not profiled
+     */
+    private final @NotNull String profile;
+
+    void write(@NotNull final DataOutputStream out) throws IOException {
+        out.writeBoolean(success);
+        out.writeInt(modules);
+        out.writeInt(compiled);
+        writeString(out, output);
+        writeString(out, profile);
+    }
+
+    @NotNull
+    static CompileResult read(@NotNull final DataInputStream in) throws IOException {
+        final boolean success = in.readBoolean();
+        final int modules = in.readInt();
+        final int compiled = in.readInt();
+
+        return new CompileResult(success, modules, compiled, readString(in), readString(in));
+    }
+
+    // the output may be longer than the 64k modified UTF-8 limit of writeUTF
+    private static void writeString(@NotNull final DataOutputStream out, @NotNull final String s) throws IOException {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @NotNull
+    private static String readString(@NotNull final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
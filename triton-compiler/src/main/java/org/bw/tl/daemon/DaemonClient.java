@@ -0,0 +1,176 @@
+package org.bw.tl.daemon;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.antlr.v4.runtime.Parser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * A connection to a running {@link CompileDaemon}. An {@link IOException} from a request means the daemon
+ * is not usable, the caller should compile in its own JVM instead
+ */
+public @RequiredArgsConstructor class DaemonClient {
+
+    /**
+     * The directory of the port file of the daemon shared by the maven plugin and the command line
+     */
+    public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".triton", "daemon");
+
+    private static final long START_TIMEOUT = 30_000;
+
+    private final @Getter int port;
+    private final @NotNull String token;
+
+    /**
+     * @param directory The directory of the daemon
+     * @return A client of the daemon, or null if no daemon has written a port file to the directory
+     */
+    @Nullable
+    public static DaemonClient find(@NotNull final Path directory) {
+        try {
+            final String[] content = new String(Files.readAllBytes(directory.resolve(CompileDaemon.PORT_FILE)),
+                    StandardCharsets.UTF_8).trim().split(" ");
+
+            if (content.length != 2)
+                return null;
+
+            return new DaemonClient(Integer.parseInt(content[0]), content[1]);
+        } catch (final IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Starts a daemon in a new JVM and waits for it to accept requests
+     *
+     * @param directory The directory of the daemon, its output is written to daemon.log
+     * @param maxHeap The maximum heap of the daemon, such as 1g
+     * @param idleMinutes The minutes without a request after which the daemon stops
+     * @return A client of the daemon
+     * @throws IOException If the daemon could not be started
+     */
+    @NotNull
+    public static DaemonClient start(@NotNull final Path directory, @NotNull final String maxHeap,
+                                     final long idleMinutes) throws IOException {
+        Files.createDirectories(directory);
+        Files.deleteIfExists(directory.resolve(CompileDaemon.PORT_FILE));
+
+        final Set<String> classpath = new LinkedHashSet<>();
+
+        for (final Class<?> cl : Arrays.asList(CompileDaemon.class, Parser.class, ClassReader.class,
+                MethodNode.class)) {
+            try {
+                classpath.add(Paths.get(cl.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+            } catch (final URISyntaxException | NullPointerException e) {
+                throw new IOException("Cannot locate the classes of the daemon", e);
+            }
+        }
+
+        final Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        final File log = directory.resolve("daemon.log").toFile();
+
+        final Process process = new ProcessBuilder(java.toString(), "-Xmx" + maxHeap,
+                "-cp", String.join(File.pathSeparator, classpath), CompileDaemon.class.getName(),
+                directory.toString(), Long.toString(idleMinutes))
+                .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.appendTo(log)).start();
+
+        final long deadline = System.currentTimeMillis() + START_TIMEOUT;
+
+        while (System.currentTimeMillis() < deadline) {
+            final DaemonClient client = find(directory);
+
+            if (client != null)
+                return client;
+
+            if (!process.isAlive())
+                throw new IOException("The daemon exited, see " + log);
+
+            try {
+                Thread.sleep(50);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        process.destroy();
+        throw new IOException("The daemon did not start");
+    }
+
+    /**
+     * @param request The request, its paths should be absolute
+     * @return The result of the compilation in the daemon
+     * @throws IOException If the daemon could not be reached
+     */
+    @NotNull
+    public CompileResult compile(@NotNull final CompileRequest request) throws IOException {
+        try (final Socket socket = connect()) {
+            final DataOutputStream out = open(socket, CompileDaemon.COMPILE);
+
+            request.write(out);
+            out.flush();
+
+            return CompileResult.read(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+        }
+    }
+
+    /**
+     * @return A description of the requests served and the memory used by the daemon
+     * @throws IOException If the daemon could not be reached
+     */
+    @NotNull
+    public String status() throws IOException {
+        try (final Socket socket = connect()) {
+            open(socket, CompileDaemon.STATUS).flush();
+
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final int requests = in.readInt();
+            final int indexes = in.readInt();
+            final long used = in.readLong();
+            final long max = in.readLong();
+
+            return String.format("Daemon on port %d: %d requests, %d class paths indexed, %d of %d MB used",
+                    port, requests, indexes, used >> 20, max >> 20);
+        }
+    }
+
+    /**
+     * Stops the daemon after the request it is executing
+     *
+     * @throws IOException If the daemon could not be reached
+     */
+    public void stop() throws IOException {
+        try (final Socket socket = connect()) {
+            open(socket, CompileDaemon.STOP).flush();
+            new DataInputStream(socket.getInputStream()).readBoolean();
+        }
+    }
+
+    @NotNull
+    private Socket connect() throws IOException {
+        return new Socket(InetAddress.getLoopbackAddress(), port);
+    }
+
+    @NotNull
+    private DataOutputStream open(@NotNull final Socket socket, final int command) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        out.writeUTF(token);
+        out.writeByte(command);
+
+        return out;
+    }
+}
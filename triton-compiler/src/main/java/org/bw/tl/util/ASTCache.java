@@ -0,0 +1,141 @@
+package org.bw.tl.util;
+
+import lombok.Getter;
+import org.antlr.v4.runtime.CharStreams;
+import org.bw.tl.antlr.GrammarLexer;
+import org.bw.tl.antlr.GrammarParser;
+import org.bw.tl.antlr.ast.Clazz;
+import org.bw.tl.antlr.ast.ClazzSerializer;
+import org.bw.tl.antlr.ast.SourceFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A directory of parsed modules in the {@link ClazzSerializer} format, keyed by a hash of the source
+ * content. The key also covers the serializer version and the serialized lexer and parser, so changing
+ * the grammar or the node classes invalidates every entry without having to clear the directory
+ */
+public class ASTCache {
+
+    private static final String FILE_EXTENSION = ".ast";
+
+    /**
+     * The hash of the format and the grammar the entries were written with
+     */
+    private static final byte[] STAMP = stamp();
+
+    private final @Getter Path directory;
+
+    public ASTCache(@NotNull final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param srcFile The path of the source file
+     * @param content The content of the source file
+     * @return The module parsed from the same content, or null if there is no valid entry
+     */
+    @Nullable
+    public Clazz load(@NotNull final String srcFile, @NotNull final byte[] content) {
+        final Path path = getPath(content);
+
+        if (!Files.isRegularFile(path))
+            return null;
+
+        final SourceFile source = SourceFile.of(srcFile,
+                CharStreams.fromString(new String(content, StandardCharsets.UTF_8), srcFile));
+
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return ClazzSerializer.read(in, srcFile, source);
+        } catch (final IOException | RuntimeException e) {
+            // a truncated or otherwise unreadable entry is a miss, it is replaced by the next store
+            return null;
+        }
+    }
+
+    /**
+     * Writes the module to the cache. The entry is written to a temporary file first and moved into place,
+     * so concurrent compilers never read a partial entry
+     *
+     * @param content The content of the source file the module was parsed from
+     * @param clazz The module, before any imports or primers are applied to it
+     * @return True if the entry was written
+     */
+    public boolean store(@NotNull final byte[] content, @NotNull final Clazz clazz) {
+        final Path path = getPath(content);
+        Path tmp = null;
+
+        try {
+            Files.createDirectories(directory);
+            tmp = Files.createTempFile(directory, "entry", ".tmp");
+
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                ClazzSerializer.write(clazz, out);
+            }
+
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            return true;
+        } catch (final IOException e) {
+            return false;
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (final IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * @param content The content of a source file
+     * @return The path of the entry for the content
+     */
+    @NotNull
+    public Path getPath(@NotNull final byte[] content) {
+        final MessageDigest digest = newDigest();
+        digest.update(STAMP);
+        digest.update(content);
+
+        return directory.resolve(toHex(digest.digest()) + FILE_EXTENSION);
+    }
+
+    private static byte[] stamp() {
+        final MessageDigest digest = newDigest();
+        digest.update(ByteBuffer.allocate(4).putInt(ClazzSerializer.FORMAT_VERSION).array());
+        digest.update(GrammarLexer._serializedATN.getBytes(StandardCharsets.UTF_8));
+        digest.update(GrammarParser._serializedATN.getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+
+        for (final byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return sb.toString();
+    }
+}
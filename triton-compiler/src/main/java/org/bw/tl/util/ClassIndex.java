@@ -0,0 +1,646 @@
+package org.bw.tl.util;
+
+import lombok.Data;
+import org.bw.tl.compiler.resolve.Operator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Index of the classes visible to the compiler. Class files are read from jars and directories with
+ * a {@link ClassReader} and only their headers, fields and method signatures are kept, so referenced
+ * classes are never loaded, linked or initialized in the compiler's JVM. The jars stay open until the index
+ * is closed
+ */
+public class ClassIndex implements Closeable {
+
+    private static final ClassInfo MISSING = new ClassInfo("", null, new String[0], 0,
+            Collections.emptyList(), Collections.emptyList());
+
+    private static volatile ClassIndex defaultIndex = ClassIndex.ofSystem();
+
+    private final List<Root> roots = new CopyOnWriteArrayList<>();
+    private final Set<Path> paths = ConcurrentHashMap.newKeySet();
+    private final Map<String, ClassInfo> classes = new ConcurrentHashMap<>();
+    private final Map<String, MemberTable> memberTables = new ConcurrentHashMap<>();
+    private final SubtypeLattice lattice = new SubtypeLattice(this);
+    private final Map<String, Map<Type, Map<Type, Optional<Operator>>>> operators = new ConcurrentHashMap<>();
+
+    /**
+     * @return The index used by the compiler, built from the boot and system class path
+     */
+    @NotNull
+    public static ClassIndex getDefault() {
+        return defaultIndex;
+    }
+
+    /**
+     * Replaces the index used by the compiler. A long running compiler keeps an index for each class path
+     * it compiles against and switches between them, it must not switch while a compilation is running
+     *
+     * @param index The index
+     */
+    public static void setDefault(@NotNull final ClassIndex index) {
+        defaultIndex = index;
+    }
+
+    /**
+     * @return A new index of the boot and system class path
+     */
+    @NotNull
+    public static ClassIndex ofSystem() {
+        final ClassIndex index = new ClassIndex();
+
+        for (final String property : Arrays.asList("sun.boot.class.path", "java.class.path")) {
+            final String classpath = System.getProperty(property);
+
+            if (classpath == null)
+                continue;
+
+            for (final String path : classpath.split(File.pathSeparator)) {
+                if (!path.isEmpty())
+                    index.addPath(Paths.get(path));
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * @return The memoized subtype relation between the classes of this index
+     */
+    @NotNull
+    public SubtypeLattice getLattice() {
+        return lattice;
+    }
+
+    /**
+     * @return The operators on reference types found with this index, by symbol and operand types
+     */
+    @NotNull
+    public Map<String, Map<Type, Map<Type, Optional<Operator>>>> getOperators() {
+        return operators;
+    }
+
+    /**
+     * Adds a jar or a class directory to this index. The Class-Path of a jar manifest is followed
+     * the same way the system class loader follows it
+     *
+     * @param path The jar or directory
+     * @return False if the path is a file that cannot be read as a jar
+     */
+    public boolean addPath(@NotNull final Path path) {
+        final Path normalized = path.toAbsolutePath().normalize();
+
+        if (!paths.add(normalized))
+            return true;
+
+        if (Files.isRegularFile(normalized)) {
+            final JarFile jar;
+
+            try {
+                jar = new JarFile(normalized.toFile());
+            } catch (final IOException e) {
+                return false;
+            }
+
+            roots.add(new JarRoot(jar));
+            addManifestClassPath(normalized, jar);
+        } else {
+            roots.add(new DirectoryRoot(normalized));
+        }
+
+        // a class that was missing may be provided by the new path
+        classes.values().removeIf(info -> info == MISSING);
+        memberTables.clear();
+        lattice.clear();
+        operators.clear();
+        return true;
+    }
+
+    /**
+     * Closes the jars of this index and forgets its classes, the index must not be used afterwards
+     *
+     * @throws IOException If a jar could not be closed, the other jars are closed anyway
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+
+        for (final Root root : roots) {
+            try {
+                root.close();
+            } catch (final IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        roots.clear();
+        paths.clear();
+        classes.clear();
+        memberTables.clear();
+        lattice.clear();
+        operators.clear();
+
+        if (failure != null)
+            throw failure;
+    }
+
+    private void addManifestClassPath(@NotNull final Path jarPath, @NotNull final JarFile jar) {
+        try {
+            final Manifest manifest = jar.getManifest();
+
+            if (manifest == null)
+                return;
+
+            final String classpath = manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+
+            if (classpath == null)
+                return;
+
+            final URL base = jarPath.toUri().toURL();
+
+            for (final String entry : classpath.trim().split("\\s+")) {
+                if (entry.isEmpty())
+                    continue;
+
+                final URL url = new URL(base, entry);
+
+                if ("file".equals(url.getProtocol()))
+                    addPath(Paths.get(url.toURI()));
+            }
+        } catch (final Exception ignored) {
+        }
+    }
+
+    /**
+     * @param internalName The internal name of the class, for example java/lang/String
+     * @return The class or null if it is not on the class path
+     */
+    @Nullable
+    public ClassInfo getClassInfo(@NotNull final String internalName) {
+        ClassInfo info = classes.get(internalName);
+
+        if (info == null) {
+            info = read(internalName);
+            classes.putIfAbsent(internalName, info);
+        }
+
+        return info == MISSING ? null : info;
+    }
+
+    /**
+     * @param internalName The internal name of the class
+     * @return True if the class exists on the class path
+     */
+    public boolean contains(@NotNull final String internalName) {
+        return getClassInfo(internalName) != null;
+    }
+
+    /**
+     * Returns the same methods as {@link Class#getMethods()}: the public methods declared by the
+     * class and its superclasses, followed by the public instance methods of its interfaces
+     *
+     * @param internalName The internal name of the class
+     * @return The public methods of the class, or an empty list if the class does not exist
+     */
+    @NotNull
+    public List<MemberInfo> getMethods(@NotNull final String internalName) {
+        return getMemberTable(internalName).getMethods();
+    }
+
+    /**
+     * @param internalName The internal name of the class
+     * @param name The method name
+     * @return The public methods of the class with the specified name
+     */
+    @NotNull
+    public List<MemberInfo> getMethods(@NotNull final String internalName, @NotNull final String name) {
+        return getMemberTable(internalName).getMethodsByName().getOrDefault(name, Collections.emptyList());
+    }
+
+    /**
+     * @param internalName The internal name of the class
+     * @return The public constructors declared by the class
+     */
+    @NotNull
+    public List<MemberInfo> getConstructors(@NotNull final String internalName) {
+        return getMemberTable(internalName).getConstructors();
+    }
+
+    @NotNull
+    private MemberTable getMemberTable(@NotNull final String internalName) {
+        MemberTable table = memberTables.get(internalName);
+
+        if (table == null) {
+            table = buildMemberTable(internalName);
+            memberTables.putIfAbsent(internalName, table);
+        }
+
+        return table;
+    }
+
+    @NotNull
+    private MemberTable buildMemberTable(@NotNull final String internalName) {
+        final Map<String, MemberInfo> methods = new LinkedHashMap<>();
+        final List<MemberInfo> constructors = new ArrayList<>();
+        final ClassInfo info = getClassInfo(internalName);
+
+        if (info == null)
+            return new MemberTable(Collections.emptyList(), Collections.emptyMap(), Collections.emptyList());
+
+        for (final MemberInfo method : info.getMethods()) {
+            if (method.isPublic() && method.getName().equals("<init>"))
+                constructors.add(method);
+        }
+
+        for (ClassInfo cl = info; cl != null; cl = getSuperClass(cl)) {
+            for (final MemberInfo method : cl.getMethods()) {
+                if (method.isPublic() && !method.getName().startsWith("<"))
+                    methods.putIfAbsent(method.getName() + method.getDesc(), method);
+            }
+        }
+
+        for (final ClassInfo iface : getInterfaces(info)) {
+            for (final MemberInfo method : iface.getMethods()) {
+                if (method.isPublic() && (method.getAccess() & ACC_STATIC) == 0 && !method.getName().startsWith("<"))
+                    methods.putIfAbsent(method.getName() + method.getDesc(), method);
+            }
+        }
+
+        final Map<String, List<MemberInfo>> methodsByName = new HashMap<>();
+
+        for (final MemberInfo method : methods.values()) {
+            methodsByName.computeIfAbsent(method.getName(), name -> new ArrayList<>()).add(method);
+        }
+
+        return new MemberTable(Collections.unmodifiableList(new ArrayList<>(methods.values())), methodsByName,
+                Collections.unmodifiableList(constructors));
+    }
+
+    /**
+     * Finds a public field the same way as {@link Class#getField(String)}: the class itself,
+     * then its interfaces and then its superclass
+     *
+     * @param internalName The internal name of the class
+     * @param name The name of the field
+     * @return The field, or null if no public field exists
+     */
+    @Nullable
+    public MemberInfo getField(@NotNull final String internalName, @NotNull final String name) {
+        final ClassInfo info = getClassInfo(internalName);
+
+        if (info == null)
+            return null;
+
+        for (final MemberInfo field : info.getFields()) {
+            if (field.isPublic() && field.getName().equals(name))
+                return field;
+        }
+
+        for (final String iface : info.getInterfaces()) {
+            final MemberInfo field = getField(iface, name);
+
+            if (field != null)
+                return field;
+        }
+
+        return info.getSuperName() == null ? null : getField(info.getSuperName(), name);
+    }
+
+    /**
+     * @param internalName The internal name of the class
+     * @return True if the class exists and is an interface
+     */
+    public boolean isInterface(@NotNull final String internalName) {
+        final ClassInfo info = getClassInfo(internalName);
+        return info != null && (info.getAccess() & ACC_INTERFACE) != 0;
+    }
+
+    /**
+     * Equivalent of {@link Class#isAssignableFrom(Class)} for two classes on the class path
+     *
+     * @param parent The internal name of the class that is assigned to
+     * @param child The internal name of the class that is assigned
+     * @return True if child is parent or one of its subtypes
+     */
+    public boolean isSubtype(@NotNull final String child, @NotNull final String parent) {
+        final ClassInfo info = getClassInfo(child);
+
+        if (info == null || !contains(parent))
+            return false;
+
+        if (child.equals(parent) || parent.equals("java/lang/Object"))
+            return true;
+
+        if (info.getSuperName() != null && isSubtype(info.getSuperName(), parent))
+            return true;
+
+        for (final String iface : info.getInterfaces()) {
+            if (isSubtype(iface, parent))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds the type two classes are merged to in a stack map frame, the same way as
+     * {@link org.objectweb.asm.ClassWriter#getCommonSuperClass(String, String)} but without loading either class
+     *
+     * @param type1 The internal name of the first class
+     * @param type2 The internal name of the second class
+     * @return The closest common superclass, java/lang/Object if either class is an interface or is not on the
+     * class path
+     */
+    @NotNull
+    public String getCommonSuperClass(@NotNull final String type1, @NotNull final String type2) {
+        if (isSubtype(type2, type1))
+            return type1;
+
+        if (isSubtype(type1, type2))
+            return type2;
+
+        if (isInterface(type1) || isInterface(type2))
+            return "java/lang/Object";
+
+        ClassInfo info = getClassInfo(type1);
+
+        while (info != null) {
+            if (isSubtype(type2, info.getName()))
+                return info.getName();
+
+            info = getSuperClass(info);
+        }
+
+        return "java/lang/Object";
+    }
+
+    /**
+     * @param info The class
+     * @return The superclass, or null for interfaces and java/lang/Object
+     */
+    @Nullable
+    public ClassInfo getSuperClass(@NotNull final ClassInfo info) {
+        if (info.getSuperName() == null || (info.getAccess() & ACC_INTERFACE) != 0)
+            return null;
+
+        return getClassInfo(info.getSuperName());
+    }
+
+    /**
+     * @param info The class
+     * @return Every interface implemented by the class and its superclasses, breadth first
+     */
+    @NotNull
+    private Collection<ClassInfo> getInterfaces(@NotNull final ClassInfo info) {
+        final Map<String, ClassInfo> interfaces = new LinkedHashMap<>();
+        final Deque<String> queue = new ArrayDeque<>();
+
+        for (ClassInfo cl = info; cl != null; cl = getSuperClass(cl)) {
+            queue.addAll(Arrays.asList(cl.getInterfaces()));
+        }
+
+        while (!queue.isEmpty()) {
+            final String name = queue.poll();
+
+            if (interfaces.containsKey(name))
+                continue;
+
+            final ClassInfo iface = getClassInfo(name);
+
+            if (iface != null) {
+                interfaces.put(name, iface);
+                queue.addAll(Arrays.asList(iface.getInterfaces()));
+            }
+        }
+
+        return interfaces.values();
+    }
+
+    @NotNull
+    private ClassInfo read(@NotNull final String internalName) {
+        final String resource = internalName + ".class";
+
+        CompileProfiler.increment(CompileProfiler.Counter.CLASS_FILES_READ);
+
+        try {
+            byte[] bytes = null;
+
+            for (final Root root : roots) {
+                bytes = root.read(resource);
+
+                if (bytes != null)
+                    break;
+            }
+
+            // hosts such as maven plugins do not expose their classes through java.class.path
+            if (bytes == null) {
+                final ClassLoader loader = ClassIndex.class.getClassLoader();
+                final InputStream in = loader == null ? ClassLoader.getSystemResourceAsStream(resource)
+                        : loader.getResourceAsStream(resource);
+
+                if (in != null)
+                    bytes = readFully(in);
+            }
+
+            if (bytes == null)
+                return MISSING;
+
+            return parse(bytes);
+        } catch (final Exception ignored) {
+        }
+
+        return MISSING;
+    }
+
+    @NotNull
+    private static ClassInfo parse(@NotNull final byte[] bytes) {
+        final ClassInfoVisitor visitor = new ClassInfoVisitor();
+        new ClassReader(downgrade(bytes)).accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        return visitor.getInfo();
+    }
+
+    /**
+     * Only headers and signatures are read from class files, so newer class file versions can be read as
+     * Java 8 classes by the class reader
+     *
+     * @param bytes A class file
+     * @return The class file with a version of at most Java 8, a copy if the version was changed
+     */
+    @NotNull
+    static byte[] downgrade(@NotNull final byte[] bytes) {
+        if (bytes.length <= 8 || (((bytes[6] & 0xFF) << 8) | (bytes[7] & 0xFF)) <= V1_8)
+            return bytes;
+
+        final byte[] copy = bytes.clone();
+        copy[6] = 0;
+        copy[7] = V1_8;
+
+        return copy;
+    }
+
+    @NotNull
+    private static byte[] readFully(@NotNull final InputStream in) throws IOException {
+        try (final InputStream input = in) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(input.available(), 1024));
+            final byte[] buffer = new byte[4096];
+            int len;
+
+            while ((len = input.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+
+            return out.toByteArray();
+        }
+    }
+
+    public static @Data class ClassInfo {
+
+        private final @NotNull String name;
+        private final @Nullable String superName;
+        private final @NotNull String[] interfaces;
+        private final int access;
+        private final @NotNull List<MemberInfo> fields;
+        private final @NotNull List<MemberInfo> methods;
+    }
+
+    public static @Data class MemberInfo {
+
+        private final @NotNull String owner;
+        private final @NotNull String name;
+        private final @NotNull String desc;
+        private final int access;
+
+        public boolean isPublic() {
+            return (access & ACC_PUBLIC) != 0;
+        }
+    }
+
+    /**
+     * Public methods and constructors of a class, computed once per class
+     */
+    private static @Data class MemberTable {
+
+        private final @NotNull List<MemberInfo> methods;
+        private final @NotNull Map<String, List<MemberInfo>> methodsByName;
+        private final @NotNull List<MemberInfo> constructors;
+    }
+
+    private interface Root extends Closeable {
+
+        @Nullable
+        byte[] read(@NotNull String resource) throws IOException;
+    }
+
+    private static @Data class JarRoot implements Root {
+
+        private final @NotNull JarFile jar;
+
+        @Nullable
+        @Override
+        public byte[] read(@NotNull final String resource) throws IOException {
+            final ZipEntry entry = jar.getEntry(resource);
+
+            if (entry == null)
+                return null;
+
+            return readFully(jar.getInputStream(entry));
+        }
+
+        @Override
+        public void close() throws IOException {
+            jar.close();
+        }
+    }
+
+    private static @Data class DirectoryRoot implements Root {
+
+        private final @NotNull Path directory;
+
+        @Nullable
+        @Override
+        public byte[] read(@NotNull final String resource) throws IOException {
+            final Path file = directory.resolve(resource);
+
+            if (!Files.isRegularFile(file))
+                return null;
+
+            return Files.readAllBytes(file);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class ClassInfoVisitor extends ClassVisitor {
+
+        private final List<MemberInfo> fields = new ArrayList<>();
+        private final List<MemberInfo> methods = new ArrayList<>();
+        private String name;
+        private String superName;
+        private String[] interfaces;
+        private int access;
+
+        ClassInfoVisitor() {
+            super(ASM5);
+        }
+
+        @Override
+        public void visit(final int version, final int access, final String name, final String signature,
+                          final String superName, final String[] interfaces) {
+            this.access = access;
+            this.name = name;
+            this.superName = superName;
+            this.interfaces = interfaces == null ? new String[0] : interfaces;
+        }
+
+        @Override
+        public FieldVisitor visitField(final int access, final String name, final String desc, final String signature,
+                                       final Object value) {
+            fields.add(new MemberInfo(this.name, name, desc, access));
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(final int access, final String name, final String desc, final String signature,
+                                         final String[] exceptions) {
+            methods.add(new MemberInfo(this.name, name, desc, access));
+            return null;
+        }
+
+        ClassInfo getInfo() {
+            return new ClassInfo(name, superName, interfaces, access, Collections.unmodifiableList(fields),
+                    Collections.unmodifiableList(methods));
+        }
+    }
+}
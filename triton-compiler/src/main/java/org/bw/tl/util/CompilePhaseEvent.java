@@ -0,0 +1,16 @@
+package org.bw.tl.util;
+
+import jdk.jfr.*;
+
+/**
+ * A phase of a compilation timed by the {@link CompileProfiler}
+ */
+@Name("org.bw.tl.CompilePhase")
+@Label("Compile Phase")
+@Category("Triton")
+@StackTrace(false)
+class CompilePhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+}
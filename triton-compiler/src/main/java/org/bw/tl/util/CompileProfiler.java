@@ -0,0 +1,182 @@
+package org.bw.tl.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Phase timers and counters of the compiler. Profiling is disabled by default, or enabled with the system
+ * property triton.profile. When it is disabled a timer is a shared instance that does nothing and a counter
+ * is a volatile read. The time of a phase is summed over the threads that ran it, in a parallel build it can
+ * be longer than the build. While profiling, each timed phase is also committed as a Flight Recorder event
+ * if the JVM supports them
+ */
+public final class CompileProfiler {
+
+    public enum Phase {
+        PARSE, PRIME, RESOLVE, CODEGEN, FRAMES, WRITE
+    }
+
+    public enum Counter {
+        AST_CACHE_HITS, AST_CACHE_MISSES, CLASS_INDEX_LOOKUPS, CLASS_FILES_READ, NODES_VISITED
+    }
+
+    private static final Timer DISABLED = new Timer(null, 0, null);
+    private static final boolean JFR = isJfrAvailable();
+
+    private static final LongAdder[] times = adders(Phase.values().length);
+    private static final LongAdder[] counts = adders(Phase.values().length);
+    private static final LongAdder[] counters = adders(Counter.values().length);
+
+    private static volatile boolean enabled = Boolean.getBoolean("triton.profile");
+
+    private CompileProfiler() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(final boolean enabled) {
+        CompileProfiler.enabled = enabled;
+    }
+
+    /**
+     * Starts timing a phase on the current thread
+     *
+     * @param phase The phase
+     * @return The timer, the phase ends when it is closed
+     */
+    @NotNull
+    public static Timer start(@NotNull final Phase phase) {
+        if (!enabled)
+            return DISABLED;
+
+        return new Timer(phase, System.nanoTime(), JFR ? PhaseEvent.begin(phase) : null);
+    }
+
+    public static void increment(@NotNull final Counter counter) {
+        if (enabled)
+            counters[counter.ordinal()].increment();
+    }
+
+    public static long getTime(@NotNull final Phase phase) {
+        return times[phase.ordinal()].sum();
+    }
+
+    public static long getCount(@NotNull final Phase phase) {
+        return counts[phase.ordinal()].sum();
+    }
+
+    public static long getCount(@NotNull final Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * Sets every timer and counter to zero
+     */
+    public static void reset() {
+        for (final LongAdder[] adders : new LongAdder[][]{times, counts, counters}) {
+            for (final LongAdder adder : adders) {
+                adder.reset();
+            }
+        }
+    }
+
+    /**
+     * @return A table of the time and count of each phase followed by the counters
+     */
+    @NotNull
+    public static String summary() {
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append(String.format("%-22s %10s %12s%n", "Phase", "Count", "Time (ms)"));
+
+        for (final Phase phase : Phase.values()) {
+            sb.append(String.format(Locale.ROOT, "%-22s %10d %12.1f%n", name(phase), getCount(phase),
+                    getTime(phase) / (double) TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+
+        sb.append(String.format("%n%-22s %10s%n", "Counter", "Value"));
+
+        for (final Counter counter : Counter.values()) {
+            sb.append(String.format("%-22s %10d%n", name(counter), getCount(counter)));
+        }
+
+        return sb.toString();
+    }
+
+    @NotNull
+    private static String name(@NotNull final Enum<?> e) {
+        return e.name().toLowerCase(Locale.ROOT).replace('_', ' ');
+    }
+
+    @NotNull
+    private static LongAdder[] adders(final int n) {
+        final LongAdder[] adders = new LongAdder[n];
+
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+
+        return adders;
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, CompileProfiler.class.getClassLoader());
+            return true;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public static final class Timer implements AutoCloseable {
+
+        private final Phase phase;
+        private final long start;
+        private final Object event;
+
+        private Timer(final Phase phase, final long start, final Object event) {
+            this.phase = phase;
+            this.start = start;
+            this.event = event;
+        }
+
+        /**
+         * Ends the phase
+         */
+        @Override
+        public void close() {
+            if (phase == null)
+                return;
+
+            times[phase.ordinal()].add(System.nanoTime() - start);
+            counts[phase.ordinal()].increment();
+
+            if (event != null)
+                PhaseEvent.commit(event);
+        }
+    }
+
+    /**
+     * Only loaded if the JVM has the Flight Recorder API
+     */
+    private static final class PhaseEvent {
+
+        static Object begin(final Phase phase) {
+            final CompilePhaseEvent event = new CompilePhaseEvent();
+
+            event.phase = name(phase);
+            event.begin();
+
+            return event;
+        }
+
+        static void commit(final Object event) {
+            ((CompilePhaseEvent) event).commit();
+        }
+    }
+}
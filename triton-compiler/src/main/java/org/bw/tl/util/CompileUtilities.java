@@ -1,38 +1,44 @@
 package org.bw.tl.util;
 
-import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.bw.tl.Error;
 import org.bw.tl.antlr.GrammarLexer;
 import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.ast.Clazz;
 import org.bw.tl.antlr.ast.QualifiedName;
-import org.bw.tl.antlr.visitor.FileVisitor;
+import org.bw.tl.antlr.visitor.FileListener;
 import org.bw.tl.compiler.Compiler;
 import org.bw.tl.primer.ModifierPrimer;
 import org.bw.tl.primer.Primer;
+import org.bw.tl.util.CompileProfiler.Counter;
+import org.bw.tl.util.CompileProfiler.Phase;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
 
-import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.net.URL;
-import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 public class CompileUtilities {
 
     public static final String FILE_EXTENSION = ".tl";
 
+    /**
+     * The maximum number of files parsed at the same time
+     */
+    public static final int PARSER_THREADS = Runtime.getRuntime().availableProcessors();
+
     public static final List<Primer> PRIMERS = Arrays.asList(new ModifierPrimer());
 
     public static final List<String> DEFAULT_STATIC_IMPORTS = Arrays.asList(
@@ -67,6 +73,59 @@ public class CompileUtilities {
             "java.lang.Void"
     );
 
+    /**
+     * The cache of parsed modules, or null if every file is parsed
+     */
+    private static volatile @Nullable ASTCache cache;
+
+    /**
+     * The class file version of the generated classes
+     */
+    private static volatile int target = Opcodes.V1_8;
+
+    /**
+     * @param cache The cache parsed modules are loaded from and stored in, or null to parse every file
+     */
+    public static void setCache(@Nullable final ASTCache cache) {
+        CompileUtilities.cache = cache;
+    }
+
+    @Nullable
+    public static ASTCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @param target The class file version of the generated classes, such as {@link Opcodes#V1_8}
+     */
+    public static void setTarget(final int target) {
+        CompileUtilities.target = target;
+    }
+
+    public static int getTarget() {
+        return target;
+    }
+
+    /**
+     * @param release A Java release such as 1.8, 8 or 11
+     * @return The class file version of the release
+     * @throws IllegalArgumentException If the release is not a number or is older than Java 8
+     */
+    public static int classVersion(@NotNull final String release) {
+        final int major;
+
+        try {
+            major = Integer.parseInt(release.startsWith("1.") ? release.substring(2) : release);
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid release: " + release);
+        }
+
+        if (major < 8)
+            throw new IllegalArgumentException("Unsupported release: " + release);
+
+        return major + 44;
+    }
+
     @Nullable
     public static Map<String, byte[]> compile(@NotNull final String directory, @NotNull final String... classpath)
             throws IOException {
@@ -76,10 +135,18 @@ public class CompileUtilities {
     @Nullable
     public static Map<String, byte[]> compile(@NotNull final String directory, @NotNull final List<String> classpath)
             throws IOException {
-        final List<String> files = Files.walk(Paths.get(directory)).filter(path -> path.toString().endsWith(FILE_EXTENSION))
-                .map(Path::toString).collect(Collectors.toList());
+        return compile(findSources(directory), classpath);
+    }
 
-        return compile(files, classpath);
+    /**
+     * @param directory The source directory
+     * @return The paths of the source files in the directory and its subdirectories
+     * @throws IOException If the directory could not be read
+     */
+    @NotNull
+    public static List<String> findSources(@NotNull final String directory) throws IOException {
+        return Files.walk(Paths.get(directory)).filter(path -> path.toString().endsWith(FILE_EXTENSION))
+                .map(Path::toString).collect(Collectors.toList());
     }
 
     @Nullable
@@ -99,76 +166,212 @@ public class CompileUtilities {
             }
         }
 
-        final List<Clazz> classes = new LinkedList<>();
+        // the block bodies of functions are parsed by the compiler, unless every file is parsed for the cache
+        final List<Clazz> classes = parse(files, cache == null);
 
-        for (final String file : files) {
-            final Clazz cl = getClazz(file);
-            if (cl == null)
-                return null;
-
-            DEFAULT_IMPORTS.forEach(imp -> cl.getImports().add(QualifiedName.of(imp)));
-            DEFAULT_STATIC_IMPORTS.forEach(imp -> cl.getStaticImports().add(QualifiedName.of(imp)));
-            PRIMERS.forEach(p -> p.prime(cl));
-            classes.add(cl);
-        }
+        if (classes == null)
+            return null;
 
         final Compiler compiler = new Compiler(classes);
+        compiler.setPool(ForkJoinPool.commonPool());
+        compiler.setTarget(target);
 
         final Map<String, byte[]> result = compiler.compile();
 
-        final List<Error> errors = compiler.getErrors();
+        printErrors(compiler.getErrors());
+
+        return result;
+    }
 
+    static void printErrors(@NotNull final List<Error> errors) {
         if (!errors.isEmpty())
             System.err.println("Compilation failed with " + errors.size() + " errors.");
 
         for (final Error error : errors) {
             error.print();
         }
+    }
 
-        return result;
+    /**
+     * Parses the files concurrently, each worker thread reuses its own lexer and parser. The default
+     * imports and primers are applied to each module by the worker that parsed it
+     *
+     * @param files The source files
+     * @return The modules in the same order as the files, or null if a file could not be parsed
+     * @throws IOException If a file could not be read
+     */
+    @Nullable
+    public static List<Clazz> parse(@NotNull final List<String> files) throws IOException {
+        return parse(files, false);
+    }
+
+    /**
+     * Parses the files concurrently, each worker thread reuses its own lexer and parser. The default
+     * imports and primers are applied to each module by the worker that parsed it
+     *
+     * @param files The source files
+     * @param lazy True to only parse the declarations of the files, the block bodies of functions are
+     *             parsed when they are first needed and their syntax errors are reported by
+     *             {@link org.bw.tl.antlr.ast.Function#parseBody()}
+     * @return The modules in the same order as the files, or null if a file could not be parsed
+     * @throws IOException If a file could not be read
+     */
+    @Nullable
+    public static List<Clazz> parse(@NotNull final List<String> files, final boolean lazy) throws IOException {
+        if (files.isEmpty())
+            return new ArrayList<>();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(files.size(), PARSER_THREADS));
+        final ThreadLocal<FileParser> parsers = ThreadLocal.withInitial(FileParser::new);
+
+        try {
+            final List<Future<Clazz>> futures = new ArrayList<>(files.size());
+
+            for (final String file : files) {
+                futures.add(executor.submit(() -> {
+                    final Clazz cl = parsers.get().parse(file, lazy);
+
+                    if (cl != null) {
+                        try (final CompileProfiler.Timer timer = CompileProfiler.start(Phase.PRIME)) {
+                            prepare(cl);
+                        }
+                    }
+
+                    return cl;
+                }));
+            }
+
+            final List<Clazz> classes = new ArrayList<>(files.size());
+
+            for (final Future<Clazz> future : futures) {
+                final Clazz cl = future.get();
+
+                if (cl == null)
+                    return null;
+
+                classes.add(cl);
+            }
+
+            return classes;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     @Nullable
     public static Clazz getClazz(@NotNull final String srcFile) throws IOException {
-        final GrammarLexer lexer = new GrammarLexer(CharStreams.fromFileName(srcFile));
-        final CommonTokenStream ts = new CommonTokenStream(lexer);
-        final GrammarParser p = new GrammarParser(ts);
+        return new FileParser().parse(srcFile, false);
+    }
+
+    /**
+     * Parses a rule in two stages. The input is first parsed with SLL prediction, which is faster but
+     * gives up on the first syntax error. Only if that fails the input is parsed again with full LL
+     * prediction and the error strategy and listeners of the parser, so the reported errors are the same
+     * as for a single LL parse
+     *
+     * @param parser The parser
+     * @param rule The rule to parse
+     * @param <T> The context type of the rule
+     * @return The parsed context
+     */
+    @NotNull
+    public static <T extends ParserRuleContext> T parse(@NotNull final GrammarParser parser,
+                                                        @NotNull final java.util.function.Function<GrammarParser, T> rule) {
+        final ANTLRErrorStrategy errorHandler = parser.getErrorHandler();
+        final List<? extends ANTLRErrorListener> listeners = new ArrayList<>(parser.getErrorListeners());
 
-        GrammarParser.FileContext fc = p.file();
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.removeErrorListeners();
 
-        if (p.getNumberOfSyntaxErrors() == 0) {
-            return fc.accept(FileVisitor.of(srcFile));
+        try {
+            return rule.apply(parser);
+        } catch (final ParseCancellationException e) {
+            // the input is either invalid or needs full context, fall through to the LL stage
+        } finally {
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.setErrorHandler(errorHandler);
+            listeners.forEach(parser::addErrorListener);
         }
 
-        return null;
+        parser.reset();
+
+        return rule.apply(parser);
     }
 
-    private static boolean addToClasspath(@NotNull final String s) throws IOException {
-        return addToClasspath(new File(s).toURI().toURL());
+    private static void prepare(@NotNull final Clazz cl) {
+        DEFAULT_IMPORTS.forEach(imp -> cl.getImports().add(QualifiedName.of(imp)));
+        DEFAULT_STATIC_IMPORTS.forEach(imp -> cl.getStaticImports().add(QualifiedName.of(imp)));
+        PRIMERS.forEach(p -> p.prime(cl));
     }
 
-    private static boolean addToClasspath(@NotNull final URL u) {
-        if (!(ClassLoader.getSystemClassLoader() instanceof URLClassLoader)) {
-            return false;
-        } else if (addUrlMethod == null) {
-            try {
-                addUrlMethod = URLClassLoader.class.getDeclaredMethod("addURL", URL.class);
-                addUrlMethod.setAccessible(true);
-            } catch (NoSuchMethodException e) {
-                return false;
-            }
-        }
-        if (addUrlMethod == null) {
-            return false;
+    static boolean addToClasspath(@NotNull final String s) {
+        return ClassIndex.getDefault().addPath(Paths.get(s));
+    }
+
+    /**
+     * A lexer and parser that are reset for every file they parse. The parser does not build a parse tree,
+     * the module is built from the parse events by a {@link FileListener}. If a cache is set, files whose
+     * content has been parsed before are loaded from it without lexing or parsing them. A lazily parsed file
+     * is not stored in the cache, storing it would parse all of its bodies
+     */
+    private static class FileParser {
+
+        private final GrammarLexer lexer = new GrammarLexer(null);
+        private final GrammarParser parser = new GrammarParser(null);
+
+        FileParser() {
+            parser.setBuildParseTree(false);
         }
 
-        try {
-            addUrlMethod.invoke(ClassLoader.getSystemClassLoader(), u);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            return false;
+        @Nullable
+        Clazz parse(@NotNull final String srcFile, final boolean lazy) throws IOException {
+            final ASTCache cache = CompileUtilities.cache;
+            final byte[] content = Files.readAllBytes(Paths.get(srcFile));
+
+            if (cache != null) {
+                final Clazz cached = cache.load(srcFile, content);
+
+                if (cached != null) {
+                    CompileProfiler.increment(Counter.AST_CACHE_HITS);
+                    return cached;
+                }
+
+                CompileProfiler.increment(Counter.AST_CACHE_MISSES);
+            }
+
+            lexer.setInputStream(CharStreams.fromString(new String(content, StandardCharsets.UTF_8), srcFile));
+            parser.setInputStream(new CommonTokenStream(lexer));
+
+            final FileListener listener = FileListener.of(srcFile, parser);
+            parser.addParseListener(listener);
+
+            try (final CompileProfiler.Timer timer = CompileProfiler.start(Phase.PARSE)) {
+                CompileUtilities.parse(parser, lazy ? GrammarParser::skeleton : GrammarParser::file);
+
+                if (parser.getNumberOfSyntaxErrors() != 0)
+                    return null;
+
+                final Clazz clazz = listener.getClazz();
+
+                if (cache != null && clazz != null && !lazy)
+                    cache.store(content, clazz);
+
+                return clazz;
+            } finally {
+                parser.removeParseListener(listener);
+                // do not hold on to the tokens of the file until the next one is parsed
+                lexer.setInputStream(CharStreams.fromString(""));
+                parser.setInputStream(new CommonTokenStream(lexer));
+            }
         }
-        return true;
     }
-
-    private static Method addUrlMethod = null;
 }
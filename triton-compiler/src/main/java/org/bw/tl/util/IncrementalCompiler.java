@@ -0,0 +1,408 @@
+package org.bw.tl.util;
+
+import lombok.Data;
+import lombok.Getter;
+import org.bw.tl.Error;
+import org.bw.tl.antlr.ast.Clazz;
+import org.bw.tl.compiler.Compiler;
+import org.bw.tl.compiler.resolve.SymbolTable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ASM5;
+
+/**
+ * Compiles the modules whose sources changed since the previous build and the modules that were compiled
+ * against a public signature that changed. Every module is still parsed so the others can be resolved
+ * against, but only the stale ones are generated. The state of the previous build is kept in a file, for
+ * each module it holds the hash of the source, a fingerprint of the ABI of the generated class, the
+ * modules it resolved symbols from and a fingerprint of each class path class it looked up
+ *
+ * <pre>
+ *     final IncrementalCompiler compiler = new IncrementalCompiler(stateFile, outputDirectory);
+ *     final Map&lt;String, byte[]&gt; classes = compiler.compile(files, classpath);
+ *     // write the classes and delete the class files of compiler.getRemoved()
+ * </pre>
+ */
+public class IncrementalCompiler {
+
+    static final int FORMAT_VERSION = 2;
+    private static final int MAGIC = 0x544C4253;
+
+    private final @Getter Path stateFile;
+    private final @Getter Path outputDirectory;
+
+    /**
+     * The internal names of the modules of the previous build that no longer exist
+     */
+    private final @Getter Set<String> removed = new TreeSet<>();
+
+    /**
+     * The source files of the modules generated by the last build, in the order they were generated
+     */
+    private final @Getter List<String> compiled = new ArrayList<>();
+
+    /**
+     * The errors of the last build, empty if it succeeded
+     */
+    private final @Getter List<Error> errors = new ArrayList<>();
+
+    private final Map<String, byte[]> fingerprints = new HashMap<>();
+
+    /**
+     * @param stateFile The file the state of each build is stored in
+     * @param outputDirectory The directory the class files are written to, a missing class file is regenerated
+     */
+    public IncrementalCompiler(@NotNull final Path stateFile, @NotNull final Path outputDirectory) {
+        this.stateFile = stateFile;
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Compiles the stale modules. The state file is only updated if the build succeeds, so a failed build
+     * is retried with the same modules
+     *
+     * @param files The source files of every module
+     * @param classpath The class path
+     * @return The bytecode of the generated modules by class name, or null if the compilation failed
+     * @throws IOException If a file could not be read or the state could not be written
+     */
+    @Nullable
+    public Map<String, byte[]> compile(@NotNull final List<String> files, @NotNull final List<String> classpath)
+            throws IOException {
+        removed.clear();
+        compiled.clear();
+        errors.clear();
+        fingerprints.clear();
+
+        for (final String path : classpath) {
+            if (!CompileUtilities.addToClasspath(path)) {
+                System.err.println("Failure reading: " + path);
+                return null;
+            }
+        }
+
+        final Map<String, ModuleState> previous = load();
+        final List<Clazz> classes = CompileUtilities.parse(files, CompileUtilities.getCache() == null);
+
+        if (classes == null)
+            return null;
+
+        final Set<String> modules = classes.stream().map(Clazz::getInternalName).collect(Collectors.toSet());
+
+        previous.values().forEach(state -> removed.add(state.getInternalName()));
+        removed.removeAll(modules);
+
+        // a new module can declare a name that other modules resolved to something else
+        boolean full = !previous.keySet().equals(new HashSet<>(files));
+        final byte[][] hashes = new byte[files.size()][];
+        final List<Integer> batch = new ArrayList<>();
+
+        for (int i = 0; i < files.size(); i++) {
+            final ModuleState state = previous.get(files.get(i));
+
+            hashes[i] = hash(Files.readAllBytes(Paths.get(files.get(i))));
+            full |= state != null && !state.getInternalName().equals(classes.get(i).getInternalName());
+
+            if (isStale(state, hashes[i]))
+                batch.add(i);
+        }
+
+        if (full) {
+            batch.clear();
+
+            for (int i = 0; i < files.size(); i++) {
+                batch.add(i);
+            }
+        }
+
+        final Compiler compiler = new Compiler(classes);
+        compiler.setPool(ForkJoinPool.commonPool());
+        compiler.setTarget(CompileUtilities.getTarget());
+
+        final SymbolTable symbolTable = compiler.getSymbolTable();
+        final Map<String, ModuleState> next = new HashMap<>(previous);
+        final Map<String, byte[]> result = new HashMap<>();
+        final boolean[] done = new boolean[files.size()];
+
+        next.keySet().retainAll(files);
+
+        while (!batch.isEmpty()) {
+            final Map<String, byte[]> bytecode = compiler.compile(batch.stream().map(classes::get)
+                    .collect(Collectors.toList()));
+
+            if (bytecode == null) {
+                errors.addAll(compiler.getErrors());
+                CompileUtilities.printErrors(errors);
+                return null;
+            }
+
+            final Set<String> changed = new HashSet<>();
+
+            for (final int i : batch) {
+                final Clazz clazz = classes.get(i);
+                final ModuleState state = previous.get(files.get(i));
+                final byte[] abi = abi(bytecode.get(clazz.getModuleClassName()));
+                final Map<String, byte[]> externals = new TreeMap<>();
+
+                for (final String name : symbolTable.getExternalDependencies(clazz)) {
+                    // the class files of the modules are on the class path of the next build
+                    if (!modules.contains(name))
+                        externals.put(name, fingerprint(name));
+                }
+
+                if (state == null || !Arrays.equals(state.getAbi(), abi))
+                    changed.add(clazz.getInternalName());
+
+                next.put(files.get(i), new ModuleState(clazz.getInternalName(), hashes[i], abi,
+                        new TreeSet<>(symbolTable.getDependencies(clazz)), externals));
+                compiled.add(files.get(i));
+                done[i] = true;
+            }
+
+            result.putAll(bytecode);
+            batch.clear();
+
+            for (int i = 0; i < files.size(); i++) {
+                final ModuleState state = previous.get(files.get(i));
+
+                if (!done[i] && state != null && !Collections.disjoint(state.getDependencies(), changed))
+                    batch.add(i);
+            }
+        }
+
+        save(next);
+
+        return result;
+    }
+
+    private boolean isStale(@Nullable final ModuleState state, @NotNull final byte[] hash) {
+        if (state == null || !Arrays.equals(state.getSourceHash(), hash) ||
+                !Files.isRegularFile(outputDirectory.resolve(state.getInternalName() + ".class")))
+            return true;
+
+        for (final Map.Entry<String, byte[]> external : state.getExternals().entrySet()) {
+            if (!Arrays.equals(external.getValue(), fingerprint(external.getKey())))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * The fingerprint of a class on the class path covers the non-private members of the class and of
+     * its supertypes, which is everything a module can resolve through it
+     */
+    private byte[] fingerprint(@NotNull final String internalName) {
+        return fingerprints.computeIfAbsent(internalName, name -> {
+            final MessageDigest digest = ASTCache.newDigest();
+            addClass(digest, name, new HashSet<>());
+            return digest.digest();
+        });
+    }
+
+    private static void addClass(@NotNull final MessageDigest digest, @NotNull final String internalName,
+                                 @NotNull final Set<String> visited) {
+        if (!visited.add(internalName))
+            return;
+
+        final ClassIndex.ClassInfo info = ClassIndex.getDefault().getClassInfo(internalName);
+
+        if (info == null) {
+            update(digest, "missing " + internalName);
+            return;
+        }
+
+        update(digest, info.getAccess() + " " + internalName + " " + info.getSuperName() + " " +
+                String.join(",", info.getInterfaces()));
+
+        for (final ClassIndex.MemberInfo member : info.getFields()) {
+            if ((member.getAccess() & ACC_PRIVATE) == 0)
+                update(digest, member.getAccess() + " " + member.getName() + " " + member.getDesc());
+        }
+
+        for (final ClassIndex.MemberInfo member : info.getMethods()) {
+            if ((member.getAccess() & ACC_PRIVATE) == 0)
+                update(digest, member.getAccess() + " " + member.getName() + member.getDesc());
+        }
+
+        if (info.getSuperName() != null)
+            addClass(digest, info.getSuperName(), visited);
+
+        for (final String itf : info.getInterfaces()) {
+            addClass(digest, itf, visited);
+        }
+    }
+
+    /**
+     * @param bytecode A generated class
+     * @return A hash of the non-private members of the class, independent of their order
+     */
+    static byte[] abi(@NotNull final byte[] bytecode) {
+        final List<String> members = new ArrayList<>();
+
+        new ClassReader(ClassIndex.downgrade(bytecode)).accept(new ClassVisitor(ASM5) {
+            @Override
+            public void visit(final int version, final int access, final String name, final String signature,
+                              final String superName, final String[] interfaces) {
+                members.add("class " + access + " " + name + " " + superName);
+            }
+
+            @Override
+            public FieldVisitor visitField(final int access, final String name, final String desc,
+                                           final String signature, final Object value) {
+                if ((access & ACC_PRIVATE) == 0)
+                    members.add("field " + access + " " + name + " " + desc);
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(final int access, final String name, final String desc,
+                                             final String signature, final String[] exceptions) {
+                if ((access & ACC_PRIVATE) == 0 && !name.equals("<clinit>"))
+                    members.add("method " + access + " " + name + desc);
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        Collections.sort(members);
+
+        final MessageDigest digest = ASTCache.newDigest();
+        members.forEach(member -> update(digest, member));
+
+        return digest.digest();
+    }
+
+    private static byte[] hash(@NotNull final byte[] content) {
+        return ASTCache.newDigest().digest(content);
+    }
+
+    private static void update(@NotNull final MessageDigest digest, @NotNull final String s) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    /**
+     * @return The modules of the previous build by source file, empty if there is no valid state
+     */
+    private Map<String, ModuleState> load() {
+        final Map<String, ModuleState> modules = new HashMap<>();
+
+        if (!Files.isRegularFile(stateFile))
+            return modules;
+
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile)))) {
+            // classes generated for another target are all regenerated
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != CompileUtilities.getTarget())
+                return modules;
+
+            final int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                final String file = in.readUTF();
+                final String internalName = in.readUTF();
+                final byte[] sourceHash = readBytes(in);
+                final byte[] abi = readBytes(in);
+                final Set<String> dependencies = new TreeSet<>();
+                final Map<String, byte[]> externals = new TreeMap<>();
+
+                for (int j = in.readInt(); j > 0; j--) {
+                    dependencies.add(in.readUTF());
+                }
+
+                for (int j = in.readInt(); j > 0; j--) {
+                    externals.put(in.readUTF(), readBytes(in));
+                }
+
+                modules.put(file, new ModuleState(internalName, sourceHash, abi, dependencies, externals));
+            }
+
+            return modules;
+        } catch (final IOException | RuntimeException e) {
+            // an unreadable state rebuilds everything
+            modules.clear();
+            return modules;
+        }
+    }
+
+    private void save(@NotNull final Map<String, ModuleState> modules) throws IOException {
+        final Path directory = stateFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+
+        final Path tmp = Files.createTempFile(directory, "state", ".tmp");
+
+        try {
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(CompileUtilities.getTarget());
+                out.writeInt(modules.size());
+
+                for (final Map.Entry<String, ModuleState> entry : new TreeMap<>(modules).entrySet()) {
+                    final ModuleState state = entry.getValue();
+
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(state.getInternalName());
+                    writeBytes(out, state.getSourceHash());
+                    writeBytes(out, state.getAbi());
+                    out.writeInt(state.getDependencies().size());
+
+                    for (final String dependency : state.getDependencies()) {
+                        out.writeUTF(dependency);
+                    }
+
+                    out.writeInt(state.getExternals().size());
+
+                    for (final Map.Entry<String, byte[]> external : state.getExternals().entrySet()) {
+                        out.writeUTF(external.getKey());
+                        writeBytes(out, external.getValue());
+                    }
+                }
+            }
+
+            try {
+                Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static byte[] readBytes(@NotNull final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(@NotNull final DataOutputStream out, @NotNull final byte[] bytes) throws IOException {
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * What a module was compiled from and against
+     */
+    private static @Data class ModuleState {
+
+        private final @NotNull String internalName;
+        private final @NotNull byte[] sourceHash;
+        private final @NotNull byte[] abi;
+        private final @NotNull Set<String> dependencies;
+        private final @NotNull Map<String, byte[]> externals;
+    }
+}
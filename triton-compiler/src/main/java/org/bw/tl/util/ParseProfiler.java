@@ -0,0 +1,133 @@
+package org.bw.tl.util;
+
+import lombok.Data;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.bw.tl.antlr.GrammarLexer;
+import org.bw.tl.antlr.GrammarParser;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Parses source files with ANTLR's profiling ATN simulator and sums the statistics of the prediction
+ * decisions of each rule. The rules with the most prediction time are the ones worth restructuring
+ */
+public class ParseProfiler {
+
+    private final Map<String, RuleStats> rules = new LinkedHashMap<>();
+    private long parseNanos;
+    private int files;
+
+    /**
+     * Parses the file the same way the compiler does and adds its decision statistics
+     *
+     * @param srcFile The source file
+     * @return True if the file had no syntax errors
+     * @throws IOException If the file could not be read
+     */
+    public boolean profile(@NotNull final String srcFile) throws IOException {
+        final GrammarParser parser = new GrammarParser(new CommonTokenStream(new GrammarLexer(CharStreams.fromFileName(srcFile))));
+        parser.removeErrorListener(ConsoleErrorListener.INSTANCE);
+        parser.setProfile(true);
+
+        final long start = System.nanoTime();
+        CompileUtilities.parse(parser, GrammarParser::file);
+        parseNanos += System.nanoTime() - start;
+        files++;
+
+        for (final DecisionInfo decision : parser.getParseInfo().getDecisionInfo()) {
+            if (decision.invocations == 0)
+                continue;
+
+            final String rule = GrammarParser.ruleNames[parser.getATN().getDecisionState(decision.decision).ruleIndex];
+            rules.computeIfAbsent(rule, RuleStats::new).add(decision);
+        }
+
+        return parser.getNumberOfSyntaxErrors() == 0;
+    }
+
+    /**
+     * @return The rules ordered by their prediction time, most expensive first
+     */
+    @NotNull
+    public List<RuleStats> getRules() {
+        return rules.values().stream().sorted(Comparator.comparingLong(RuleStats::getTimeInPrediction).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return A table of the decision statistics of each rule
+     */
+    @NotNull
+    public String report() {
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append(String.format("%d files parsed in %.1f ms (profiling adds overhead)%n", files, parseNanos / 1e6));
+        sb.append(String.format("%-20s %10s %10s %12s %10s %8s %8s %8s %10s%n", "rule", "decisions", "calls",
+                "time (ms)", "SLL k", "SLL max", "LL max", "LL falls", "ambiguous"));
+
+        for (final RuleStats stats : getRules()) {
+            sb.append(String.format("%-20s %10d %10d %12.2f %10d %8d %8d %8d %10d%n", stats.getRule(),
+                    stats.getDecisions(), stats.getInvocations(), stats.getTimeInPrediction() / 1e6,
+                    stats.getSllLookahead(), stats.getSllMaxLook(), stats.getLlMaxLook(), stats.getLlFallback(),
+                    stats.getAmbiguities()));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Profiles the files or the {@code .tl} files in the directories given as arguments and prints the report
+     */
+    public static void main(final String[] args) throws IOException {
+        final ParseProfiler profiler = new ParseProfiler();
+
+        for (final String arg : args) {
+            final List<Path> files = Files.walk(Paths.get(arg))
+                    .filter(p -> p.toString().endsWith(CompileUtilities.FILE_EXTENSION))
+                    .collect(Collectors.toList());
+
+            for (final Path file : files) {
+                if (!profiler.profile(file.toString()))
+                    System.err.println("Syntax errors in: " + file);
+            }
+        }
+
+        System.out.print(profiler.report());
+    }
+
+    /**
+     * The summed statistics of the decisions of a rule
+     */
+    public static @Data class RuleStats {
+
+        private final String rule;
+        private int decisions;
+        private long invocations;
+        private long timeInPrediction;
+        private long sllLookahead;
+        private long sllMaxLook;
+        private long llMaxLook;
+        private long llFallback;
+        private long ambiguities;
+
+        void add(final DecisionInfo decision) {
+            decisions++;
+            invocations += decision.invocations;
+            timeInPrediction += decision.timeInPrediction;
+            sllLookahead += decision.SLL_TotalLook;
+            sllMaxLook = Math.max(sllMaxLook, decision.SLL_MaxLook);
+            llMaxLook = Math.max(llMaxLook, decision.LL_MaxLook);
+            llFallback += decision.LL_Fallback;
+            ambiguities += decision.ambiguities.size();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.bw.tl.util;
+
+import org.bw.tl.compiler.types.Primitive;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.Type;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoized subtype relation between the types of a {@link ClassIndex}. Assignability and the
+ * inheritance distance of each (from, to) pair are computed on first use, later lookups are two
+ * hash lookups keyed by the {@link Type} instances and do not allocate
+ */
+public class SubtypeLattice {
+
+    private final Map<Type, Map<Type, Integer>> relations = new ConcurrentHashMap<>();
+    private final ClassIndex index;
+
+    public SubtypeLattice(@NotNull final ClassIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * @param from The type that is assigned
+     * @param to The type that is assigned to
+     * @return True if a value of type from can be assigned to type to without a cast
+     */
+    public boolean isAssignableFrom(@NotNull final Type from, @NotNull final Type to) {
+        return (getRelation(from, to) & 1) != 0;
+    }
+
+    /**
+     * Counts the number of types between child and parent
+     *
+     * @param childType The child type
+     * @param parentType The parent type
+     * @return The distance, or -1 if parent is not a supertype of child
+     */
+    public int countToParent(@NotNull final Type childType, @NotNull final Type parentType) {
+        return (getRelation(childType, parentType) >> 1) - 1;
+    }
+
+    /**
+     * Removes every memoized relation, the types in the index may have changed
+     */
+    public void clear() {
+        relations.clear();
+    }
+
+    /**
+     * The relation of a pair is packed into a single int: the lowest bit is the assignability and
+     * the remaining bits are the distance plus one
+     */
+    private int getRelation(@NotNull final Type from, @NotNull final Type to) {
+        Map<Type, Integer> row = relations.get(from);
+
+        if (row == null) {
+            row = new ConcurrentHashMap<>();
+            final Map<Type, Integer> existing = relations.putIfAbsent(from, row);
+
+            if (existing != null)
+                row = existing;
+        }
+
+        Integer relation = row.get(to);
+
+        if (relation == null) {
+            relation = (computeCountToParent(from, to) + 1) << 1 | (computeAssignable(from, to) ? 1 : 0);
+            row.put(to, relation);
+        }
+
+        return relation;
+    }
+
+    private boolean computeAssignable(@NotNull final Type from, @NotNull final Type to) {
+        if (from.equals(to))
+            return true;
+
+        final Primitive f = Primitive.getPrimitiveByDesc(from.getDescriptor());
+        final Primitive t = Primitive.getPrimitiveByDesc(to.getDescriptor());
+
+        if (f == null && t == null) {
+            return index.isSubtype(from.getInternalName(), to.getInternalName());
+        } else if (f == null || t == null) {
+            return false;
+        }
+
+        if (t == Primitive.INT && (f == Primitive.SHORT || f == Primitive.BYTE || f == Primitive.CHAR))
+            return true;
+
+        return t == Primitive.SHORT && (f == Primitive.BYTE);
+    }
+
+    private int computeCountToParent(@NotNull final Type childType, @NotNull final Type parentType) {
+        if (childType.equals(parentType))
+            return 0;
+
+        if (childType.getSort() != Type.OBJECT || parentType.getSort() != Type.OBJECT)
+            return -1;
+
+        int count = 0;
+
+        final ClassIndex.ClassInfo parentClass = index.getClassInfo(parentType.getInternalName());
+        final ClassIndex.ClassInfo childClass = index.getClassInfo(childType.getInternalName());
+
+        if (parentClass == null || childClass == null || !index.isSubtype(childClass.getName(), parentClass.getName())) {
+            return -1;
+        }
+
+        ClassIndex.ClassInfo cl = childClass;
+
+        while (!cl.getName().equals(parentClass.getName())) {
+            count++;
+            cl = index.getSuperClass(cl);
+
+            if (cl == null) {
+                count = 0;
+                cl = childClass;
+                break;
+            }
+        }
+
+        outer:
+        for (final String iface : cl.getInterfaces()) {
+            cl = index.getClassInfo(iface);
+
+            while (cl == null || !cl.getName().equals(parentClass.getName())) {
+                count++;
+                cl = cl == null ? null : index.getSuperClass(cl);
+
+                if (cl == null) {
+                    count = 0;
+                    break outer;
+                }
+            }
+
+            return count;
+        }
+
+        return count;
+    }
+}
@@ -4,40 +4,23 @@ import org.bw.tl.antlr.ast.QualifiedName;
 import org.bw.tl.compiler.types.AnyTypeHandler;
 import org.bw.tl.compiler.types.Primitive;
 import org.bw.tl.compiler.types.TypeHandler;
+import org.bw.tl.runtime.IntRange;
+import org.bw.tl.runtime.LongRange;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Type;
 
-import java.util.Arrays;
-import java.util.List;
-
 public class TypeUtilities {
 
+    public static final Type INT_RANGE_TYPE = Type.getType(IntRange.class);
+    public static final Type LONG_RANGE_TYPE = Type.getType(LongRange.class);
+
     public static boolean isAssignableFrom(final String fromDesc, final String toDesc) {
         return isAssignableFrom(Type.getType(fromDesc), Type.getType(toDesc));
     }
 
     public static boolean isAssignableFrom(final Type from, final Type to) {
-        if (from.equals(to))
-            return true;
-
-        final Primitive f = Primitive.getPrimitiveByDesc(from.getDescriptor());
-        final Primitive t = Primitive.getPrimitiveByDesc(to.getDescriptor());
-
-        if (f == null && t == null) {
-            try {
-                return Class.forName(to.getClassName()).isAssignableFrom(Class.forName(from.getClassName()));
-            } catch (Throwable ignored) {
-            }
-            return false;
-        } else if (f == null || t == null) {
-            return false;
-        }
-
-        if (t == Primitive.INT && (f == Primitive.SHORT || f == Primitive.BYTE || f == Primitive.CHAR))
-            return true;
-
-        return t == Primitive.SHORT && (f == Primitive.BYTE);
+        return ClassIndex.getDefault().getLattice().isAssignableFrom(from, to);
     }
 
     /**
@@ -48,52 +31,7 @@ public class TypeUtilities {
      * @return
      */
     public static int countToParent(final Type childType, final Type parentType) {
-        if (childType.equals(parentType))
-            return 0;
-
-        int count = 0;
-
-        try {
-            final Class<?> parentClass = Class.forName(parentType.getClassName());
-            Class<?> cl = Class.forName(childType.getClassName());
-
-            if (!parentClass.isAssignableFrom(cl)) {
-                return -1;
-            }
-
-            while (!cl.equals(parentClass)) {
-                count++;
-                cl = cl.getSuperclass();
-
-                if (cl == null) {
-                    count = 0;
-                    cl = Class.forName(childType.getClassName());
-                    break;
-                }
-            }
-
-            outer:
-            for (final Class<?> iface : cl.getInterfaces()) {
-                cl = iface;
-
-                while (!cl.equals(parentClass)) {
-                    count++;
-                    cl = cl.getSuperclass();
-
-                    if (cl == null) {
-                        count = 0;
-                        break outer;
-                    }
-                }
-
-                return count;
-            }
-
-        } catch (ClassNotFoundException e) {
-            return -1;
-        }
-
-        return count;
+        return ClassIndex.getDefault().getLattice().countToParent(childType, parentType);
     }
 
     public static boolean isAssignableWithImplicitCast(final String fromDesc, final String toDesc) {
@@ -133,6 +71,78 @@ public class TypeUtilities {
         return t == Primitive.LONG && (f == Primitive.INT || f == Primitive.SHORT || f == Primitive.BYTE || f == Primitive.CHAR);
     }
 
+    /**
+     * Finds the type of a value that has one of two types, such as the value of an if or a when
+     *
+     * @param type1 The first type
+     * @param type2 The second type
+     * @return The type that the other type is assignable to, the closest common superclass of two classes,
+     * or Object
+     */
+    @NotNull
+    public static Type getCommonType(@NotNull final Type type1, @NotNull final Type type2) {
+        if (type1.equals(type2)) {
+            return type1;
+        } else if (isAssignableFrom(type1, type2)) {
+            return type2;
+        } else if (isAssignableFrom(type2, type1)) {
+            return type1;
+        } else if (isAssignableWithImplicitCast(type1, type2)) {
+            return type2;
+        } else if (isAssignableWithImplicitCast(type2, type1)) {
+            return type1;
+        } else if (type1.getSort() == Type.OBJECT && type2.getSort() == Type.OBJECT) {
+            return Type.getObjectType(ClassIndex.getDefault().getCommonSuperClass(type1.getInternalName(),
+                    type2.getInternalName()));
+        }
+
+        return Type.getType(Object.class);
+    }
+
+    /**
+     * @return The type of a range with bounds of the given types, {@link LongRange} if a bound is a long or
+     * {@link IntRange} if both are int, short, byte or char. Null if a bound is not an integer
+     */
+    @Nullable
+    public static Type getRangeType(@NotNull final Type first, @NotNull final Type last) {
+        if (!isIntegral(first) || !isIntegral(last))
+            return null;
+
+        return first.equals(Type.LONG_TYPE) || last.equals(Type.LONG_TYPE) ? LONG_RANGE_TYPE : INT_RANGE_TYPE;
+    }
+
+    /**
+     * @return The type of the values of a range type, null if the type is not a range
+     */
+    @Nullable
+    public static Type getRangeElementType(@NotNull final Type type) {
+        if (type.equals(INT_RANGE_TYPE))
+            return Type.INT_TYPE;
+
+        return type.equals(LONG_RANGE_TYPE) ? Type.LONG_TYPE : null;
+    }
+
+    /**
+     * @return True if a value of the type can be the step of a range or checked to be in a range with values of
+     * the element type
+     */
+    public static boolean isRangeValue(@NotNull final Type type, @NotNull final Type elementType) {
+        return isIntegral(type) && (elementType.equals(Type.LONG_TYPE) || !type.equals(Type.LONG_TYPE));
+    }
+
+    public static boolean isIntegral(@NotNull final Type type) {
+        switch (type.getSort()) {
+            case Type.CHAR:
+            case Type.BYTE:
+            case Type.SHORT:
+            case Type.INT:
+            case Type.LONG:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     /**
      * Returns the method signature including name and argument types
      *
@@ -171,10 +181,11 @@ public class TypeUtilities {
             }
         }
 
-        try {
-            return Type.getType(Class.forName(name.getName()));
-        } catch (ClassNotFoundException ignored) {
-        }
+        final String internalName = name.getName().replace('.', '/');
+
+        if (ClassIndex.getDefault().contains(internalName))
+            return Type.getObjectType(internalName);
+
         return null;
     }
 
@@ -189,17 +200,6 @@ public class TypeUtilities {
         return getTypeFromName(QualifiedName.of(name));
     }
 
-    public static QualifiedName getNameFromImports(@NotNull final List<QualifiedName> imports, @NotNull final QualifiedName name) {
-        for (final QualifiedName imp : imports) {
-
-            if (name.length() == 1 && imp.endsWith(name.getNames()[0]) || Arrays.equals(imp.getNames(), name.getNames())) {
-                return imp;
-            }
-        }
-
-        return name;
-    }
-
     public static int getDim(@NotNull final Type type) {
         final String desc = type.getDescriptor();
         int arrayDim = 0;
@@ -247,11 +247,6 @@ public class TypeUtilities {
     }
 
     public static boolean isInterface(final String type) {
-        try {
-            return Class.forName(type.replace("/", ".")).isInterface();
-        } catch (final ClassNotFoundException e) {
-        }
-
-        return false;
+        return ClassIndex.getDefault().isInterface(type.replace(".", "/"));
     }
 }
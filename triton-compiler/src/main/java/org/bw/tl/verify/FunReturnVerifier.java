@@ -139,6 +139,10 @@ public class FunReturnVerifier implements Verifiable<Function> {
         public void visitLiteral(Literal literal) {
         }
 
+        @Override
+        public void visitStringTemplate(StringTemplate template) {
+        }
+
         @Override
         public void visitCall(Call call) {
         }
@@ -7,6 +7,7 @@ import org.bw.tl.antlr.GrammarLexer;
 import org.bw.tl.antlr.GrammarParser;
 import org.bw.tl.antlr.ast.Expression;
 import org.bw.tl.antlr.ast.Clazz;
+import org.bw.tl.antlr.ast.SourceFile;
 import org.bw.tl.antlr.visitor.ExpressionVisitor;
 import org.bw.tl.antlr.visitor.FileVisitor;
 import org.bw.tl.compiler.Scope;
@@ -68,7 +69,7 @@ public class TestUtilities {
         final GrammarParser.ExpressionContext ctx = p.expression();
 
         if (p.getNumberOfSyntaxErrors() == 0) {
-            return ctx.accept(ExpressionVisitor.of("<test>"));
+            return ctx.accept(ExpressionVisitor.of(SourceFile.of("<test>", ctx.start.getInputStream())));
         }
 
         return null;
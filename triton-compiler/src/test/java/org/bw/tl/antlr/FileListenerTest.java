@@ -0,0 +1,289 @@
+package org.bw.tl.antlr;
+
+import org.bw.tl.Error;
+import org.bw.tl.ErrorType;
+import org.bw.tl.TestUtilities;
+import org.bw.tl.antlr.ast.*;
+import org.bw.tl.util.CompileUtilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class FileListenerTest {
+
+    @Test
+    public void testSameAsVisitor() throws IOException {
+        final List<Path> files = Files.walk(Paths.get("testData/"))
+                .filter(p -> p.toString().endsWith(CompileUtilities.FILE_EXTENSION))
+                .collect(Collectors.toList());
+
+        files.add(Paths.get("../triton-stdlib/src/main/triton/triton/Builtin.tl"));
+
+        for (final Path file : files) {
+            assertSameAsVisitor(file.toString());
+        }
+    }
+
+    @Test
+    public void testGeneratedSameAsVisitor() throws IOException {
+        final Path file = Files.createTempFile("generated", CompileUtilities.FILE_EXTENSION);
+
+        try {
+            Files.write(file, ParserBenchmark.generate(50).getBytes());
+            assertSameAsVisitor(file.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSyntaxError() throws IOException {
+        final Path file = Files.createTempFile("invalid", CompileUtilities.FILE_EXTENSION);
+
+        try {
+            Files.write(file, "package test\nfun f(): int {\n    return 1 +\n}\n".getBytes());
+            Assert.assertNull(CompileUtilities.getClazz(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSkeletonSameAsFile() throws IOException {
+        final List<String> files = Files.walk(Paths.get("testData/"))
+                .filter(p -> p.toString().endsWith(CompileUtilities.FILE_EXTENSION))
+                .filter(p -> !p.toString().contains("_fail"))
+                .map(Path::toString)
+                .collect(Collectors.toList());
+
+        files.add("../triton-stdlib/src/main/triton/triton/Builtin.tl");
+
+        final List<Clazz> expected = CompileUtilities.parse(files, false);
+        final List<Clazz> actual = CompileUtilities.parse(files, true);
+
+        Assert.assertNotNull(expected);
+        Assert.assertNotNull(actual);
+
+        for (int i = 0; i < files.size(); i++) {
+            final Function function = actual.get(i).getFunctions().isEmpty() ? null : actual.get(i).getFunctions().get(0);
+
+            if (function != null && !function.isShortForm())
+                Assert.assertSame(function, function.getBody().getParent());
+
+            // the serialized form includes the positions of every node
+            Assert.assertArrayEquals(files.get(i), serialize(expected.get(i)), serialize(actual.get(i)));
+        }
+    }
+
+    @Test
+    public void testSkeletonSyntaxError() throws IOException {
+        final Path file = Files.createTempFile("invalid", CompileUtilities.FILE_EXTENSION);
+
+        try {
+            Files.write(file, "package test\nfun f(): int {\n    return 1 +\n}\nfun g(): int = 1 +\n".getBytes());
+            Assert.assertNull(CompileUtilities.parse(Collections.singletonList(file.toString()), true));
+
+            Files.write(file, "package test\nfun f(): int {\n    return 1 +\n}\nfun g(): int = 1\n".getBytes());
+
+            final List<Clazz> classes = CompileUtilities.parse(Collections.singletonList(file.toString()), true);
+            Assert.assertNotNull(classes);
+
+            final Function function = classes.get(0).getFunctions().get(0);
+            final List<Error> errors = function.parseBody();
+
+            Assert.assertEquals(1, errors.size());
+            Assert.assertEquals(ErrorType.SYNTAX_ERROR, errors.get(0).getErrorType());
+            Assert.assertEquals(4, errors.get(0).getLineNumber());
+            Assert.assertTrue(((Block) function.getBody()).getStatements().isEmpty());
+            Assert.assertSame(errors, function.parseBody());
+            Assert.assertTrue(classes.get(0).getFunctions().get(1).parseBody().isEmpty());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSourceOffsets() throws IOException {
+        final Path file = Files.createTempFile("offsets", CompileUtilities.FILE_EXTENSION);
+        final String src = "package test\nimport java.util.List\n\nfun f(int a): int {\n    return a + 1\n}\n";
+
+        try {
+            Files.write(file, src.getBytes());
+
+            final Clazz clazz = CompileUtilities.getClazz(file.toString());
+            Assert.assertNotNull(clazz);
+
+            final Function function = clazz.getFunctions().get(0);
+            final Node stmt = ((Block) function.getBody()).getStatements().get(0);
+
+            Assert.assertEquals(src.substring(src.indexOf("fun"), src.length() - 1), function.getText());
+            Assert.assertEquals("return a + 1", stmt.getText());
+            Assert.assertEquals(src.indexOf("return"), stmt.getStart());
+            Assert.assertSame(function.getSource(), stmt.getSource());
+            Assert.assertSame(clazz.getImports().get(0).getNames(), QualifiedName.of("java.util.List").getNames());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSoftKeywords() throws IOException {
+        final Path file = Files.createTempFile("keywords", CompileUtilities.FILE_EXTENSION);
+        final String src = "package test\n\nfun f(int step): int = step + 1\n\n" +
+                "fun downTo(int in): boolean = in in 0..in step 2\n";
+
+        try {
+            Files.write(file, src.getBytes());
+
+            final Clazz clazz = CompileUtilities.getClazz(file.toString());
+            Assert.assertNotNull(clazz);
+
+            final Function f = clazz.getFunctions().get(0);
+            Assert.assertArrayEquals(new String[]{"step"}, f.getParameterNames());
+            Assert.assertEquals("step", ((BinaryOp) f.getBody()).getLeftSide().getText());
+
+            final Function downTo = clazz.getFunctions().get(1);
+            final BinaryOp in = (BinaryOp) downTo.getBody();
+
+            Assert.assertEquals("downTo", downTo.getName());
+            Assert.assertEquals("in", in.getOperator());
+            Assert.assertEquals("step", ((BinaryOp) in.getRightSide()).getOperator());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStringTemplate() throws IOException {
+        final Path file = Files.createTempFile("template", CompileUtilities.FILE_EXTENSION);
+        final String src = "package test\n\nfun f(int a): java.lang.String = \"a$a b${a + 1} {${\"x${a}\"}}\"\n";
+
+        try {
+            Files.write(file, src.getBytes());
+
+            final Clazz clazz = CompileUtilities.getClazz(file.toString());
+            Assert.assertNotNull(clazz);
+
+            final StringTemplate template = (StringTemplate) clazz.getFunctions().get(0).getBody();
+            final List<Expression> parts = template.getParts();
+
+            Assert.assertEquals(7, parts.size());
+            Assert.assertEquals("a", ((Literal) parts.get(0)).getValue());
+            Assert.assertEquals("$a", parts.get(1).getText());
+            Assert.assertTrue(parts.get(1) instanceof QualifiedName);
+            Assert.assertEquals(" b", ((Literal) parts.get(2)).getValue());
+            Assert.assertTrue(parts.get(3) instanceof BinaryOp);
+            Assert.assertEquals("a + 1", parts.get(3).getText());
+            Assert.assertEquals(src.indexOf("a + 1"), parts.get(3).getStart());
+            Assert.assertEquals(2, ((StringTemplate) parts.get(5)).getParts().size());
+            Assert.assertEquals("}", ((Literal) parts.get(6)).getValue());
+
+            for (final Expression part : parts) {
+                Assert.assertSame(template, part.getParent());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStringTemplateSyntaxError() throws IOException {
+        final Path file = Files.createTempFile("invalid", CompileUtilities.FILE_EXTENSION);
+        final String src = "package test\nfun f(): java.lang.String {\n    return \"a\n${1 +}\"\n}\n";
+
+        try {
+            Files.write(file, src.getBytes());
+            Assert.assertNull(CompileUtilities.getClazz(file.toString()));
+
+            final List<Clazz> classes = CompileUtilities.parse(Collections.singletonList(file.toString()), true);
+            Assert.assertNotNull(classes);
+
+            final List<Error> errors = classes.get(0).getFunctions().get(0).parseBody();
+
+            Assert.assertEquals(1, errors.size());
+            Assert.assertEquals(ErrorType.SYNTAX_ERROR, errors.get(0).getErrorType());
+            Assert.assertEquals(4, errors.get(0).getLineNumber());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testListLiteral() throws IOException {
+        final Path file = Files.createTempFile("list", CompileUtilities.FILE_EXTENSION);
+        final Path other = Files.createTempFile("other", CompileUtilities.FILE_EXTENSION);
+
+        try {
+            Files.write(file, "package test\nfun f(): int {\n    var a = [1, 2]\n    return 1\n}\n".getBytes());
+            Files.write(other, "package test\nfun g(): int = 2\n".getBytes());
+            Assert.assertNull(CompileUtilities.getClazz(file.toString()));
+
+            final List<Clazz> classes = CompileUtilities.parse(Arrays.asList(file.toString(), other.toString()), true);
+            Assert.assertNotNull(classes);
+            Assert.assertEquals(2, classes.size());
+
+            final List<Error> errors = classes.get(0).getFunctions().get(0).parseBody();
+
+            Assert.assertEquals(1, errors.size());
+            Assert.assertEquals(ErrorType.SYNTAX_ERROR, errors.get(0).getErrorType());
+            Assert.assertEquals(3, errors.get(0).getLineNumber());
+        } finally {
+            Files.delete(file);
+            Files.delete(other);
+        }
+    }
+
+    private static void assertSameAsVisitor(final String file) throws IOException {
+        final Clazz expected = TestUtilities.getClazzFromFile(file);
+        final Clazz actual = CompileUtilities.getClazz(file);
+
+        Assert.assertNotNull(file, expected);
+        Assert.assertNotNull(file, actual);
+        // equals on some nodes follows their parents back up the tree, compare the printed trees instead
+        Assert.assertEquals(file, expected.toString(), actual.toString());
+
+        for (int i = 0; i < expected.getFields().size(); i++) {
+            assertSamePosition(expected.getFields().get(i), actual.getFields().get(i));
+        }
+
+        for (int i = 0; i < expected.getFunctions().size(); i++) {
+            final Function function = expected.getFunctions().get(i);
+            assertSamePosition(function, actual.getFunctions().get(i));
+
+            if (function.getBody() instanceof Block) {
+                final List<Node> statements = ((Block) function.getBody()).getStatements();
+                final List<Node> actualStatements = ((Block) actual.getFunctions().get(i).getBody()).getStatements();
+
+                for (int j = 0; j < statements.size(); j++) {
+                    assertSamePosition(statements.get(j), actualStatements.get(j));
+                }
+            }
+        }
+    }
+
+    private static void assertSamePosition(final Node expected, final Node actual) {
+        Assert.assertEquals(expected.getLineNumber(), actual.getLineNumber());
+        Assert.assertEquals(expected.getFile(), actual.getFile());
+        Assert.assertEquals(expected.getText(), actual.getText());
+    }
+
+    private static byte[] serialize(final Clazz clazz) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            ClazzSerializer.write(clazz, out);
+        }
+
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,136 @@
+package org.bw.tl.antlr;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.bw.tl.antlr.visitor.FileListener;
+import org.bw.tl.antlr.visitor.FileVisitor;
+import org.bw.tl.util.CompileUtilities;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Parses the test programs and a large generated module with full LL prediction and with
+ * two-stage SLL-then-LL parsing, and builds their modules from a parse tree and from parse events.
+ * Run with {@code -prof gc} to compare the allocations of the two ways of building a module
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"testData", "generated"})
+    private String corpus;
+
+    private List<String> sources;
+
+    @Setup
+    public void setup() throws IOException {
+        if (corpus.equals("testData")) {
+            sources = new ArrayList<>();
+
+            for (final String dir : new String[]{"testData/programs/", "testData/rt_tests/"}) {
+                final List<Path> files = Files.walk(Paths.get(dir))
+                        .filter(p -> p.toString().endsWith(CompileUtilities.FILE_EXTENSION))
+                        .collect(Collectors.toList());
+
+                for (final Path file : files) {
+                    sources.add(new String(Files.readAllBytes(file)));
+                }
+            }
+        } else {
+            sources = Collections.singletonList(generate(2000));
+        }
+    }
+
+    @Benchmark
+    public void ll(final Blackhole blackhole) {
+        for (final String source : sources) {
+            blackhole.consume(newParser(source).file());
+        }
+    }
+
+    @Benchmark
+    public void twoStage(final Blackhole blackhole) {
+        for (final String source : sources) {
+            blackhole.consume(CompileUtilities.parse(newParser(source), GrammarParser::file));
+        }
+    }
+
+    @Benchmark
+    public void visitor(final Blackhole blackhole) {
+        for (final String source : sources) {
+            blackhole.consume(CompileUtilities.parse(newParser(source), GrammarParser::file)
+                    .accept(FileVisitor.of("<benchmark>")));
+        }
+    }
+
+    @Benchmark
+    public void listener(final Blackhole blackhole) {
+        for (final String source : sources) {
+            final GrammarParser parser = newParser(source);
+            final FileListener listener = FileListener.of("<benchmark>", parser);
+
+            parser.setBuildParseTree(false);
+            parser.addParseListener(listener);
+            CompileUtilities.parse(parser, GrammarParser::file);
+
+            blackhole.consume(listener.getClazz());
+        }
+    }
+
+    private static GrammarParser newParser(final String source) {
+        return new GrammarParser(new CommonTokenStream(new GrammarLexer(CharStreams.fromString(source))));
+    }
+
+    /**
+     * @param functions The number of functions
+     * @return A module with the specified number of functions using most statement kinds
+     */
+    static String generate(final int functions) {
+        final StringBuilder sb = new StringBuilder("package generated\n\nimport java.util.ArrayList\n\n");
+
+        for (int i = 0; i < functions; i++) {
+            sb.append("var field").append(i).append(" = ").append(i).append('\n');
+        }
+
+        for (int i = 0; i < functions; i++) {
+            sb.append("\nfun f").append(i).append("(int a, long b): long {\n")
+                    .append("    var x = a * ").append(i).append(" + field").append(i).append('\n')
+                    .append("    var list = new ArrayList()\n")
+                    .append("    for (var j = 0; j < x; j += 1) {\n")
+                    .append("        list.add(String.valueOf(j))\n")
+                    .append("    }\n")
+                    .append("    if (x > 10 && list.size() != 0) {\n")
+                    .append("        x = -x\n")
+                    .append("    } else {\n")
+                    .append("        while (x < 100) {\n")
+                    .append("            x *= 2\n")
+                    .append("        }\n")
+                    .append("    }\n")
+                    .append("    return (long) x + b\n")
+                    .append("}\n");
+        }
+
+        return sb.toString();
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -21,23 +21,16 @@ public @Data class RuleTest {
     private final String file;
     private final boolean isTopLevel;
     private final boolean pass;
+    private final String tree;
 
     @Test
     public void testSyntax() {
         if (txt == null || txt.isEmpty())
             Assert.fail("No input text for " + file);
 
-        final GrammarLexer lexer = new GrammarLexer(CharStreams.fromString(txt));
-        final CommonTokenStream ts = new CommonTokenStream(lexer);
-        final GrammarParser p = new GrammarParser(ts);
+        final GrammarParser p = newParser();
 
-        p.removeErrorListener(ConsoleErrorListener.INSTANCE);
-
-        if (!isTopLevel) {
-            p.block();
-        } else {
-            p.file();
-        }
+        parse(p);
 
         if (pass) {
             Assert.assertEquals(0, p.getNumberOfSyntaxErrors());
@@ -47,6 +40,39 @@ public @Data class RuleTest {
     }
 
 
+    /**
+     * A passing file must parse to the tree in the .tree file next to it, so a grammar change that changes
+     * the tree of a file is deliberate. Compared to the grammar before block, semi, for and new were
+     * restructured for SLL prediction the trees differ in two ways. The class of a new expression is a
+     * className instead of an fqn. The separator after the statement of a for loop belongs to the semi of
+     * the enclosing block instead of the for loop
+     */
+    @Test
+    public void testTree() {
+        if (!pass)
+            return;
+
+        if (tree == null)
+            Assert.fail("No parse tree for " + file);
+
+        final GrammarParser p = newParser();
+
+        Assert.assertEquals(tree.trim(), parse(p).toStringTree(p));
+    }
+
+    private GrammarParser newParser() {
+        final GrammarLexer lexer = new GrammarLexer(CharStreams.fromString(txt));
+        final CommonTokenStream ts = new CommonTokenStream(lexer);
+        final GrammarParser p = new GrammarParser(ts);
+
+        p.removeErrorListener(ConsoleErrorListener.INSTANCE);
+        return p;
+    }
+
+    private ParserRuleContext parse(final GrammarParser p) {
+        return isTopLevel ? p.file() : p.block();
+    }
+
     private static String load(Path path) {
         try {
             return new String(Files.readAllBytes(path));
@@ -63,7 +89,8 @@ public @Data class RuleTest {
                         load(path),
                         path.getFileName().toString(),
                         path.toString().toLowerCase().contains("top"),
-                        path.toString().toLowerCase().contains("pass")
+                        path.toString().toLowerCase().contains("pass"),
+                        load(Paths.get(path.toString().replaceAll("\\.gr$", ".tree")))
                 }).collect(Collectors.toList());
     }
 }
@@ -0,0 +1,283 @@
+package org.bw.tl.compiler;
+
+import org.bw.tl.Error;
+import org.bw.tl.TestUtilities;
+import org.bw.tl.antlr.ast.Clazz;
+import org.bw.tl.antlr.ast.QualifiedName;
+import org.bw.tl.primer.ModifierPrimer;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.*;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.objectweb.asm.Opcodes.I2L;
+import static org.objectweb.asm.Opcodes.IINC;
+import static org.objectweb.asm.Opcodes.LREM;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+public class CompilerTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void setup() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testParallelOutput() throws IOException {
+        final Compiler sequential = new Compiler(getRuntimeTests());
+        final Compiler parallel = new Compiler(getRuntimeTests());
+
+        parallel.setPool(pool);
+
+        assertSameOutput(sequential.compile(), parallel.compile());
+    }
+
+    @Test
+    public void testParallelFunctions() {
+        final Map<String, byte[]> expected = new Compiler(getLargeModule(false)).compile();
+        final Compiler compiler = new Compiler(getLargeModule(false));
+
+        compiler.setPool(pool);
+
+        assertSameOutput(expected, compiler.compile());
+    }
+
+    @Test
+    public void testParallelErrorOrder() {
+        final Compiler sequential = new Compiler(getLargeModule(true));
+        final Compiler parallel = new Compiler(getLargeModule(true));
+
+        parallel.setPool(pool);
+
+        Assert.assertNull(sequential.compile());
+        Assert.assertNull(parallel.compile());
+
+        final List<Error> errors = sequential.getErrors();
+
+        Assert.assertEquals(Compiler.PARALLEL_FUNCTION_THRESHOLD * 2, errors.size());
+        Assert.assertEquals(errors, parallel.getErrors());
+
+        for (int i = 1; i < errors.size(); i++) {
+            Assert.assertTrue(errors.get(i - 1).getLineNumber() < errors.get(i).getLineNumber());
+        }
+    }
+
+    @Test
+    public void testStringConcatTargets() {
+        final String src = "package test\nfun f(int a, java.lang.String b): java.lang.String = \"x\" + a + (\"y\" + \"z\") + b\n";
+
+        final MethodNode java8 = getMethod(compileModule(src, V1_8), "f");
+        final MethodNode java9 = getMethod(compileModule(src, V1_8 + 1), "f");
+
+        Assert.assertEquals(1, count(java8, insn -> insn instanceof MethodInsnNode &&
+                ((MethodInsnNode) insn).name.equals("<init>") && ((MethodInsnNode) insn).desc.equals("(I)V")));
+        Assert.assertEquals(1, count(java8, insn -> insn instanceof MethodInsnNode &&
+                ((MethodInsnNode) insn).name.equals("toString")));
+        Assert.assertEquals(0, count(java8, insn -> insn instanceof InvokeDynamicInsnNode));
+
+        final List<AbstractInsnNode> indy = Arrays.stream(java9.instructions.toArray())
+                .filter(insn -> insn instanceof InvokeDynamicInsnNode).collect(Collectors.toList());
+
+        Assert.assertEquals(1, indy.size());
+        Assert.assertEquals("x\u0001yz\u0001", ((InvokeDynamicInsnNode) indy.get(0)).bsmArgs[0]);
+        Assert.assertEquals("(ILjava/lang/String;)Ljava/lang/String;", ((InvokeDynamicInsnNode) indy.get(0)).desc);
+        Assert.assertEquals(0, count(java9, insn -> insn instanceof TypeInsnNode));
+    }
+
+    @Test
+    public void testWhenSwitch() {
+        final String src = "package test\n" +
+                "fun dense(int x): int { return when (x) { 1 -> 10\n 2 -> 20\n 4 -> 40\n else -> 0 } }\n" +
+                "fun sparse(int x): int { return when (x) { -1000000 -> 30\n 1 -> 10\n 1000 -> 20\n else -> 0 } }\n" +
+                "fun strings(java.lang.String s): int { return when (s) { \"Aa\" -> 1\n \"BB\" -> 2\n \"c\" -> 3\n else -> 0 } }\n" +
+                "fun chain(int x, int y): int { return when (x) { y -> 1\n else -> 0 } }\n";
+        final byte[] bytecode = compileModule(src, V1_8);
+
+        Assert.assertEquals(1, count(getMethod(bytecode, "dense"), insn -> insn instanceof TableSwitchInsnNode));
+        Assert.assertEquals(1, count(getMethod(bytecode, "sparse"), insn -> insn instanceof LookupSwitchInsnNode));
+
+        final MethodNode strings = getMethod(bytecode, "strings");
+        final List<AbstractInsnNode> switches = Arrays.stream(strings.instructions.toArray())
+                .filter(insn -> insn instanceof LookupSwitchInsnNode).collect(Collectors.toList());
+
+        Assert.assertEquals(1, switches.size());
+        // "Aa" and "BB" have the same hash code
+        Assert.assertEquals(2, ((LookupSwitchInsnNode) switches.get(0)).keys.size());
+        Assert.assertEquals(3, count(strings, insn -> insn instanceof MethodInsnNode &&
+                ((MethodInsnNode) insn).name.equals("equals")));
+
+        final MethodNode chain = getMethod(bytecode, "chain");
+
+        Assert.assertEquals(0, count(chain, insn -> insn instanceof TableSwitchInsnNode ||
+                insn instanceof LookupSwitchInsnNode));
+    }
+
+    @Test
+    public void testWhenType() {
+        final String src = "package test\n" +
+                "fun f(int x): int { return when (x) { 1 -> 10\n 2 -> 300\n else -> x } }\n" +
+                "fun g(int x, int y): int { return when (x) { y -> 10\n else -> 20 } }\n" +
+                "fun h(int x): long { return when { x > 0 -> x\n else -> java.lang.Long.parseLong(\"1\") } }\n";
+        final byte[] bytecode = compileModule(src, V1_8);
+
+        for (final String name : new String[]{"f", "g", "h"}) {
+            Assert.assertEquals(name, 0, count(getMethod(bytecode, name), insn -> insn instanceof MethodInsnNode &&
+                    ((MethodInsnNode) insn).name.endsWith("Value")));
+        }
+
+        Assert.assertEquals(1, count(getMethod(bytecode, "h"), insn -> insn.getOpcode() == I2L));
+    }
+
+    @Test
+    public void testRangeLoop() {
+        final String src = "package test\n" +
+                "fun f(int n): int { var s = 0\n for (var i : 0..n) s += i\n return s }\n" +
+                "fun g(int n, int k): int { var s = 0\n for (var i : n downTo 0 step k) s += i\n return s }\n" +
+                "fun h(int x, int n): boolean = x in 1..n\n" +
+                "fun j(long x, long n, long k): boolean = x in n downTo 0 step k\n" +
+                "fun k(): int { var s = 0\n for (var i : 0..10 step 3) s += i\n return s }\n";
+        final byte[] bytecode = compileModule(src, V1_8);
+
+        for (final String name : new String[]{"f", "g", "h", "j", "k"}) {
+            final MethodNode method = getMethod(bytecode, name);
+
+            // the only allocation is the exception of a step that is not positive
+            Assert.assertEquals(name, name.equals("g") || name.equals("j") ? 1 : 0,
+                    count(method, insn -> insn.getOpcode() == NEW));
+            Assert.assertEquals(name, 0, count(method, insn -> insn instanceof MethodInsnNode &&
+                    ((MethodInsnNode) insn).owner.startsWith("org/bw/tl/")));
+        }
+
+        Assert.assertEquals(0, count(getMethod(bytecode, "f"), insn -> insn instanceof MethodInsnNode));
+        Assert.assertEquals(1, count(getMethod(bytecode, "f"), insn -> insn.getOpcode() == IINC));
+        Assert.assertEquals(0, count(getMethod(bytecode, "h"), insn -> insn instanceof MethodInsnNode));
+
+        // the last value of 0..10 step 3 is folded to 9
+        Assert.assertEquals(1, count(getMethod(bytecode, "k"), insn -> insn instanceof IntInsnNode &&
+                ((IntInsnNode) insn).operand == 9));
+        Assert.assertEquals(0, count(getMethod(bytecode, "k"), insn -> insn.getOpcode() == LREM));
+    }
+
+    @Test
+    public void testRangeStep() throws ReflectiveOperationException {
+        final String src = "package test\n" +
+                "fun f(int k): int { var s = 0\n for (var i : 0..10 step k) s += 1\n return s }\n";
+        final Clazz clazz = TestUtilities.getClazz(src);
+        Assert.assertNotNull(clazz);
+
+        final Method f = TestUtilities.loadClass(clazz.getModuleClassName(), compileModule(src, V1_8))
+                .getMethod("f", int.class);
+
+        Assert.assertEquals(4, f.invoke(null, 3));
+
+        try {
+            f.invoke(null, 0);
+            Assert.fail();
+        } catch (final InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    private static byte[] compileModule(final String src, final int target) {
+        final Clazz clazz = TestUtilities.getClazz(src);
+        Assert.assertNotNull(clazz);
+        new ModifierPrimer().prime(clazz);
+
+        final Compiler compiler = new Compiler(clazz);
+        compiler.setTarget(target);
+
+        final Map<String, byte[]> classes = compiler.compile();
+        Assert.assertNotNull(classes);
+
+        return classes.get(clazz.getModuleClassName());
+    }
+
+    private static MethodNode getMethod(final byte[] bytecode, final String name) {
+        final byte[] bytes = bytecode.clone();
+        final ClassNode node = new ClassNode();
+
+        // the class reader only reads up to Java 8 class files
+        bytes[7] = V1_8;
+        new ClassReader(bytes).accept(node, 0);
+
+        for (final Object method : node.methods) {
+            if (((MethodNode) method).name.equals(name))
+                return (MethodNode) method;
+        }
+
+        throw new AssertionError("Missing method: " + name);
+    }
+
+    private static long count(final MethodNode method, final Predicate<AbstractInsnNode> predicate) {
+        return Arrays.stream(method.instructions.toArray()).filter(predicate).count();
+    }
+
+    private static void assertSameOutput(final Map<String, byte[]> expected, final Map<String, byte[]> actual) {
+        Assert.assertNotNull(expected);
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+
+        for (final Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            Assert.assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+
+    private static List<Clazz> getRuntimeTests() throws IOException {
+        final ModifierPrimer mp = new ModifierPrimer();
+
+        return Files.walk(Paths.get("testData/rt_tests/"))
+                .filter(p -> p.toString().endsWith(".tl"))
+                .sorted()
+                .map(Path::toString)
+                .map(TestUtilities::getClazzFromFile)
+                .peek(mp::prime)
+                .peek(clazz -> clazz.getStaticImports().add(QualifiedName.of("org.bw.tl.Builtin")))
+                .collect(Collectors.toList());
+    }
+
+    private static List<Clazz> getLargeModule(final boolean errors) {
+        final StringBuilder sb = new StringBuilder("package test\n");
+
+        for (int i = 0; i < Compiler.PARALLEL_FUNCTION_THRESHOLD * 2; i++) {
+            sb.append("fun f").append(i).append("(int a): int {\n");
+
+            if (errors) {
+                sb.append("    return undefined").append(i).append("\n");
+            } else {
+                sb.append("    return a * ").append(i).append(" + f").append(i == 0 ? 0 : i - 1).append("(a)\n");
+            }
+
+            sb.append("}\n");
+        }
+
+        final Clazz clazz = TestUtilities.getClazz(sb.toString());
+        Assert.assertNotNull(clazz);
+        new ModifierPrimer().prime(clazz);
+
+        return Collections.singletonList(clazz);
+    }
+}
@@ -101,4 +101,35 @@ public class ScopeTest {
         scope.endScope();
         scope.clear();
     }
+
+    @Test
+    public void testSlotReuse() {
+        scope.beginScope();
+        scope.putVar("param", Type.INT_TYPE, 0);
+
+        for (int i = 0; i < 10; i++) {
+            scope.beginScope();
+            scope.putVar("a", Type.LONG_TYPE, 0);
+            scope.putVar("b", Type.getType("Ljava/lang/String;"), 0);
+
+            Assert.assertEquals(1, scope.findVar("a").getIndex());
+            Assert.assertEquals(3, scope.findVar("b").getIndex());
+            scope.endScope();
+        }
+
+        Assert.assertEquals(4, scope.getSlotCount());
+
+        // a released slot is only reused by a variable of the same type
+        scope.beginScope();
+        scope.putVar("c", Type.INT_TYPE, 0);
+        Assert.assertEquals(4, scope.findVar("c").getIndex());
+        scope.putVar("d", Type.getType("Ljava/lang/String;"), 0);
+        Assert.assertEquals(3, scope.findVar("d").getIndex());
+        scope.endScope();
+
+        Assert.assertEquals(0, scope.findVar("param").getIndex());
+        Assert.assertEquals(5, scope.getSlotCount());
+
+        scope.endScope();
+    }
 }
@@ -0,0 +1,52 @@
+package org.bw.tl.compiler.operator;
+
+import org.bw.tl.compiler.resolve.Operator;
+import org.objectweb.asm.Type;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up every arithmetic and comparison operator for every pair of numeric operand
+ * types, plus a few string concatenations
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperatorBenchmark {
+
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "%", "==", "!=", "<", ">", "<=", ">="};
+    private static final Type[] TYPES = {Type.BYTE_TYPE, Type.SHORT_TYPE, Type.CHAR_TYPE, Type.INT_TYPE,
+            Type.LONG_TYPE, Type.FLOAT_TYPE, Type.DOUBLE_TYPE};
+    private static final Type STRING = Type.getType(String.class);
+
+    @Benchmark
+    public void primitiveOperators(final Blackhole blackhole) {
+        for (final String operator : OPERATORS) {
+            for (final Type lhs : TYPES) {
+                for (final Type rhs : TYPES) {
+                    blackhole.consume(Operator.getOperator(operator, lhs, rhs));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void stringConcatenation(final Blackhole blackhole) {
+        blackhole.consume(Operator.getOperator("+", STRING, STRING));
+        blackhole.consume(Operator.getOperator("+", STRING, Type.INT_TYPE));
+        blackhole.consume(Operator.getOperator("+", Type.DOUBLE_TYPE, STRING));
+        blackhole.consume(Operator.getOperator("+", STRING, Type.getType(Object.class)));
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OperatorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
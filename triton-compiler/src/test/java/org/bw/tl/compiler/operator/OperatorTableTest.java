@@ -0,0 +1,63 @@
+package org.bw.tl.compiler.operator;
+
+import org.bw.tl.compiler.resolve.Operator;
+import org.bw.tl.util.ClassIndex;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+public class OperatorTableTest implements Opcodes {
+
+    @Test
+    public void testSharedInstances() {
+        final Operator op = Operator.getOperator("+", Type.INT_TYPE, Type.LONG_TYPE);
+
+        Assert.assertNotNull(op);
+        Assert.assertSame(op, Operator.getOperator("+", Type.INT_TYPE, Type.LONG_TYPE));
+        Assert.assertEquals(LADD, op.getOpcode());
+        Assert.assertEquals(Type.INT_TYPE, op.getLhs());
+        Assert.assertEquals(Type.LONG_TYPE, op.getRhs());
+        Assert.assertEquals(Type.LONG_TYPE, op.getResultType());
+
+        final Type string = Type.getType(String.class);
+        final Operator concat = Operator.getOperator("+", string, Type.INT_TYPE);
+
+        Assert.assertNotNull(concat);
+        Assert.assertSame(concat, Operator.getOperator("+", string, Type.INT_TYPE));
+        Assert.assertEquals(string, concat.getResultType());
+    }
+
+    @Test
+    public void testOperatorsOfIndex() {
+        final Type string = Type.getType(String.class);
+        final ClassIndex previous = ClassIndex.getDefault();
+        final Operator concat = Operator.getOperator("+", string, Type.INT_TYPE);
+
+        try {
+            // another class path may not find the same operator, it is not taken from the previous index
+            ClassIndex.setDefault(ClassIndex.ofSystem());
+
+            final Operator other = Operator.getOperator("+", string, Type.INT_TYPE);
+
+            Assert.assertEquals(concat, other);
+            Assert.assertNotSame(concat, other);
+        } finally {
+            ClassIndex.setDefault(previous);
+        }
+
+        Assert.assertSame(concat, Operator.getOperator("+", string, Type.INT_TYPE));
+    }
+
+    @Test
+    public void testUndefinedOperators() {
+        Assert.assertNull(Operator.getOperator("^^", Type.INT_TYPE, Type.INT_TYPE));
+        Assert.assertNull(Operator.getOperator("+", Type.BOOLEAN_TYPE, Type.INT_TYPE));
+        Assert.assertNull(Operator.getOperator("-", Type.getType(String.class), Type.INT_TYPE));
+
+        final Operator eq = Operator.getOperator("==", Type.BOOLEAN_TYPE, Type.BOOLEAN_TYPE);
+
+        Assert.assertNotNull(eq);
+        Assert.assertTrue(eq.isCmpOp());
+    }
+}
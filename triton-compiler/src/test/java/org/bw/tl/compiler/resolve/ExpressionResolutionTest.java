@@ -69,6 +69,60 @@ public class ExpressionResolutionTest {
 
             Assert.assertEquals(Type.FLOAT_TYPE, expr.resolveType(expressionResolver));
         }
+
+        @Test
+        public void resolveFunctionByArity() {
+            final ExpressionResolverImpl resolver = getResolver("package mod;" +
+                    "fun add(int a): int = a\n" +
+                    "fun add(int a, long b): long = a + b\n" +
+                    "fun add(int a, int b, double c): double = a + b + c");
+
+            Assert.assertNotNull(resolver);
+
+            Assert.assertEquals(INT_TYPE, new Call(null, "add", new Expression[]{new Literal<>(1)})
+                    .resolveType(resolver));
+            Assert.assertEquals(LONG_TYPE, new Call(null, "add", new Expression[]{new Literal<>(1), new Literal<>(2)})
+                    .resolveType(resolver));
+            Assert.assertEquals(DOUBLE_TYPE, new Call(null, "add", new Expression[]{new Literal<>(1), new Literal<>(2),
+                    new Literal<>(3.0)}).resolveType(resolver));
+        }
+
+        @Test
+        public void resolveClassCallOnce() {
+            final ExpressionResolverImpl resolver = getResolver("package mod;");
+
+            Assert.assertNotNull(resolver);
+
+            final Call first = (Call) parseExpression("new java.lang.StringBuilder().append(\"a\")");
+            final Call second = (Call) parseExpression("new java.lang.StringBuilder().append(\"b\")");
+            final SymbolContext ctx = resolver.resolveCallCtx(first);
+
+            Assert.assertNotNull(ctx);
+            Assert.assertEquals("java/lang/StringBuilder", ctx.getOwner());
+            Assert.assertEquals(Type.getType(StringBuilder.class), ctx.getTypeDescriptor().getReturnType());
+            Assert.assertSame(ctx, resolver.resolveCallCtx(second));
+        }
+
+        @Test
+        public void testResolvedTypeIsAnnotated() {
+            final ExpressionResolverImpl expressionResolver = new ExpressionResolverImpl(null,
+                    Collections.emptyList(), new Scope());
+
+            Expression expr = new Literal<>(1);
+
+            for (int i = 0; i < 500; i++) {
+                expr = new BinaryOp(expr, "+", new Literal<>(100000));
+            }
+
+            Assert.assertNull(expr.getTypeDesc());
+            Assert.assertEquals(INT_TYPE, expr.resolveType(expressionResolver));
+            Assert.assertEquals(INT_TYPE.getDescriptor(), expr.getTypeDesc());
+
+            final BinaryOp bop = (BinaryOp) expr;
+
+            Assert.assertEquals(INT_TYPE.getDescriptor(), bop.getLeftSide().getTypeDesc());
+            Assert.assertEquals(INT_TYPE.getDescriptor(), bop.getRightSide().getTypeDesc());
+        }
     }
 
     @RunWith(Parameterized.class)
@@ -0,0 +1,78 @@
+package org.bw.tl.compiler.types;
+
+import org.bw.tl.util.ClassIndex;
+import org.bw.tl.util.SubtypeLattice;
+import org.objectweb.asm.Type;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scenarios of {@link TypeComparatorTest} with a warm subtype lattice against a lattice
+ * that has to walk the class hierarchy again for every comparison, as the comparator did before the
+ * relations were memoized
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeComparatorBenchmark {
+
+    private static final Type[][] SCENARIOS = {
+            {Type.INT_TYPE, Type.LONG_TYPE, Type.getType(Integer.class)},
+            {Type.INT_TYPE, Type.INT_TYPE, Type.getType(Integer.class)},
+            {Type.INT_TYPE, Type.SHORT_TYPE, Type.getType(Integer.class)},
+            {Type.INT_TYPE, Type.getType(Integer.class), Type.LONG_TYPE},
+            {Type.INT_TYPE, Type.getType(String.class), Type.getType(Object.class)},
+            {Type.BYTE_TYPE, Type.SHORT_TYPE, Type.INT_TYPE},
+            {Type.BYTE_TYPE, Type.FLOAT_TYPE, Type.DOUBLE_TYPE},
+            {Type.getType(CharSequence.class), Type.getType(CharSequence.class), Type.getType(String.class)},
+            {Type.getType(CharSequence.class), Type.getType(Number.class), Type.getType(Object.class)},
+            {Type.getType(String.class), Type.getType(CharSequence.class), Type.getType(String.class)},
+            {Type.getType(String.class), Type.getType(CharSequence.class), Type.getType(Number.class)},
+            {Type.getType(String.class), Type.getType(Comparable.class), Type.getType(Object.class)}
+    };
+
+    private SubtypeLattice warm;
+
+    @Setup
+    public void setup() {
+        warm = new SubtypeLattice(ClassIndex.getDefault());
+    }
+
+    @Benchmark
+    public void typeComparator(final Blackhole blackhole) {
+        for (final Type[] scenario : SCENARIOS) {
+            blackhole.consume(new TypeComparator(scenario[0]).compare(scenario[1], scenario[2]));
+        }
+    }
+
+    @Benchmark
+    public void warmLattice(final Blackhole blackhole) {
+        compare(warm, blackhole);
+    }
+
+    @Benchmark
+    public void coldLattice(final Blackhole blackhole) {
+        compare(new SubtypeLattice(ClassIndex.getDefault()), blackhole);
+    }
+
+    private static void compare(final SubtypeLattice lattice, final Blackhole blackhole) {
+        for (final Type[] scenario : SCENARIOS) {
+            for (int i = 1; i < scenario.length; i++) {
+                blackhole.consume(lattice.isAssignableFrom(scenario[0], scenario[i]));
+                blackhole.consume(lattice.countToParent(scenario[0], scenario[i]));
+            }
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TypeComparatorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,156 @@
+package org.bw.tl.daemon;
+
+import org.bw.tl.util.CompileUtilities;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+
+import static org.objectweb.asm.Opcodes.V1_8;
+
+public class CompileDaemonTest {
+
+    private Path directory;
+    private Path sources;
+    private Path output;
+    private Thread thread;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("daemon");
+        sources = Files.createDirectories(directory.resolve("src"));
+        output = directory.resolve("classes");
+
+        write("Lib", "package lib\n\nfun f(): int = 1\n\nfun h(): int {\n    return 2\n}\n");
+        write("App", "package app\n\nimport lib\n\nfun g(): int = lib.h()\n");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (thread != null && thread.isAlive()) {
+            final DaemonClient client = DaemonClient.find(directory.resolve("daemon"));
+
+            if (client != null)
+                client.stop();
+
+            thread.join(10_000);
+        }
+
+        for (final Path path : Files.walk(directory).sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testCompile() throws Exception {
+        final DaemonClient client = start(0);
+        final CompileRequest request = new CompileRequest(sources.toString(), Collections.emptyList(),
+                output.toString(), directory.resolve("state").toString(), null, V1_8, false);
+
+        final CompileResult first = client.compile(request);
+
+        Assert.assertTrue(first.getOutput(), first.isSuccess());
+        Assert.assertEquals(2, first.getCompiled());
+        Assert.assertTrue(Files.isRegularFile(output.resolve("lib/Lib.class")));
+        Assert.assertTrue(Files.isRegularFile(output.resolve("app/App.class")));
+
+        final CompileResult second = client.compile(request);
+
+        Assert.assertTrue(second.isSuccess());
+        Assert.assertEquals(2, second.getModules());
+        Assert.assertEquals(0, second.getCompiled());
+        Assert.assertTrue(client.status().contains("2 requests"));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        final DaemonClient client = start(0);
+        write("App", "package app\n\nfun g(): int = missing()\n");
+
+        final CompileResult result = client.compile(new CompileRequest(sources.toString(), Collections.emptyList(),
+                output.toString(), null, null, V1_8, false));
+
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertTrue(result.getOutput(), result.getOutput().contains("Compilation failed"));
+    }
+
+    @Test
+    public void testInvalidToken() throws Exception {
+        final DaemonClient client = start(0);
+
+        try {
+            new DaemonClient(client.getPort(), "invalid").status();
+            Assert.fail();
+        } catch (final IOException expected) {
+        }
+
+        // the daemon keeps serving valid clients
+        Assert.assertTrue(client.status().contains("0 requests"));
+    }
+
+    @Test(timeout = 30_000)
+    public void testSilentClient() throws Exception {
+        final DaemonClient client = start(0);
+
+        try (final Socket silent = new Socket(InetAddress.getLoopbackAddress(), client.getPort())) {
+            // the daemon serves the next client once the silent one times out
+            Assert.assertTrue(client.status().contains("0 requests"));
+            Assert.assertEquals(-1, silent.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        start(0).stop();
+        thread.join(10_000);
+
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertNull(DaemonClient.find(directory.resolve("daemon")));
+    }
+
+    @Test
+    public void testIdleShutdown() throws Exception {
+        start(200);
+        thread.join(10_000);
+
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertNull(DaemonClient.find(directory.resolve("daemon")));
+    }
+
+    private DaemonClient start(final long idleTimeout) throws InterruptedException {
+        final CompileDaemon daemon = new CompileDaemon(directory.resolve("daemon"), idleTimeout);
+
+        thread = new Thread(() -> {
+            try {
+                daemon.run();
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+
+        for (int i = 0; i < 200; i++) {
+            final DaemonClient client = DaemonClient.find(directory.resolve("daemon"));
+
+            if (client != null)
+                return client;
+
+            Thread.sleep(25);
+        }
+
+        throw new AssertionError("The daemon did not start");
+    }
+
+    private void write(final String name, final String src) throws IOException {
+        Files.write(sources.resolve(name + CompileUtilities.FILE_EXTENSION), src.getBytes());
+    }
+}
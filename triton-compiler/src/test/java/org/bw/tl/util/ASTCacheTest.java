@@ -0,0 +1,134 @@
+package org.bw.tl.util;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.bw.tl.antlr.ast.Clazz;
+import org.bw.tl.antlr.ast.ClazzSerializer;
+import org.bw.tl.antlr.ast.Function;
+import org.bw.tl.antlr.ast.SourceFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ASTCacheTest {
+
+    private Path directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("ast-cache");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        CompileUtilities.setCache(null);
+
+        for (final Path path : Files.walk(directory).sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final List<Path> files = Files.walk(Paths.get("testData/"))
+                .filter(p -> p.toString().endsWith(CompileUtilities.FILE_EXTENSION))
+                .collect(Collectors.toList());
+
+        files.add(Paths.get("../triton-stdlib/src/main/triton/triton/Builtin.tl"));
+
+        for (final Path file : files) {
+            final Clazz expected = CompileUtilities.getClazz(file.toString());
+            Assert.assertNotNull(expected);
+
+            final byte[] bytes = serialize(expected);
+            final SourceFile source = SourceFile.of(file.toString(), CharStreams.fromPath(file));
+            final Clazz actual = ClazzSerializer.read(new DataInputStream(new ByteArrayInputStream(bytes)),
+                    file.toString(), source);
+
+            Assert.assertEquals(file.toString(), expected.toString(), actual.toString());
+            // positions, flags and parents are all part of the serialized form
+            Assert.assertArrayEquals(file.toString(), bytes, serialize(actual));
+
+            for (int i = 0; i < expected.getFunctions().size(); i++) {
+                final Function function = actual.getFunctions().get(i);
+
+                Assert.assertEquals(expected.getFunctions().get(i).getText(), function.getText());
+                Assert.assertSame(function, function.getBody().getParent());
+            }
+        }
+    }
+
+    @Test
+    public void testCacheHit() throws IOException {
+        final Path a = writeSource("a", "package test\nfun a(): int = 1\n");
+        final Path b = writeSource("b", "package test\nfun b(): int = 2\n");
+        final ASTCache cache = new ASTCache(directory);
+
+        CompileUtilities.setCache(cache);
+
+        final Clazz clazz = CompileUtilities.getClazz(a.toString());
+        Assert.assertNotNull(clazz);
+        Assert.assertTrue(Files.exists(cache.getPath(Files.readAllBytes(a))));
+
+        final Clazz cached = CompileUtilities.getClazz(a.toString());
+        Assert.assertNotNull(cached);
+        Assert.assertNotSame(clazz, cached);
+        Assert.assertEquals(clazz.toString(), cached.toString());
+
+        // a hit is used without parsing the file, so the entry of b can be replaced by the module of a
+        Assert.assertTrue(cache.store(Files.readAllBytes(b), clazz));
+
+        final Clazz hit = CompileUtilities.getClazz(b.toString());
+        Assert.assertNotNull(hit);
+        Assert.assertEquals("a", hit.getFunctions().get(0).getName());
+        Assert.assertEquals(b.toString(), hit.getSourceFile());
+    }
+
+    @Test
+    public void testInvalidEntry() throws IOException {
+        final Path file = writeSource("invalid", "package test\nfun f(): int = 1\n");
+        final byte[] content = Files.readAllBytes(file);
+        final ASTCache cache = new ASTCache(directory);
+
+        Files.write(cache.getPath(content), new byte[]{0x54, 0x4C, 0x41, 0x53, 0, 0, 0, 1, 2});
+        Assert.assertNull(cache.load(file.toString(), content));
+
+        CompileUtilities.setCache(cache);
+
+        final Clazz clazz = CompileUtilities.getClazz(file.toString());
+        Assert.assertNotNull(clazz);
+        Assert.assertNotNull(cache.load(file.toString(), content));
+    }
+
+    @Test
+    public void testKey() throws IOException {
+        final ASTCache cache = new ASTCache(directory);
+
+        Assert.assertEquals(cache.getPath("fun f() = 1".getBytes()), cache.getPath("fun f() = 1".getBytes()));
+        Assert.assertNotEquals(cache.getPath("fun f() = 1".getBytes()), cache.getPath("fun f() = 2".getBytes()));
+    }
+
+    private Path writeSource(final String name, final String src) throws IOException {
+        final Path file = directory.resolve(name + CompileUtilities.FILE_EXTENSION);
+        Files.write(file, src.getBytes());
+        return file;
+    }
+
+    private static byte[] serialize(final Clazz clazz) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            ClazzSerializer.write(clazz, out);
+        }
+
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,123 @@
+package org.bw.tl.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+public class ClassIndexTest {
+
+    private static boolean initialized = false;
+
+    public static class NeverLoaded implements Runnable {
+
+        public static final String NAME = "never loaded";
+
+        static {
+            initialized = true;
+        }
+
+        public NeverLoaded(final String name) {
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    @Test
+    public void testClassIsNotInitialized() {
+        final ClassIndex index = ClassIndex.getDefault();
+        final String name = "org/bw/tl/util/ClassIndexTest$NeverLoaded";
+
+        Assert.assertTrue(index.contains(name));
+        Assert.assertFalse(index.isInterface(name));
+        Assert.assertTrue(index.isSubtype(name, "java/lang/Runnable"));
+        Assert.assertNotNull(index.getField(name, "NAME"));
+        Assert.assertEquals(1, index.getConstructors(name).size());
+        Assert.assertEquals(Type.getType(String.class),
+                Type.getArgumentTypes(index.getConstructors(name).get(0).getDesc())[0]);
+
+        Assert.assertFalse(initialized);
+    }
+
+    @Test
+    public void testMethodsMatchReflection() {
+        final ClassIndex index = ClassIndex.getDefault();
+
+        for (final Class<?> cl : new Class[]{String.class, StringBuilder.class, Integer.class, List.class, Object.class}) {
+            final List<String> expected = Arrays.stream(cl.getMethods())
+                    .map(m -> m.getName() + Type.getMethodDescriptor(m)).sorted().collect(Collectors.toList());
+            final List<String> actual = index.getMethods(Type.getInternalName(cl)).stream()
+                    .map(m -> m.getName() + m.getDesc()).sorted().collect(Collectors.toList());
+
+            Assert.assertEquals(cl.getName(), expected, actual);
+        }
+    }
+
+    @Test
+    public void testSubtypes() {
+        final ClassIndex index = ClassIndex.getDefault();
+
+        Assert.assertTrue(index.isSubtype("java/lang/String", "java/lang/CharSequence"));
+        Assert.assertTrue(index.isSubtype("java/util/ArrayList", "java/util/Collection"));
+        Assert.assertTrue(index.isSubtype("java/util/List", "java/lang/Object"));
+        Assert.assertFalse(index.isSubtype("java/lang/Object", "java/lang/String"));
+        Assert.assertFalse(index.isSubtype("does/not/Exist", "java/lang/Object"));
+        Assert.assertTrue(index.isInterface("java/lang/Runnable"));
+        Assert.assertNull(index.getClassInfo("does/not/Exist"));
+    }
+
+    @Test
+    public void testCommonSuperClass() {
+        final ClassIndex index = ClassIndex.getDefault();
+
+        Assert.assertEquals("java/lang/Number", index.getCommonSuperClass("java/lang/Integer", "java/lang/Long"));
+        Assert.assertEquals("java/util/AbstractList",
+                index.getCommonSuperClass("java/util/ArrayList", "java/util/LinkedList"));
+        Assert.assertEquals("java/util/List", index.getCommonSuperClass("java/util/List", "java/util/ArrayList"));
+        Assert.assertEquals("java/lang/Object", index.getCommonSuperClass("java/lang/Runnable", "java/lang/String"));
+        Assert.assertEquals("java/lang/Object",
+                index.getCommonSuperClass("org/bw/tl/util/ClassIndexTest$NeverLoaded", "java/lang/String"));
+        Assert.assertEquals("java/lang/Object", index.getCommonSuperClass("does/not/Exist", "java/lang/String"));
+        Assert.assertFalse(initialized);
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        final Path jar = Files.createTempFile("index", ".jar");
+
+        try {
+            final ClassWriter cw = new ClassWriter(0);
+            cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "test/InJar", null, "java/lang/Object", null);
+            cw.visitEnd();
+
+            try (final JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+                out.putNextEntry(new JarEntry("test/InJar.class"));
+                out.write(cw.toByteArray());
+            }
+
+            final ClassIndex index = new ClassIndex();
+
+            Assert.assertTrue(index.addPath(jar));
+            Assert.assertTrue(index.contains("test/InJar"));
+
+            index.close();
+
+            // the jar is no longer open, its classes are gone with it
+            Assert.assertFalse(index.contains("test/InJar"));
+        } finally {
+            Files.delete(jar);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.bw.tl.util;
+
+import org.bw.tl.util.CompileProfiler.Counter;
+import org.bw.tl.util.CompileProfiler.Phase;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class CompileProfilerTest {
+
+    @After
+    public void tearDown() {
+        CompileProfiler.setEnabled(false);
+        CompileProfiler.reset();
+    }
+
+    @Test
+    public void testDisabled() throws IOException {
+        CompileProfiler.reset();
+        CompileUtilities.compile("testData/rt_tests/");
+
+        for (final Phase phase : Phase.values()) {
+            Assert.assertEquals(0, CompileProfiler.getCount(phase));
+        }
+
+        Assert.assertEquals(0, CompileProfiler.getCount(Counter.NODES_VISITED));
+    }
+
+    @Test
+    public void testPhases() throws IOException {
+        CompileProfiler.reset();
+        CompileProfiler.setEnabled(true);
+
+        final Map<String, byte[]> classes = CompileUtilities.compile("testData/rt_tests/");
+
+        Assert.assertNotNull(classes);
+
+        for (final Phase phase : new Phase[]{Phase.PARSE, Phase.PRIME, Phase.RESOLVE, Phase.CODEGEN, Phase.FRAMES}) {
+            Assert.assertTrue(phase.name(), CompileProfiler.getCount(phase) > 0);
+            Assert.assertTrue(phase.name(), CompileProfiler.getTime(phase) > 0);
+        }
+
+        Assert.assertEquals(classes.size(), CompileProfiler.getCount(Phase.FRAMES));
+        Assert.assertEquals(0, CompileProfiler.getCount(Phase.WRITE));
+        Assert.assertTrue(CompileProfiler.getCount(Counter.NODES_VISITED) > 0);
+        Assert.assertTrue(CompileProfiler.getCount(Counter.CLASS_INDEX_LOOKUPS) > 0);
+
+        final String summary = CompileProfiler.summary();
+
+        Assert.assertTrue(summary, summary.contains("codegen"));
+        Assert.assertTrue(summary, summary.contains("nodes visited"));
+
+        CompileProfiler.reset();
+
+        Assert.assertEquals(0, CompileProfiler.getTime(Phase.PARSE));
+    }
+}
@@ -0,0 +1,106 @@
+package org.bw.tl.util;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.bw.tl.antlr.GrammarLexer;
+import org.bw.tl.antlr.GrammarParser;
+import org.bw.tl.antlr.ast.Clazz;
+import org.bw.tl.antlr.ast.QualifiedName;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class CompileUtilitiesTest {
+
+    @Test
+    public void testParseOrder() throws IOException {
+        final List<String> files = Files.walk(Paths.get("testData/rt_tests/"))
+                .filter(p -> p.toString().endsWith(CompileUtilities.FILE_EXTENSION))
+                .map(Path::toString)
+                .collect(Collectors.toList());
+
+        // parse a few copies of each file so that there are more files than workers
+        final List<String> input = new ArrayList<>();
+
+        for (int i = 0; i < CompileUtilities.PARSER_THREADS; i++) {
+            input.addAll(files);
+        }
+
+        Collections.shuffle(input);
+
+        final List<Clazz> classes = CompileUtilities.parse(input);
+
+        Assert.assertNotNull(classes);
+        Assert.assertEquals(input.size(), classes.size());
+
+        for (int i = 0; i < input.size(); i++) {
+            final Clazz clazz = classes.get(i);
+            final Clazz expected = CompileUtilities.getClazz(input.get(i));
+
+            Assert.assertNotNull(expected);
+            Assert.assertEquals(input.get(i), clazz.getSourceFile());
+            Assert.assertEquals(expected.getFunctions().size(), clazz.getFunctions().size());
+
+            for (int j = 0; j < expected.getFunctions().size(); j++) {
+                Assert.assertEquals(expected.getFunctions().get(j).getName(), clazz.getFunctions().get(j).getName());
+            }
+
+            Assert.assertTrue(clazz.getImports().contains(QualifiedName.of("java.lang.String")));
+            Assert.assertTrue(clazz.getStaticImports().contains(QualifiedName.of("triton.Builtin")));
+        }
+    }
+
+    @Test
+    public void testParseFailure() throws IOException {
+        final Path file = Files.createTempFile("invalid", CompileUtilities.FILE_EXTENSION);
+
+        try {
+            Files.write(file, "package test\nfun (".getBytes());
+            Assert.assertNull(CompileUtilities.parse(Collections.singletonList(file.toString())));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testTwoStageParse() throws IOException {
+        for (final String file : new String[]{"testData/programs/Test.tl", "testData/rt_tests/IfTest.tl"}) {
+            final String src = new String(Files.readAllBytes(Paths.get(file)));
+            final GrammarParser ll = newParser(src);
+            final GrammarParser twoStage = newParser(src);
+
+            final String expected = ll.file().toStringTree(ll);
+
+            Assert.assertEquals(expected, CompileUtilities.parse(twoStage, GrammarParser::file).toStringTree(twoStage));
+            Assert.assertEquals(0, twoStage.getNumberOfSyntaxErrors());
+            Assert.assertEquals(PredictionMode.LL, twoStage.getInterpreter().getPredictionMode());
+        }
+    }
+
+    @Test
+    public void testTwoStageParseError() {
+        final GrammarParser ll = newParser("package test\nfun f( {\n}");
+        final GrammarParser twoStage = newParser("package test\nfun f( {\n}");
+
+        ll.file();
+        CompileUtilities.parse(twoStage, GrammarParser::file);
+
+        Assert.assertTrue(twoStage.getNumberOfSyntaxErrors() > 0);
+        Assert.assertEquals(ll.getNumberOfSyntaxErrors(), twoStage.getNumberOfSyntaxErrors());
+        Assert.assertTrue(twoStage.getErrorHandler() instanceof DefaultErrorStrategy);
+    }
+
+    private static GrammarParser newParser(final String src) {
+        final GrammarParser parser = new GrammarParser(new CommonTokenStream(new GrammarLexer(CharStreams.fromString(src))));
+        parser.removeErrorListener(ConsoleErrorListener.INSTANCE);
+        return parser;
+    }
+}
@@ -0,0 +1,145 @@
+package org.bw.tl.util;
+
+import org.bw.tl.ErrorType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class IncrementalCompilerTest {
+
+    private Path directory;
+    private Path sources;
+    private Path output;
+    private IncrementalCompiler compiler;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("incremental");
+        sources = Files.createDirectories(directory.resolve("src"));
+        output = Files.createDirectories(directory.resolve("classes"));
+        compiler = new IncrementalCompiler(directory.resolve("state"), output);
+
+        write("Lib", "package lib\n\nfun f(): int = 1\n\nfun h(): int {\n    return 2\n}\n");
+        write("App", "package app\n\nimport lib\n\nfun g(): int = lib.h()\n\nfun v() = lib.f()\n");
+        write("Other", "package other\n\nfun k(): int = 3\n");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (final Path path : Files.walk(directory).sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testNoChanges() throws IOException {
+        Assert.assertEquals(3, build().size());
+
+        Assert.assertTrue(build().isEmpty());
+        Assert.assertTrue(compiler.getCompiled().isEmpty());
+    }
+
+    @Test
+    public void testBodyChange() throws IOException {
+        build();
+        write("Lib", "package lib\n\nfun f(): int = 1\n\nfun h(): int {\n    return 3\n}\n");
+
+        Assert.assertEquals(Collections.singleton("lib.Lib"), build().keySet());
+    }
+
+    @Test
+    public void testSignatureChange() throws IOException {
+        build();
+        write("Lib", "package lib\n\nfun f(): long = 1\n\nfun h(): int {\n    return 2\n}\n");
+
+        final Map<String, byte[]> classes = build();
+
+        Assert.assertEquals(Arrays.asList(path("Lib"), path("App")), compiler.getCompiled());
+
+        final Map<String, byte[]> expected = CompileUtilities.compile(sources.toString());
+
+        Assert.assertNotNull(expected);
+        Assert.assertArrayEquals(expected.get("app.App"), classes.get("app.App"));
+        Assert.assertArrayEquals(expected.get("lib.Lib"), classes.get("lib.Lib"));
+        Assert.assertFalse(Arrays.equals(IncrementalCompiler.abi(expected.get("lib.Lib")),
+                IncrementalCompiler.abi(expected.get("other.Other"))));
+    }
+
+    @Test
+    public void testMissingClassFile() throws IOException {
+        build();
+        Files.delete(output.resolve("app/App.class"));
+
+        Assert.assertEquals(Collections.singleton("app.App"), build().keySet());
+    }
+
+    @Test
+    public void testAddAndRemove() throws IOException {
+        build();
+        write("Extra", "package extra\n\nfun e(): int = 4\n");
+
+        // a new module may change how the other modules resolve, everything is rebuilt
+        Assert.assertEquals(4, build().size());
+
+        Files.delete(sources.resolve("Extra.tl"));
+
+        Assert.assertEquals(3, build().size());
+        Assert.assertEquals(Collections.singleton("extra/Extra"), compiler.getRemoved());
+    }
+
+    @Test
+    public void testFailedBuild() throws IOException {
+        build();
+        write("Lib", "package lib\n\nfun h(): int {\n    return 2\n}\n");
+
+        Assert.assertNull(compiler.compile(CompileUtilities.findSources(sources.toString()), Collections.emptyList()));
+        Assert.assertEquals(1, compiler.getErrors().size());
+        Assert.assertEquals(ErrorType.GENERAL_ERROR, compiler.getErrors().get(0).getErrorType());
+        Assert.assertEquals("Cannot resolve expression", compiler.getErrors().get(0).getMessage());
+        Assert.assertEquals(7, compiler.getErrors().get(0).getLineNumber());
+
+        // the state of the last successful build is kept
+        write("Lib", "package lib\n\nfun f(): int = 1\n\nfun h(): int {\n    return 2\n}\n");
+        Assert.assertTrue(build().isEmpty());
+        Assert.assertTrue(compiler.getErrors().isEmpty());
+    }
+
+    @Test
+    public void testInvalidState() throws IOException {
+        build();
+        Files.write(compiler.getStateFile(), new byte[]{1, 2, 3});
+
+        Assert.assertEquals(3, build().size());
+    }
+
+    private Map<String, byte[]> build() throws IOException {
+        final Map<String, byte[]> classes = compiler.compile(CompileUtilities.findSources(sources.toString()),
+                Collections.emptyList());
+
+        Assert.assertNotNull(classes);
+
+        for (final Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            final Path file = output.resolve(entry.getKey().replace('.', '/') + ".class");
+
+            Files.createDirectories(file.getParent());
+            Files.write(file, entry.getValue());
+        }
+
+        return classes;
+    }
+
+    private void write(final String name, final String src) throws IOException {
+        Files.write(sources.resolve(name + CompileUtilities.FILE_EXTENSION), src.getBytes());
+    }
+
+    private String path(final String name) {
+        return sources.resolve(name + CompileUtilities.FILE_EXTENSION).toString();
+    }
+}
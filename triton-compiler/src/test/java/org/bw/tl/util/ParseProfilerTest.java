@@ -0,0 +1,43 @@
+package org.bw.tl.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ParseProfilerTest {
+
+    @Test
+    public void testProfile() throws IOException {
+        final List<Path> files = Files.walk(Paths.get("testData/"))
+                .filter(p -> p.toString().endsWith(CompileUtilities.FILE_EXTENSION))
+                .collect(Collectors.toList());
+
+        files.add(Paths.get("../triton-stdlib/src/main/triton/triton/Builtin.tl"));
+
+        final ParseProfiler profiler = new ParseProfiler();
+
+        for (final Path file : files) {
+            Assert.assertTrue(file.toString(), profiler.profile(file.toString()));
+        }
+
+        final List<ParseProfiler.RuleStats> rules = profiler.getRules();
+
+        Assert.assertFalse(rules.isEmpty());
+        Assert.assertTrue(profiler.report().contains("expression"));
+
+        for (int i = 1; i < rules.size(); i++) {
+            Assert.assertTrue(rules.get(i - 1).getTimeInPrediction() >= rules.get(i).getTimeInPrediction());
+        }
+
+        // every file is parsed by the SLL stage, which never falls back to full context prediction
+        for (final ParseProfiler.RuleStats stats : rules) {
+            Assert.assertEquals(stats.getRule(), 0, stats.getLlFallback());
+        }
+    }
+}
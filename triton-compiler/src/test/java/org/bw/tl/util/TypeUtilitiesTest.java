@@ -58,6 +58,18 @@ public class TypeUtilitiesTest {
         Assert.assertTrue(TypeUtilities.isAssignableFrom(getTypeFromName("java.lang.Integer"), getTypeFromName("java.lang.Number")));
     }
 
+    @Test
+    public void testCountToParent() {
+        Assert.assertEquals(0, TypeUtilities.countToParent(getTypeFromName("java.lang.String"), getTypeFromName("java.lang.String")));
+        Assert.assertEquals(1, TypeUtilities.countToParent(getTypeFromName("java.lang.String"), getTypeFromName("java.lang.Object")));
+        Assert.assertEquals(-1, TypeUtilities.countToParent(getTypeFromName("java.lang.Object"), getTypeFromName("java.lang.String")));
+        Assert.assertEquals(-1, TypeUtilities.countToParent(getTypeFromName("int"), getTypeFromName("java.lang.Object")));
+
+        // memoized relations must not change the result
+        Assert.assertEquals(1, TypeUtilities.countToParent(getTypeFromName("java.lang.String"), getTypeFromName("java.lang.Object")));
+        Assert.assertTrue(TypeUtilities.isAssignableFrom(getTypeFromName("java.lang.String"), getTypeFromName("java.lang.Object")));
+    }
+
     @Test
     public void testIsAssignableWithImplicitCast() {
         Assert.assertTrue(TypeUtilities.isAssignableWithImplicitCast(getTypeFromName("float"), getTypeFromName("double")));
@@ -5,13 +5,15 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.bw.tl.daemon.CompileRequest;
+import org.bw.tl.daemon.CompileResult;
+import org.bw.tl.daemon.DaemonClient;
 import org.bw.tl.util.CompileUtilities;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
-import java.util.Map;
 
 @Mojo(name = "compile", defaultPhase = LifecyclePhase.COMPILE, requiresDependencyResolution = ResolutionScope.COMPILE)
 public class CompileMojo extends AbstractMojo {
@@ -25,27 +27,100 @@ public class CompileMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project.build.outputDirectory}", required = true, readonly = true)
     private String outputDirectory;
 
+    @Parameter(name = "cacheDirectory", defaultValue = "${project.build.directory}/triton-ast-cache")
+    private String cacheDirectory;
+
+    /**
+     * Only compile the modules that changed and the modules that depend on their signatures
+     */
+    @Parameter(name = "incremental", defaultValue = "true")
+    private boolean incremental;
+
+    @Parameter(name = "buildStateFile", defaultValue = "${project.build.directory}/triton-build-state")
+    private String buildStateFile;
+
+    /**
+     * Compile in a running compile daemon when one is available
+     */
+    @Parameter(name = "daemon", property = "triton.daemon", defaultValue = "true")
+    private boolean daemon;
+
+    /**
+     * Start a compile daemon if none is running
+     */
+    @Parameter(name = "startDaemon", property = "triton.startDaemon", defaultValue = "false")
+    private boolean startDaemon;
+
+    @Parameter(name = "daemonDirectory", property = "triton.daemonDirectory")
+    private String daemonDirectory;
+
+    @Parameter(name = "daemonMaxHeap", property = "triton.daemonMaxHeap", defaultValue = "1g")
+    private String daemonMaxHeap;
+
+    /**
+     * The Java release of the generated classes, string concatenation uses invokedynamic from release 9
+     */
+    @Parameter(name = "target", property = "triton.target", defaultValue = "1.8")
+    private String target;
+
+    /**
+     * Log the time of each compiler phase and the compiler counters
+     */
+    @Parameter(name = "profile", property = "triton.profile", defaultValue = "false")
+    private boolean profile;
+
+    @Parameter(name = "daemonIdleMinutes", property = "triton.daemonIdleMinutes", defaultValue = "180")
+    private long daemonIdleMinutes;
+
     @Override
     public void execute() throws CompilationFailureException {
+        final CompileRequest request = new CompileRequest(Paths.get(sourceDirectory).toAbsolutePath().toString(),
+                classpath, Paths.get(outputDirectory).toAbsolutePath().toString(),
+                incremental ? Paths.get(buildStateFile).toAbsolutePath().toString() : null,
+                cacheDirectory != null ? Paths.get(cacheDirectory).toAbsolutePath().toString() : null,
+                CompileUtilities.classVersion(target), profile);
+
         try {
-            final Map<String, byte[]> classMap = CompileUtilities.compile(sourceDirectory, classpath);
+            final CompileResult result = daemon ? compileInDaemon(request) : request.execute();
+
+            for (final String line : result.getProfile().split("\n")) {
+                if (!line.isEmpty())
+                    getLog().info(line);
+            }
 
-            if (classMap == null)
+            if (!result.isSuccess())
                 throw new CompilationFailureException();
 
-            for (final Map.Entry<String, byte[]> entry : classMap.entrySet()) {
-                final File file = new File(outputDirectory, entry.getKey().replace(".", "/") + ".class");
-                final File parent = file.getParentFile();
+            getLog().info("Compiled " + result.getCompiled() + " of " + result.getModules() + " modules");
+        } catch (IOException e) {
+            throw new CompilationFailureException();
+        }
+    }
 
-                if (!parent.exists())
-                    parent.mkdirs();
+    private CompileResult compileInDaemon(final CompileRequest request) throws IOException {
+        final Path directory = daemonDirectory != null ? Paths.get(daemonDirectory) :
+                DaemonClient.DEFAULT_DIRECTORY;
+        DaemonClient client = DaemonClient.find(directory);
 
-                final FileOutputStream fos = new FileOutputStream(file);
-                fos.write(entry.getValue());
-                fos.close();
+        if (client == null && startDaemon) {
+            try {
+                client = DaemonClient.start(directory, daemonMaxHeap, daemonIdleMinutes);
+            } catch (IOException e) {
+                getLog().warn("Could not start the compile daemon: " + e.getMessage());
+            }
+        }
+
+        if (client != null) {
+            try {
+                final CompileResult result = client.compile(request);
+
+                System.err.print(result.getOutput());
+                return result;
+            } catch (IOException e) {
+                getLog().warn("The compile daemon is not available, compiling in this JVM");
             }
-        } catch (IOException e) {
-            throw new CompilationFailureException();
         }
+
+        return request.execute();
     }
 }
@@ -0,0 +1,154 @@
+package org.bw.tl.runtime;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * The int values of a range expression such as 0..n, n downTo 0 or 0..n step 2 that is used as a value. A
+ * for loop over a range expression and an in check of a range expression are compiled without the range
+ */
+public final class IntRange implements Iterable<Integer> {
+
+    private final int first;
+
+    /**
+     * The last value the step reaches, which is the end of the range or the value before it
+     */
+    private final int last;
+
+    /**
+     * The difference of two values, negative for a descending range
+     */
+    private final int step;
+
+    public IntRange(final int first, final int end, final int step) {
+        if (step == 0 || step == Integer.MIN_VALUE)
+            throw new IllegalArgumentException("Invalid range step: " + step);
+
+        this.first = first;
+        this.last = lastElement(first, end, step);
+        this.step = step;
+    }
+
+    public static IntRange rangeTo(final int first, final int last) {
+        return new IntRange(first, last, 1);
+    }
+
+    public static IntRange downTo(final int first, final int last) {
+        return new IntRange(first, last, -1);
+    }
+
+    /**
+     * @param step The positive difference of two values
+     * @return The range with the same first value, end and direction and the given step
+     */
+    public IntRange step(final int step) {
+        return new IntRange(first, last, this.step > 0 ? checkStep(step) : -checkStep(step));
+    }
+
+    public int getFirst() {
+        return first;
+    }
+
+    public int getLast() {
+        return last;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public boolean isEmpty() {
+        return step > 0 ? first > last : first < last;
+    }
+
+    public boolean contains(final int value) {
+        final boolean inBounds = step > 0 ? first <= value && value <= last : last <= value && value <= first;
+        return inBounds && differenceModulo(value, first, Math.abs(step)) == 0;
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+
+            private int next = first;
+            private boolean hasNext = !isEmpty();
+
+            @Override
+            public int nextInt() {
+                if (!hasNext)
+                    throw new NoSuchElementException();
+
+                final int value = next;
+
+                if (value == last) {
+                    hasNext = false;
+                } else {
+                    next += step;
+                }
+
+                return value;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return hasNext;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof IntRange))
+            return false;
+
+        final IntRange range = (IntRange) o;
+
+        return isEmpty() && range.isEmpty() || first == range.first && last == range.last && step == range.step;
+    }
+
+    @Override
+    public int hashCode() {
+        return isEmpty() ? -1 : 31 * (31 * first + last) + step;
+    }
+
+    @Override
+    public String toString() {
+        final String range = step > 0 ? first + ".." + last : first + " downTo " + last;
+        return step == 1 || step == -1 ? range : range + " step " + Math.abs(step);
+    }
+
+    /**
+     * @return The step if it is positive
+     * @throws IllegalArgumentException If the step is not positive
+     */
+    private static int checkStep(final int step) {
+        if (step <= 0)
+            throw new IllegalArgumentException("Step must be positive, was: " + step);
+
+        return step;
+    }
+
+    /**
+     * @return The last value the step reaches from the first value without passing the end, or the end if the
+     * range is empty
+     */
+    private static int lastElement(final int first, final int end, final int step) {
+        if (step > 0)
+            return first >= end ? end : end - differenceModulo(end, first, step);
+
+        return first <= end ? end : end + differenceModulo(first, end, -step);
+    }
+
+    private static int differenceModulo(final int a, final int b, final int c) {
+        return mod(mod(a, c) - mod(b, c), c);
+    }
+
+    private static int mod(final int a, final int b) {
+        final int mod = a % b;
+        return mod >= 0 ? mod : mod + b;
+    }
+}
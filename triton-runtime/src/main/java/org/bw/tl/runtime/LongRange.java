@@ -0,0 +1,154 @@
+package org.bw.tl.runtime;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * The long values of a range expression such as 0..n, n downTo 0 or 0..n step 2 that is used as a value. A
+ * for loop over a range expression and an in check of a range expression are compiled without the range
+ */
+public final class LongRange implements Iterable<Long> {
+
+    private final long first;
+
+    /**
+     * The last value the step reaches, which is the end of the range or the value before it
+     */
+    private final long last;
+
+    /**
+     * The difference of two values, negative for a descending range
+     */
+    private final long step;
+
+    public LongRange(final long first, final long end, final long step) {
+        if (step == 0 || step == Long.MIN_VALUE)
+            throw new IllegalArgumentException("Invalid range step: " + step);
+
+        this.first = first;
+        this.last = lastElement(first, end, step);
+        this.step = step;
+    }
+
+    public static LongRange rangeTo(final long first, final long last) {
+        return new LongRange(first, last, 1);
+    }
+
+    public static LongRange downTo(final long first, final long last) {
+        return new LongRange(first, last, -1);
+    }
+
+    /**
+     * @param step The positive difference of two values
+     * @return The range with the same first value, end and direction and the given step
+     */
+    public LongRange step(final long step) {
+        return new LongRange(first, last, this.step > 0 ? checkStep(step) : -checkStep(step));
+    }
+
+    public long getFirst() {
+        return first;
+    }
+
+    public long getLast() {
+        return last;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public boolean isEmpty() {
+        return step > 0 ? first > last : first < last;
+    }
+
+    public boolean contains(final long value) {
+        final boolean inBounds = step > 0 ? first <= value && value <= last : last <= value && value <= first;
+        return inBounds && differenceModulo(value, first, Math.abs(step)) == 0;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+
+            private long next = first;
+            private boolean hasNext = !isEmpty();
+
+            @Override
+            public long nextLong() {
+                if (!hasNext)
+                    throw new NoSuchElementException();
+
+                final long value = next;
+
+                if (value == last) {
+                    hasNext = false;
+                } else {
+                    next += step;
+                }
+
+                return value;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return hasNext;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof LongRange))
+            return false;
+
+        final LongRange range = (LongRange) o;
+
+        return isEmpty() && range.isEmpty() || first == range.first && last == range.last && step == range.step;
+    }
+
+    @Override
+    public int hashCode() {
+        return isEmpty() ? -1 : 31 * (31 * Long.hashCode(first) + Long.hashCode(last)) + Long.hashCode(step);
+    }
+
+    @Override
+    public String toString() {
+        final String range = step > 0 ? first + ".." + last : first + " downTo " + last;
+        return step == 1 || step == -1 ? range : range + " step " + Math.abs(step);
+    }
+
+    /**
+     * @return The step if it is positive
+     * @throws IllegalArgumentException If the step is not positive
+     */
+    private static long checkStep(final long step) {
+        if (step <= 0)
+            throw new IllegalArgumentException("Step must be positive, was: " + step);
+
+        return step;
+    }
+
+    /**
+     * @return The last value the step reaches from the first value without passing the end, or the end if the
+     * range is empty
+     */
+    private static long lastElement(final long first, final long end, final long step) {
+        if (step > 0)
+            return first >= end ? end : end - differenceModulo(end, first, step);
+
+        return first <= end ? end : end + differenceModulo(first, end, -step);
+    }
+
+    private static long differenceModulo(final long a, final long b, final long c) {
+        return mod(mod(a, c) - mod(b, c), c);
+    }
+
+    private static long mod(final long a, final long b) {
+        final long mod = a % b;
+        return mod >= 0 ? mod : mod + b;
+    }
+}
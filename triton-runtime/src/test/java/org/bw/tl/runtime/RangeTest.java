@@ -0,0 +1,79 @@
+package org.bw.tl.runtime;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+public class RangeTest {
+
+    @Test
+    public void testIntRange() {
+        Assert.assertEquals(Arrays.asList(1, 2, 3), values(IntRange.rangeTo(1, 3)));
+        Assert.assertEquals(Arrays.asList(3, 2, 1), values(IntRange.downTo(3, 1)));
+        Assert.assertEquals(Arrays.asList(0, 3, 6, 9), values(IntRange.rangeTo(0, 10).step(3)));
+        Assert.assertEquals(Arrays.asList(10, 7, 4, 1), values(IntRange.downTo(10, 0).step(3)));
+        Assert.assertEquals(Collections.emptyList(), values(IntRange.rangeTo(3, 1)));
+        Assert.assertEquals(Arrays.asList(Integer.MAX_VALUE - 1, Integer.MAX_VALUE),
+                values(IntRange.rangeTo(Integer.MAX_VALUE - 1, Integer.MAX_VALUE)));
+
+        Assert.assertEquals(9, IntRange.rangeTo(0, 10).step(3).getLast());
+        Assert.assertEquals(-3, IntRange.downTo(10, 0).step(3).getStep());
+        Assert.assertEquals("0..9 step 3", IntRange.rangeTo(0, 10).step(3).toString());
+        Assert.assertEquals("3 downTo 1", IntRange.downTo(3, 1).toString());
+    }
+
+    @Test
+    public void testContains() {
+        final IntRange range = IntRange.rangeTo(-5, 5).step(5);
+
+        Assert.assertTrue(range.contains(-5));
+        Assert.assertTrue(range.contains(0));
+        Assert.assertFalse(range.contains(1));
+        Assert.assertFalse(range.contains(10));
+        Assert.assertTrue(IntRange.downTo(5, 1).contains(1));
+        Assert.assertFalse(IntRange.downTo(5, 1).contains(6));
+        Assert.assertTrue(LongRange.rangeTo(0, Long.MAX_VALUE).contains(Long.MAX_VALUE));
+        Assert.assertFalse(LongRange.rangeTo(1, 0).contains(0));
+    }
+
+    @Test
+    public void testEquals() {
+        Assert.assertEquals(IntRange.rangeTo(1, 3), new IntRange(1, 3, 1));
+        Assert.assertEquals(IntRange.rangeTo(0, 10).step(3), IntRange.rangeTo(0, 9).step(3));
+        Assert.assertEquals(IntRange.rangeTo(3, 1), IntRange.downTo(1, 3));
+        Assert.assertEquals(IntRange.rangeTo(3, 1).hashCode(), IntRange.downTo(1, 3).hashCode());
+        Assert.assertNotEquals(IntRange.rangeTo(1, 3), IntRange.downTo(3, 1));
+    }
+
+    @Test
+    public void testLongRange() {
+        final PrimitiveIterator.OfLong iterator = LongRange.downTo(Long.MIN_VALUE + 4, Long.MIN_VALUE).step(2)
+                .iterator();
+
+        Assert.assertEquals(Long.MIN_VALUE + 4, iterator.nextLong());
+        Assert.assertEquals(Long.MIN_VALUE + 2, iterator.nextLong());
+        Assert.assertEquals(Long.MIN_VALUE, iterator.nextLong());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStep() {
+        IntRange.rangeTo(0, 10).step(0);
+    }
+
+    private static List<Integer> values(final IntRange range) {
+        final List<Integer> values = new ArrayList<>();
+        final PrimitiveIterator.OfInt iterator = range.iterator();
+
+        while (iterator.hasNext()) {
+            values.add(iterator.nextInt());
+        }
+
+        return values;
+    }
+}